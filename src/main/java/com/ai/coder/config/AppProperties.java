@@ -16,6 +16,15 @@ public class AppProperties {
     private Security security = new Security();
     private Tools tools = new Tools();
     private Browser browser = new Browser();
+    private Conversation conversation = new Conversation();
+    private Scheduler scheduler = new Scheduler();
+    private TaskRegistry taskRegistry = new TaskRegistry();
+    private LogStream logStream = new LogStream();
+    private Backup backup = new Backup();
+    private Diff diff = new Diff();
+    private Listing listing = new Listing();
+    private Watcher watcher = new Watcher();
+    private Analysis analysis = new Analysis();
 
     /**
      * 工作空间配置
@@ -25,6 +34,9 @@ public class AppProperties {
         // 使用 Paths.get() 和 File.separator 实现跨平台兼容
         private String rootDirectory = Paths.get(System.getProperty("user.dir"), "workspace").toString();
         private long maxFileSize = 10485760L; // 10MB
+        private long contentCacheMaxBytes = 67108864L; // 文件内容缓存上限 64MB
+        private long streamingEditThresholdBytes = 1048576L; // 超过该大小的文件使用流式编辑 1MB
+        private WriteDurability writeDurability = WriteDurability.DATA; // 文件写入的落盘策略
         private List<String> allowedExtensions = List.of(
                 ".txt", ".md", ".java", ".js", ".ts", ".json", ".xml",
                 ".yml", ".yaml", ".properties", ".html", ".css", ".sql"
@@ -57,6 +69,12 @@ public class AppProperties {
         private ToolConfig editFile = new ToolConfig(true);
         private ToolConfig listDirectory = new ToolConfig(true);
         private ToolConfig shell = new ToolConfig(true);
+        // 批量读写工具单次调用最多处理的文件数
+        private int batchMaxFiles = 20;
+        // 目录列表的默认输出格式：tree、paths、jsonl
+        private String outputFormat = "tree";
+        // 读取工具单次调用返回内容的字节上限，超出后按行截断并提示 offset
+        private long maxOutputBytes = 64 * 1024L;
 
     }
 
@@ -87,6 +105,170 @@ public class AppProperties {
 
     }
 
+    /**
+     * 连续对话配置
+     */
+    @Data
+    public static class Conversation {
+        // 是否使用流式轮次引擎，逐段推送模型输出
+        private boolean streamingEnabled = true;
+        // 是否在判断下一发言者的同时预执行下一轮（需开启流式引擎）
+        private boolean speculativeNextSpeaker = false;
+        // 最多保留的会话数，超出后淘汰最久未使用的会话
+        private int maxSessions = 1000;
+        // 会话空闲超时时间（分钟）
+        private int sessionTtlMinutes = 60;
+        // 每个会话最多保留的消息数
+        private int maxHistoryMessages = 100;
+        // 每个会话最多保留的消息字符数
+        private int maxHistoryChars = 200_000;
+        // 是否启用上下文窗口管理（超出预算时把早期轮次折叠为摘要）
+        private boolean contextWindowEnabled = true;
+        // 每轮发送给模型的历史消息token预算（估算值）
+        private int maxPromptTokens = 16_000;
+        // 始终原样保留的最近消息数
+        private int recentMessages = 8;
+        // 滚动摘要最大字符数
+        private int summaryMaxChars = 4_000;
+        // 是否使用LLM生成摘要，关闭或失败时使用截取式摘要
+        private boolean llmSummaryEnabled = true;
+
+    }
+
+    /**
+     * 任务调度配置
+     */
+    @Data
+    public static class Scheduler {
+        // 同时执行的对话任务数
+        private int maxConcurrentTasks = 4;
+        // 等待执行的对话任务上限，超出后拒绝新任务
+        private int maxQueuedTasks = 32;
+        // 工具执行线程数
+        private int toolThreads = Math.max(4, Runtime.getRuntime().availableProcessors());
+        // 是否使用虚拟线程（需要 Java 21 运行时）
+        private boolean virtualThreads = false;
+
+    }
+
+    /**
+     * 任务注册表配置
+     */
+    @Data
+    public static class TaskRegistry {
+        // 最多保留的任务状态数，超出后淘汰最早结束的任务
+        private int maxTasks = 500;
+        // 已结束任务的保留时间（分钟）
+        private int taskTtlMinutes = 120;
+        // 内存中最多保留的对话结果数
+        private int maxResultsInMemory = 50;
+        // 是否把对话结果写入磁盘，内存淘汰后按需加载
+        private boolean spillEnabled = true;
+        // 结果文件目录，为空时使用用户目录下的 .ai-coder/tasks（不放在工作目录内，避免被文件工具读取）
+        private String spillDirectory = "";
+        // 单个结果文件的大小上限（字节），超出后滚动，仅保留最近两个文件
+        private long maxSpillFileBytes = 16 * 1024 * 1024L;
+
+    }
+
+    /**
+     * SSE日志推送配置
+     */
+    @Data
+    public static class LogStream {
+        // 每个任务缓存的可重放事件数
+        private int replayBufferSize = 256;
+        // 任务结束后事件缓存的保留时间（秒），供晚到或重连的客户端重放
+        private int completedRetentionSeconds = 60;
+        // 每个订阅者的发送队列长度，队满时合并输出片段或丢弃事件
+        private int subscriberQueueSize = 256;
+        // 异步发送线程数
+        private int senderThreads = 4;
+        // 心跳间隔（秒），用于发现已断开的客户端
+        private int heartbeatSeconds = 15;
+        // 发送队列持续无进展超过该时间（秒）的订阅者视为失效并回收
+        private int stallTimeoutSeconds = 60;
+        // SSE连接超时时间（分钟），超时后客户端自动重连并按 Last-Event-ID 续传
+        private int emitterTimeoutMinutes = 30;
+        // 任务完成后延迟关闭连接的时间（毫秒），让前端处理完成事件
+        private long closeDelayMs = 2000;
+
+    }
+
+    /**
+     * 文件备份配置
+     */
+    @Data
+    public static class Backup {
+        // 备份目录，为空时使用工作目录下的 .ai-coder/backups
+        private String directory = "";
+        // 是否压缩备份内容
+        private boolean compress = true;
+        // 备份总大小上限（字节），超出后整份删除最久未更新的任务清单及只被其引用的内容
+        private long maxTotalBytes = 256 * 1024 * 1024L;
+        // 备份保留天数
+        private int maxAgeDays = 7;
+
+    }
+
+    /**
+     * 差异生成配置
+     */
+    @Data
+    public static class Diff {
+        // 差异上下文行数
+        private int contextLines = 3;
+        // 修改窗口超过该行数时改用线性空间算法
+        private int linearSpaceThresholdLines = 2000;
+        // 修改窗口新旧行数之和超过该值时只输出摘要
+        private int maxDiffLines = 20000;
+
+    }
+
+    /**
+     * 目录列表配置
+     */
+    @Data
+    public static class Listing {
+        // 递归列表的最大深度
+        private int maxDepth = 10;
+        // 单次列表最多输出的条目数
+        private int maxEntries = 2000;
+        // 单次列表输出的字节上限
+        private long maxOutputBytes = 64 * 1024L;
+
+    }
+
+    /**
+     * 工作目录文件监听配置
+     */
+    @Data
+    public static class Watcher {
+        // 是否监听工作目录中的外部修改
+        private boolean enabled = true;
+        // 去抖间隔：最后一个事件之后安静这么久才发布一批变更
+        private long debounceMillis = 300;
+        // 持续有事件时最长等待这么久也要发布一批变更
+        private long maxDelayMillis = 3000;
+        // 一批变更的最大路径数，超出后合并为一次整体刷新
+        private int maxBatchSize = 5000;
+
+    }
+
+    /**
+     * 项目分析配置
+     */
+    @Data
+    public static class Analysis {
+        // 是否按项目根目录缓存分析结果，再次分析时只重新读取变化的文件
+        private boolean cacheEnabled = true;
+        // 最多缓存的项目数，超出后淘汰最久未分析的项目
+        private int maxCachedProjects = 8;
+        // 代码统计扫描的并行线程数，0 表示使用 CPU 核数
+        private int parallelism = 0;
+
+    }
+
     /**
      * 审批模式
      */
@@ -95,4 +277,13 @@ public class AppProperties {
         AUTO_EDIT,  // 自动编辑模式，文件编辑不需要确认
         YOLO        // 完全自动模式，所有操作都不需要确认
     }
+
+    /**
+     * 文件写入落盘策略
+     */
+    public enum WriteDurability {
+        NONE,   // 不强制落盘，仍然先写临时文件再原子替换
+        DATA,   // 替换前强制文件数据落盘，崩溃后文件为旧内容或新内容之一
+        FULL    // 同时强制元数据和所在目录落盘，替换本身也不会因崩溃丢失
+    }
 }
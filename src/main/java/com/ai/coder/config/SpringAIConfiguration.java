@@ -1,9 +1,12 @@
 package com.ai.coder.config;
 
 import com.ai.coder.schema.SchemaValidator;
+import com.ai.coder.service.ConversationScheduler;
 import com.ai.coder.tools.*;
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.tool.ToolCallbackProvider;
+import org.springframework.ai.tool.method.MethodToolCallbackProvider;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -47,9 +50,11 @@ public class SpringAIConfiguration {
 
                 # AVAILABLE TOOLS:
                 - readFile: Read file contents (supports pagination)
+                - readFiles: Read several files in one call (prefer this when you need more than one file)
                 - writeFile: Create or overwrite files
+                - writeFiles: Create or overwrite several files in one call (prefer this when creating multiple files)
                 - editFile: Edit files by replacing specific text
-                - listDirectory: List directory contents (supports recursive)
+                - listDirectory: List directory contents (supports recursive; format 'tree', 'paths' or 'jsonl')
                 - analyzeProject: Analyze existing projects to understand structure and dependencies
                 - smartEdit: Intelligently edit projects based on natural language descriptions
                 - scaffoldProject: Create new projects with standard structure and templates
@@ -62,7 +67,8 @@ public class SpringAIConfiguration {
                 - If creating a project, make it production-ready with proper structure
                 - Continue working until you've delivered a complete, functional result
                 - Only say "completed" or "finished" when the ENTIRE task is truly done
-                - The tools will show both full paths and relative paths - this helps users locate files
+                - Read and listing results show paths relative to the workspace directory; prefix them with it to get absolute paths
+                - Large results are truncated to an output budget; follow the note (e.g. continue with offset=N) to see more
                 - Always mention the full path when describing what you've created
 
                 # PATH EXAMPLES:
@@ -84,13 +90,29 @@ public class SpringAIConfiguration {
                 .build();
     }
 
-
+    /**
+     * 工作区工具回调
+     * 供流式轮次引擎在关闭内部工具执行后自行执行工具调用
+     */
+    @Bean
+    public ToolCallbackProvider workspaceToolCallbackProvider(FileOperationTools fileOperationTools,
+                                                              SmartEditTool smartEditTool,
+                                                              AnalyzeProjectTool analyzeProjectTool,
+                                                              ProjectScaffoldTool projectScaffoldTool) {
+        return MethodToolCallbackProvider.builder()
+                .toolObjects(fileOperationTools, smartEditTool, analyzeProjectTool, projectScaffoldTool)
+                .build();
+    }
 
     /**
-     * 为所有工具注入Schema验证器
+     * 为所有工具注入Schema验证器和工具线程池
      */
     @Autowired
-    public void configureTools(List<BaseTool<?>> tools, SchemaValidator schemaValidator) {
-        tools.forEach(tool -> tool.setSchemaValidator(schemaValidator));
+    public void configureTools(List<BaseTool<?>> tools, SchemaValidator schemaValidator,
+                               ConversationScheduler conversationScheduler) {
+        tools.forEach(tool -> {
+            tool.setSchemaValidator(schemaValidator);
+            tool.setExecutor(conversationScheduler.getToolExecutor());
+        });
     }
 }
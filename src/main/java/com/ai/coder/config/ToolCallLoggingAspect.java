@@ -10,6 +10,7 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -125,19 +126,24 @@ public class ToolCallLoggingAspect {
         try {
             switch (methodName) {
                 case "readFile":
-                    // readFile(String absolutePath, Integer offset, Integer limit)
+                    // readFile(String absolutePath, Integer offset, Integer limit, Integer maxOutputBytes)
                     return args.length > 0 && args[0] != null ? args[0].toString() : "未指定路径";
 
                 case "writeFile":
                     // writeFile(String filePath, String content)
                     return args.length > 0 && args[0] != null ? args[0].toString() : "未指定路径";
 
+                case "readFiles":
+                case "writeFiles":
+                    // readFiles(List<FileReadRequest> files, Integer maxOutputBytes) / writeFiles(List<FileWriteRequest> files)
+                    return args.length > 0 && args[0] instanceof List<?> files ? files.size() + " 个文件" : "未指定文件";
+
                 case "editFile":
                     // editFile(String filePath, String oldText, String newText)
                     return args.length > 0 && args[0] != null ? args[0].toString() : "未指定路径";
 
                 case "listDirectory":
-                    // listDirectory(String directoryPath, Boolean recursive)
+                    // listDirectory(String directoryPath, Boolean recursive, String format, Integer maxOutputBytes)
                     return args.length > 0 && args[0] != null ? args[0].toString() : "未指定路径";
 
                 case "analyzeProject":
@@ -246,6 +252,10 @@ public class ToolCallLoggingAspect {
                 return "正在读取文件: " + getFileName(fileInfo);
             case "writeFile":
                 return "正在写入文件: " + getFileName(fileInfo);
+            case "readFiles":
+                return "正在批量读取文件: " + fileInfo;
+            case "writeFiles":
+                return "正在批量写入文件: " + fileInfo;
             case "editFile":
                 return "正在编辑文件: " + getFileName(fileInfo);
             case "listDirectory":
@@ -271,6 +281,10 @@ public class ToolCallLoggingAspect {
                 return String.format("已读取文件 %s (耗时 %dms)", fileName, executionTime);
             case "writeFile":
                 return String.format("已写入文件 %s (耗时 %dms)", fileName, executionTime);
+            case "readFiles":
+                return String.format("已批量读取 %s (耗时 %dms)", fileInfo, executionTime);
+            case "writeFiles":
+                return String.format("已批量写入 %s (耗时 %dms)", fileInfo, executionTime);
             case "editFile":
                 return String.format("已编辑文件 %s (耗时 %dms)", fileName, executionTime);
             case "listDirectory":
@@ -0,0 +1,78 @@
+package com.ai.coder.controller;
+
+import com.ai.coder.service.BackupStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 文件备份控制器 - 查看任务的备份清单并恢复文件
+ */
+@RestController
+@RequestMapping("/api/backups")
+public class BackupController {
+
+    private static final Logger logger = LoggerFactory.getLogger(BackupController.class);
+
+    private final BackupStore backupStore;
+
+    public BackupController(BackupStore backupStore) {
+        this.backupStore = backupStore;
+    }
+
+    /**
+     * 备份存储统计
+     */
+    @GetMapping("/stats")
+    public Map<String, Object> getStats() {
+        return backupStore.getStats();
+    }
+
+    /**
+     * 获取任务的备份清单
+     */
+    @GetMapping("/{taskId}")
+    public ResponseEntity<List<BackupStore.BackupEntry>> getManifest(@PathVariable("taskId") String taskId) {
+        try {
+            return ResponseEntity.ok(backupStore.getManifest(taskId));
+        } catch (IOException e) {
+            logger.error("读取备份清单失败: taskId={}", taskId, e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    /**
+     * 把文件恢复为任务中的备份内容，未指定 hash 时恢复到任务修改前的内容
+     */
+    @PostMapping("/{taskId}/restore")
+    public ResponseEntity<Map<String, Object>> restore(@PathVariable("taskId") String taskId,
+                                                       @RequestParam("path") String path,
+                                                       @RequestParam(value = "hash", required = false) String hash) {
+        try {
+            BackupStore.BackupEntry entry = backupStore.restore(taskId, path, hash);
+            return ResponseEntity.ok(Map.of(
+                    "status", "success",
+                    "path", entry.path(),
+                    "hash", entry.hash(),
+                    "size", entry.size()
+            ));
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("status", "error", "message", e.getMessage()));
+        } catch (IOException e) {
+            logger.error("恢复文件失败: taskId={}, path={}", taskId, path, e);
+            return ResponseEntity.internalServerError()
+                    .body(Map.of("status", "error", "message", "恢复文件失败: " + e.getMessage()));
+        }
+    }
+}
@@ -3,11 +3,15 @@ package com.ai.coder.controller;
 import com.ai.coder.dto.ChatRequestDTO;
 import com.ai.coder.dto.ChatResponseDTO;
 import com.ai.coder.dto.MessageDTO;
+import com.ai.coder.model.ConversationResult;
 import com.ai.coder.service.ContinuousConversationService;
+import com.ai.coder.service.ConversationScheduler;
+import com.ai.coder.service.ConversationStore;
 import com.ai.coder.service.ToolExecutionLogger;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.messages.AssistantMessage;
 import org.springframework.ai.chat.messages.Message;
 import org.springframework.ai.chat.messages.UserMessage;
 import org.springframework.http.MediaType;
@@ -18,7 +22,6 @@ import reactor.core.publisher.Mono;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.CompletableFuture;
 
 /**
  * 聊天控制器
@@ -33,14 +36,19 @@ public class ChatController {
     private final ChatClient chatClient;
     private final ContinuousConversationService continuousConversationService;
     private final ToolExecutionLogger executionLogger;
+    private final ConversationScheduler conversationScheduler;
 
-    // 简单的会话存储（生产环境应该使用数据库或Redis）
-    private final List<Message> conversationHistory = new ArrayList<>();
+    // 按会话ID隔离的对话历史（生产环境应该使用数据库或Redis）
+    private final ConversationStore conversationStore;
 
-    public ChatController(ChatClient chatClient, ContinuousConversationService continuousConversationService, ToolExecutionLogger executionLogger) {
+    public ChatController(ChatClient chatClient, ContinuousConversationService continuousConversationService,
+                          ToolExecutionLogger executionLogger, ConversationScheduler conversationScheduler,
+                          ConversationStore conversationStore) {
         this.chatClient = chatClient;
         this.continuousConversationService = continuousConversationService;
         this.executionLogger = executionLogger;
+        this.conversationScheduler = conversationScheduler;
+        this.conversationStore = conversationStore;
     }
 
     /**
@@ -66,19 +74,31 @@ public class ChatController {
                     // 获取工具执行统计
                     executionLogger.logToolStatistics();
 
-                    // 异步执行连续对话
-                    CompletableFuture.runAsync(() -> {
+                    // 提交到对话调度器异步执行
+                    String sessionId = request.getSessionId();
+                    boolean accepted = conversationScheduler.submit(taskId, () -> {
                         try {
                             logger.info("🚀 开始异步执行连续对话任务: {}", taskId);
                             continuousConversationService.executeContinuousConversation(
-                                    taskId, request.getMessage(), conversationHistory
+                                    taskId, request.getMessage(), conversationStore.getHistory(sessionId)
                             );
+                            recordExchange(sessionId, request.getMessage(), taskId);
                             logger.info("✅ 连续对话任务完成: {}", taskId);
                         } catch (Exception e) {
                             logger.error("❌ 异步对话执行错误: {}", e.getMessage(), e);
                         }
                     });
 
+                    if (!accepted) {
+                        continuousConversationService.rejectTask(taskId, "服务繁忙，任务队列已满");
+                        ChatResponseDTO busyResponse = new ChatResponseDTO();
+                        busyResponse.setTaskId(taskId);
+                        busyResponse.setMessage("服务繁忙，请稍后重试");
+                        busyResponse.setSuccess(false);
+                        logger.warn("📤 任务被拒绝: taskId={}, 任务队列已满", taskId);
+                        return busyResponse;
+                    }
+
                     // 返回异步任务响应
                     ChatResponseDTO responseDto = new ChatResponseDTO();
                     responseDto.setTaskId(taskId);
@@ -122,14 +142,17 @@ public class ChatController {
     public Flux<String> streamMessage(@RequestBody ChatRequestDTO request) {
         logger.info("🌊 开始流式对话: {}", request.getMessage());
 
+        String sessionId = request.getSessionId();
         return Flux.create(sink -> {
             try {
                 UserMessage userMessage = new UserMessage(request.getMessage());
-                conversationHistory.add(userMessage);
+                List<Message> messages = new ArrayList<>(conversationStore.getHistory(sessionId));
+                messages.add(userMessage);
+                StringBuilder assistantText = new StringBuilder();
 
                 // 使用Spring AI的流式API
                 Flux<String> contentStream = chatClient.prompt()
-                        .messages(conversationHistory)
+                        .messages(messages)
                         .stream()
                         .content();
 
@@ -137,11 +160,13 @@ public class ChatController {
                 contentStream
                         .doOnNext(content -> {
                             logger.debug("📨 流式内容片段: {}", content);
+                            assistantText.append(content);
                             // 发送SSE格式的数据
                             sink.next("data: " + content + "\n\n");
                         })
                         .doOnComplete(() -> {
                             logger.info("✅ 流式对话完成");
+                            conversationStore.append(sessionId, userMessage, new AssistantMessage(assistantText.toString()));
                             sink.next("data: [DONE]\n\n");
                             sink.complete();
                         })
@@ -162,9 +187,9 @@ public class ChatController {
      * 清除对话历史
      */
     @PostMapping("/clear")
-    public Mono<Map<String, String>> clearHistory() {
-        conversationHistory.clear();
-        logger.info("Conversation history cleared");
+    public Mono<Map<String, String>> clearHistory(@RequestParam(value = "sessionId", required = false) String sessionId) {
+        conversationStore.clear(sessionId);
+        logger.info("Conversation history cleared: sessionId={}", sessionId);
         return Mono.just(Map.of("status", "success", "message", "Conversation history cleared"));
     }
 
@@ -172,8 +197,8 @@ public class ChatController {
      * 获取对话历史
      */
     @GetMapping("/history")
-    public Mono<List<MessageDTO>> getHistory() {
-        List<MessageDTO> history = conversationHistory.stream()
+    public Mono<List<MessageDTO>> getHistory(@RequestParam(value = "sessionId", required = false) String sessionId) {
+        List<MessageDTO> history = conversationStore.getHistory(sessionId).stream()
                 .map(message -> {
                     MessageDTO dto = new MessageDTO();
                     dto.setContent(message.getText());
@@ -185,5 +210,16 @@ public class ChatController {
         return Mono.just(history);
     }
 
+    /**
+     * 连续对话结束后，把本次问答写入会话历史
+     */
+    private void recordExchange(String sessionId, String userMessage, String taskId) {
+        ConversationResult result = continuousConversationService.getConversationResult(taskId);
+        if (result == null || result.getFullResponse() == null) {
+            conversationStore.append(sessionId, new UserMessage(userMessage));
+            return;
+        }
+        conversationStore.append(sessionId, new UserMessage(userMessage), new AssistantMessage(result.getFullResponse()));
+    }
 
 }
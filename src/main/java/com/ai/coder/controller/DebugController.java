@@ -1,6 +1,18 @@
 package com.ai.coder.controller;
 
+import com.ai.coder.service.AtomicFileWriter;
+import com.ai.coder.service.ContextWindowManager;
+import com.ai.coder.service.ConversationScheduler;
+import com.ai.coder.service.ConversationStore;
+import com.ai.coder.service.DiffService;
+import com.ai.coder.service.DirectoryLister;
+import com.ai.coder.service.FileContentCache;
+import com.ai.coder.service.PagedFileReader;
+import com.ai.coder.service.ProjectContextAnalyzer;
+import com.ai.coder.service.TaskRegistry;
 import com.ai.coder.service.ToolDiscoveryService;
+import com.ai.coder.service.WorkspacePathPolicy;
+import com.ai.coder.service.WorkspaceWatcher;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.ai.tool.annotation.Tool;
@@ -26,10 +38,40 @@ public class DebugController {
 
     private final ApplicationContext applicationContext;
     private final ToolDiscoveryService toolDiscoveryService;
-
-    public DebugController(ApplicationContext applicationContext, ToolDiscoveryService toolDiscoveryService) {
+    private final ConversationScheduler conversationScheduler;
+    private final ConversationStore conversationStore;
+    private final ContextWindowManager contextWindowManager;
+    private final TaskRegistry taskRegistry;
+    private final PagedFileReader pagedFileReader;
+    private final FileContentCache fileContentCache;
+    private final AtomicFileWriter atomicFileWriter;
+    private final DiffService diffService;
+    private final WorkspacePathPolicy workspacePathPolicy;
+    private final DirectoryLister directoryLister;
+    private final WorkspaceWatcher workspaceWatcher;
+    private final ProjectContextAnalyzer projectContextAnalyzer;
+
+    public DebugController(ApplicationContext applicationContext, ToolDiscoveryService toolDiscoveryService,
+                           ConversationScheduler conversationScheduler, ConversationStore conversationStore,
+                           ContextWindowManager contextWindowManager, TaskRegistry taskRegistry,
+                           PagedFileReader pagedFileReader, FileContentCache fileContentCache,
+                           AtomicFileWriter atomicFileWriter, DiffService diffService,
+                           WorkspacePathPolicy workspacePathPolicy, DirectoryLister directoryLister,
+                           WorkspaceWatcher workspaceWatcher, ProjectContextAnalyzer projectContextAnalyzer) {
         this.applicationContext = applicationContext;
         this.toolDiscoveryService = toolDiscoveryService;
+        this.conversationStore = conversationStore;
+        this.contextWindowManager = contextWindowManager;
+        this.taskRegistry = taskRegistry;
+        this.pagedFileReader = pagedFileReader;
+        this.fileContentCache = fileContentCache;
+        this.atomicFileWriter = atomicFileWriter;
+        this.diffService = diffService;
+        this.workspacePathPolicy = workspacePathPolicy;
+        this.directoryLister = directoryLister;
+        this.workspaceWatcher = workspaceWatcher;
+        this.projectContextAnalyzer = projectContextAnalyzer;
+        this.conversationScheduler = conversationScheduler;
     }
 
     /**
@@ -112,4 +154,66 @@ public class DebugController {
                 "tools", tools
         );
     }
+
+    /**
+     * 对话调度器状态
+     */
+    @GetMapping("/scheduler")
+    public Map<String, Object> schedulerStats() {
+        return conversationScheduler.getStats();
+    }
+
+    /**
+     * 会话存储状态
+     */
+    @GetMapping("/sessions")
+    public Map<String, Object> sessionStats() {
+        return Map.of(
+                "activeSessions", conversationStore.getSessionCount(),
+                "evictedSessions", conversationStore.getEvictedSessionCount()
+        );
+    }
+
+    /**
+     * 上下文窗口状态
+     */
+    @GetMapping("/context")
+    public Map<String, Object> contextStats() {
+        return Map.of(
+                "summarizations", contextWindowManager.getTotalSummarizations(),
+                "tokensSaved", contextWindowManager.getTotalTokensSaved()
+        );
+    }
+
+    /**
+     * 任务注册表状态
+     */
+    @GetMapping("/tasks")
+    public Map<String, Object> taskRegistryStats() {
+        return taskRegistry.getStats();
+    }
+
+    /**
+     * 文件读取状态
+     */
+    @GetMapping("/files")
+    public Map<String, Object> fileStats() {
+        return Map.of(
+                "pagedReader", pagedFileReader.getStats(),
+                "contentCache", fileContentCache.getStats(),
+                "writer", atomicFileWriter.getStats(),
+                "diff", diffService.getStats(),
+                "listing", directoryLister.getStats(),
+                "watcher", workspaceWatcher.getStats(),
+                "analysis", projectContextAnalyzer.getStats()
+        );
+    }
+
+    /**
+     * 工作目录路径策略统计
+     */
+    @GetMapping("/paths")
+    public Map<String, Object> pathPolicyStats() {
+        return workspacePathPolicy.getStats();
+    }
 }
@@ -6,9 +6,12 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.util.Map;
+
 /**
  * SSE日志流控制器
  * 提供SSE连接端点
@@ -24,14 +27,18 @@ public class LogStreamController {
 
     /**
      * 建立SSE连接
-     * 前端通过此端点建立实时日志推送连接
+     * 前端通过此端点建立实时日志推送连接；浏览器自动重连时通过 Last-Event-ID 请求头，
+     * 手动重连时通过 lastEventId 参数告知已收到的最后一个事件，服务端从其后开始重放
      */
     @GetMapping(value = "/stream/{taskId}", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
-    public SseEmitter streamLogs(@PathVariable("taskId") String taskId) {
+    public SseEmitter streamLogs(@PathVariable("taskId") String taskId,
+                                 @RequestHeader(value = "Last-Event-ID", required = false) String lastEventIdHeader,
+                                 @RequestParam(value = "lastEventId", required = false) String lastEventIdParam) {
         logger.info("🔗 收到SSE连接请求: taskId={}", taskId);
 
         try {
-            SseEmitter emitter = logStreamService.createConnection(taskId);
+            Long lastEventId = parseEventId(lastEventIdHeader != null ? lastEventIdHeader : lastEventIdParam);
+            SseEmitter emitter = logStreamService.createConnection(taskId, lastEventId);
             logger.info("✅ SSE连接建立成功: taskId={}", taskId);
             return emitter;
         } catch (Exception e) {
@@ -40,6 +47,20 @@ public class LogStreamController {
         }
     }
 
+    /**
+     * 以二进制帧格式拉取缓存中的事件，供非浏览器客户端使用
+     * 帧格式见 {@link com.ai.coder.service.LogEventEncoder}
+     */
+    @GetMapping(value = "/frames/{taskId}", produces = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<byte[]> getFrames(@PathVariable("taskId") String taskId,
+                                            @RequestParam(value = "after", defaultValue = "0") long afterId) {
+        byte[] frames = logStreamService.getBufferedFrames(taskId, afterId);
+        if (frames == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(frames);
+    }
+
     /**
      * 关闭SSE连接
      */
@@ -63,5 +84,25 @@ public class LogStreamController {
         return status;
     }
 
+    /**
+     * 获取推送统计信息（订阅者、发送队列、丢弃/合并事件数、重放缓存）
+     */
+    @GetMapping("/stats")
+    public Map<String, Object> getStats() {
+        return logStreamService.getStats();
+    }
+
+    private Long parseEventId(String eventId) {
+        if (eventId == null || eventId.isBlank()) {
+            return null;
+        }
+        try {
+            return Long.parseLong(eventId.trim());
+        } catch (NumberFormatException e) {
+            logger.warn("无效的事件ID: {}", eventId);
+            return null;
+        }
+    }
+
 
 }
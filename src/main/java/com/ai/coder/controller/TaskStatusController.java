@@ -4,13 +4,17 @@ import com.ai.coder.dto.ConversationResultDTO;
 import com.ai.coder.dto.TaskStatusDTO;
 import com.ai.coder.model.ConversationResult;
 import com.ai.coder.model.TaskStatus;
+import com.ai.coder.model.TaskStatusSnapshot;
 import com.ai.coder.service.ContinuousConversationService;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 import reactor.core.publisher.Mono;
 
+import java.util.Map;
+
 @RestController
 @RequestMapping("/api/task")
 public class TaskStatusController {
@@ -32,16 +36,18 @@ public class TaskStatusController {
                 throw new RuntimeException("Task not found: " + taskId);
             }
 
+            // 使用快照，保证各字段来自同一时刻
+            TaskStatusSnapshot snapshot = status.snapshot();
             TaskStatusDTO dto = new TaskStatusDTO();
-            dto.setTaskId(status.getTaskId());
-            dto.setStatus(status.getStatus());
-            dto.setCurrentAction(status.getCurrentAction());
-            dto.setSummary(status.getSummary());
-            dto.setCurrentTurn(status.getCurrentTurn());
-            dto.setTotalEstimatedTurns(status.getTotalEstimatedTurns());
-            dto.setProgressPercentage(status.getProgressPercentage());
-            dto.setElapsedTime(status.getElapsedTime());
-            dto.setErrorMessage(status.getErrorMessage());
+            dto.setTaskId(snapshot.taskId());
+            dto.setStatus(snapshot.status());
+            dto.setCurrentAction(snapshot.currentAction());
+            dto.setSummary(snapshot.summary());
+            dto.setCurrentTurn(snapshot.currentTurn());
+            dto.setTotalEstimatedTurns(snapshot.totalEstimatedTurns());
+            dto.setProgressPercentage(snapshot.progressPercentage());
+            dto.setElapsedTime(snapshot.elapsedTime());
+            dto.setErrorMessage(snapshot.errorMessage());
 
             return dto;
         });
@@ -66,9 +72,24 @@ public class TaskStatusController {
             dto.setReachedMaxTurns(result.isReachedMaxTurns());
             dto.setStopReason(result.getStopReason());
             dto.setTotalDurationMs(result.getTotalDurationMs());
+            dto.setContextTokensSaved(result.getContextTokensSaved());
 
             return dto;
         });
     }
 
+    /**
+     * 取消任务
+     */
+    @PostMapping("/cancel/{taskId}")
+    public Mono<Map<String, Object>> cancelTask(@PathVariable("taskId") String taskId) {
+        return Mono.fromCallable(() -> {
+            boolean cancelled = conversationService.cancelTask(taskId);
+            return Map.<String, Object>of(
+                    "taskId", taskId,
+                    "cancelled", cancelled
+            );
+        });
+    }
+
 }
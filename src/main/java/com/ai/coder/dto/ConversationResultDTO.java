@@ -12,5 +12,6 @@ public class ConversationResultDTO {
     private boolean reachedMaxTurns;
     private String stopReason;
     private long totalDurationMs;
+    private long contextTokensSaved;
 
 }
\ No newline at end of file
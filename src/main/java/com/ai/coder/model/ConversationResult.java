@@ -17,6 +17,8 @@ public class ConversationResult {
     private final boolean reachedMaxTurns;
     private final String stopReason;
     private final long totalDurationMs;
+    // 上下文窗口折叠早期轮次后节省的token数（估算）
+    private long contextTokensSaved;
 
     public ConversationResult(String fullResponse, List<String> turnResponses,
                               List<Message> finalHistory, int totalTurns, boolean reachedMaxTurns,
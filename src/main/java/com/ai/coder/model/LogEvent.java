@@ -13,13 +13,13 @@ public class LogEvent {
     private String type;
     private String taskId;
     private String message;
-    private String timestamp;
+    private long timestamp; // 事件时间（epoch 毫秒）
 
     // Constructors
     public LogEvent() {
     }
 
-    public LogEvent(String type, String taskId, String message, String timestamp) {
+    public LogEvent(String type, String taskId, String message, long timestamp) {
         this.type = type;
         this.taskId = taskId;
         this.message = message;
@@ -32,8 +32,7 @@ public class LogEvent {
         event.setType("CONNECTION_ESTABLISHED");
         event.setTaskId(taskId);
         event.setMessage("SSE连接已建立");
-        event.setTimestamp(java.time.LocalDateTime.now().format(
-                java.time.format.DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss")));
+        event.setTimestamp(System.currentTimeMillis());
         return event;
     }
 
@@ -43,7 +42,7 @@ public class LogEvent {
                 "type='" + type + '\'' +
                 ", taskId='" + taskId + '\'' +
                 ", message='" + message + '\'' +
-                ", timestamp='" + timestamp + '\'' +
+                ", timestamp=" + timestamp +
                 '}';
     }
 }
@@ -0,0 +1,39 @@
+package com.ai.coder.model;
+
+/**
+ * 文件工具返回目录列表时的输出格式
+ * 工具输出会随对话历史在之后每一轮重新发送，因此默认使用最紧凑的格式
+ */
+public enum OutputFormat {
+    // 按层级缩进的名称树，目录以 "/" 结尾
+    TREE("tree"),
+    // 每行一个相对工作目录的路径
+    PATHS("paths"),
+    // 每行一个 JSON 对象：path、type、size、depth
+    JSONL("jsonl");
+
+    private final String value;
+
+    OutputFormat(String value) {
+        this.value = value;
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    /**
+     * 解析格式名称，为空或无法识别时返回给定的默认格式
+     */
+    public static OutputFormat fromValue(String value, OutputFormat defaultFormat) {
+        if (value == null || value.isBlank()) {
+            return defaultFormat;
+        }
+        for (OutputFormat format : values()) {
+            if (format.value.equalsIgnoreCase(value.trim()) || format.name().equalsIgnoreCase(value.trim())) {
+                return format;
+            }
+        }
+        return defaultFormat;
+    }
+}
@@ -10,6 +10,9 @@ import java.nio.file.Path;
  */
 public class ScaffoldResult {
     private java.util.List<String> createdItems = new java.util.ArrayList<>();
+    // 待写入的文件，结构生成完后统一批量写入 path -> content
+    @Getter
+    private java.util.Map<Path, String> pendingFiles = new java.util.LinkedHashMap<>();
     @Getter
     private String summary;
     @Getter
@@ -19,6 +22,10 @@ public class ScaffoldResult {
         createdItems.add(item);
     }
 
+    public void addPendingFile(Path path, String content) {
+        pendingFiles.put(path, content);
+    }
+
     /**
      * 生成摘要
      * @param projectPath
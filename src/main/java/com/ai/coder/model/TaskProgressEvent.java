@@ -0,0 +1,96 @@
+package com.ai.coder.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+
+import java.util.Objects;
+
+/**
+ * 任务进度日志事件
+ * 继承自LogEvent，只携带相对上一次推送发生变化的任务状态字段（未变化的字段为 null，不序列化）。
+ * 类型：TASK_PROGRESS（状态变化）、TURN_COMPLETE（单轮结束，附带本轮输出）、
+ * TASK_COMPLETE（任务结束，附带最终结果）
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@Data
+public class TaskProgressEvent extends LogEvent {
+
+    private Long version;
+    private String status;
+    private String currentAction;
+    private Integer currentTurn;
+    private Integer totalEstimatedTurns;
+    private Double progressPercentage;
+    private String summary;
+    private String errorMessage;
+
+    // TURN_COMPLETE：轮次号和本轮输出
+    private Integer turn;
+    private String response;
+
+    // TASK_COMPLETE：最终结果
+    private String fullResponse;
+    private Integer totalTurns;
+    private Boolean reachedMaxTurns;
+    private String stopReason;
+    private Long totalDurationMs;
+
+    public TaskProgressEvent() {
+        super();
+    }
+
+    public TaskProgressEvent(String type, String taskId, long timestamp) {
+        super(type, taskId, null, timestamp);
+    }
+
+    /**
+     * 填充两个快照之间变化的字段，previous 为 null 时填充全部字段
+     *
+     * @return 是否有字段发生变化
+     */
+    public boolean applyDelta(TaskStatusSnapshot previous, TaskStatusSnapshot current) {
+        boolean full = previous == null;
+        boolean changed = full;
+        if (full || !Objects.equals(previous.status(), current.status())) {
+            status = current.status();
+            changed = true;
+        }
+        if (full || !Objects.equals(previous.currentAction(), current.currentAction())) {
+            currentAction = current.currentAction();
+            changed = true;
+        }
+        if (full || previous.currentTurn() != current.currentTurn()) {
+            currentTurn = current.currentTurn();
+            changed = true;
+        }
+        if (full || previous.totalEstimatedTurns() != current.totalEstimatedTurns()) {
+            totalEstimatedTurns = current.totalEstimatedTurns();
+            changed = true;
+        }
+        if (full || previous.progressPercentage() != current.progressPercentage()) {
+            progressPercentage = current.progressPercentage();
+            changed = true;
+        }
+        if (full || !Objects.equals(previous.summary(), current.summary())) {
+            summary = current.summary();
+            changed = true;
+        }
+        if (full || !Objects.equals(previous.errorMessage(), current.errorMessage())) {
+            errorMessage = current.errorMessage();
+            changed = true;
+        }
+        version = current.version();
+        return changed;
+    }
+
+    /**
+     * 填充最终结果
+     */
+    public void applyResult(ConversationResult result) {
+        fullResponse = result.getFullResponse();
+        totalTurns = result.getTotalTurns();
+        reachedMaxTurns = result.isReachedMaxTurns();
+        stopReason = result.getStopReason();
+        totalDurationMs = result.getTotalDurationMs();
+    }
+}
@@ -1,63 +1,195 @@
 package com.ai.coder.model;
 
-import lombok.Data;
-
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
-@Data
+/**
+ * 任务状态
+ * 由对话线程写入、请求线程读取：字段均为原子或 volatile，
+ * 动作历史使用固定大小的环形缓冲区，读取方通过 {@link #snapshot()} 获取不可变快照。
+ */
 public class TaskStatus {
-    private String taskId;
-    private String status; // RUNNING, COMPLETED, ERROR
-    private String currentAction;
-    private String summary;
-    private int currentTurn;
-    private int totalEstimatedTurns;
-    private long startTime;
-    private long lastUpdateTime;
-    private List<String> actionHistory;
-    private String errorMessage;
-    private double progressPercentage;
+
+    // 动作历史最多保留的条数
+    public static final int MAX_ACTION_HISTORY = 64;
+
+    private final String taskId;
+    private final long startTime;
+
+    private final AtomicReference<String> status = new AtomicReference<>("RUNNING"); // RUNNING, COMPLETED, FAILED, CANCELLED
+    private volatile String currentAction;
+    private volatile String summary;
+    private volatile String errorMessage;
+    private final AtomicInteger currentTurn = new AtomicInteger(0);
+    private final AtomicInteger totalEstimatedTurns = new AtomicInteger(0);
+    private volatile long lastUpdateTime;
+
+    // 每次修改递增，用于判断快照是否过期以及推送增量
+    private final AtomicLong version = new AtomicLong(0);
+
+    // 动作历史环形缓冲区，actionCount 为累计写入次数
+    private final String[] actionRing = new String[MAX_ACTION_HISTORY];
+    private long actionCount;
+
+    private volatile TaskStatusSnapshot cachedSnapshot;
 
     public TaskStatus(String taskId) {
         this.taskId = taskId;
-        this.status = "RUNNING";
         this.startTime = System.currentTimeMillis();
         this.lastUpdateTime = this.startTime;
-        this.actionHistory = new ArrayList<>();
-        this.progressPercentage = 0.0;
+    }
+
+    public String getTaskId() {
+        return taskId;
+    }
+
+    public long getStartTime() {
+        return startTime;
+    }
+
+    public String getStatus() {
+        return status.get();
     }
 
     public void setStatus(String status) {
-        this.status = status;
-        this.lastUpdateTime = System.currentTimeMillis();
+        this.status.set(status);
+        touch();
+    }
+
+    /**
+     * 仅当当前状态为 expected 时更新状态
+     *
+     * @return 是否更新成功
+     */
+    public boolean compareAndSetStatus(String expected, String newStatus) {
+        if (status.compareAndSet(expected, newStatus)) {
+            touch();
+            return true;
+        }
+        return false;
+    }
+
+    public String getCurrentAction() {
+        return currentAction;
     }
 
     public void setCurrentAction(String currentAction) {
         this.currentAction = currentAction;
-        this.lastUpdateTime = System.currentTimeMillis();
         if (currentAction != null && !currentAction.trim().isEmpty()) {
-            this.actionHistory.add(currentAction);
+            synchronized (actionRing) {
+                actionRing[(int) (actionCount % MAX_ACTION_HISTORY)] = currentAction;
+                actionCount++;
+            }
         }
+        touch();
+    }
+
+    public String getSummary() {
+        return summary;
+    }
+
+    public void setSummary(String summary) {
+        this.summary = summary;
+        touch();
+    }
+
+    public String getErrorMessage() {
+        return errorMessage;
+    }
+
+    public void setErrorMessage(String errorMessage) {
+        this.errorMessage = errorMessage;
+        touch();
+    }
+
+    public int getCurrentTurn() {
+        return currentTurn.get();
     }
 
     public void setCurrentTurn(int currentTurn) {
-        this.currentTurn = currentTurn;
-        updateProgress();
+        this.currentTurn.set(currentTurn);
+        touch();
+    }
+
+    public int getTotalEstimatedTurns() {
+        return totalEstimatedTurns.get();
     }
 
     public void setTotalEstimatedTurns(int totalEstimatedTurns) {
-        this.totalEstimatedTurns = totalEstimatedTurns;
-        updateProgress();
+        this.totalEstimatedTurns.set(totalEstimatedTurns);
+        touch();
     }
 
-    private void updateProgress() {
-        if (totalEstimatedTurns > 0) {
-            this.progressPercentage = Math.min(100.0, (double) currentTurn / totalEstimatedTurns * 100.0);
+    public double getProgressPercentage() {
+        int total = totalEstimatedTurns.get();
+        if (total <= 0) {
+            return 0.0;
         }
+        return Math.min(100.0, (double) currentTurn.get() / total * 100.0);
+    }
+
+    public long getLastUpdateTime() {
+        return lastUpdateTime;
+    }
+
+    public long getVersion() {
+        return version.get();
     }
 
     public long getElapsedTime() {
         return System.currentTimeMillis() - startTime;
     }
+
+    /**
+     * 最近的动作历史（从旧到新），最多 {@link #MAX_ACTION_HISTORY} 条
+     */
+    public List<String> getActionHistory() {
+        synchronized (actionRing) {
+            int size = (int) Math.min(actionCount, MAX_ACTION_HISTORY);
+            List<String> history = new ArrayList<>(size);
+            for (long i = actionCount - size; i < actionCount; i++) {
+                history.add(actionRing[(int) (i % MAX_ACTION_HISTORY)]);
+            }
+            return history;
+        }
+    }
+
+    /**
+     * 获取不可变快照，状态未变化时复用上一次的快照
+     */
+    public TaskStatusSnapshot snapshot() {
+        TaskStatusSnapshot cached = cachedSnapshot;
+        long currentVersion = version.get();
+        if (cached != null && cached.version() == currentVersion) {
+            return cached;
+        }
+
+        TaskStatusSnapshot snapshot = new TaskStatusSnapshot(
+                taskId,
+                status.get(),
+                currentAction,
+                summary,
+                errorMessage,
+                currentTurn.get(),
+                totalEstimatedTurns.get(),
+                getProgressPercentage(),
+                startTime,
+                lastUpdateTime,
+                currentVersion,
+                List.copyOf(getActionHistory())
+        );
+        // 构建期间有新的修改时不缓存，下次读取重新构建
+        if (version.get() == currentVersion) {
+            cachedSnapshot = snapshot;
+        }
+        return snapshot;
+    }
+
+    private void touch() {
+        lastUpdateTime = System.currentTimeMillis();
+        version.incrementAndGet();
+    }
 }
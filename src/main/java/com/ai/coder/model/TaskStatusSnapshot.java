@@ -0,0 +1,26 @@
+package com.ai.coder.model;
+
+import java.util.List;
+
+/**
+ * 任务状态的不可变快照，可安全地在线程间传递
+ */
+public record TaskStatusSnapshot(
+        String taskId,
+        String status,
+        String currentAction,
+        String summary,
+        String errorMessage,
+        int currentTurn,
+        int totalEstimatedTurns,
+        double progressPercentage,
+        long startTime,
+        long lastUpdateTime,
+        long version,
+        List<String> actionHistory
+) {
+
+    public long elapsedTime() {
+        return System.currentTimeMillis() - startTime;
+    }
+}
@@ -25,7 +25,7 @@ public class ToolLogEvent extends LogEvent {
     }
 
     public ToolLogEvent(String type, String taskId, String toolName, String filePath,
-                        String message, String timestamp, String icon, String status) {
+                        String message, long timestamp, String icon, String status) {
         super(type, taskId, message, timestamp);
         this.toolName = toolName;
         this.filePath = filePath;
@@ -0,0 +1,34 @@
+package com.ai.coder.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+
+/**
+ * 对话轮次日志事件
+ * 继承自LogEvent，携带轮次号和增量输出
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@Data
+public class TurnLogEvent extends LogEvent {
+
+    private Integer turn;
+    private String delta; // 本次推送的增量文本
+
+    public TurnLogEvent() {
+        super();
+    }
+
+    public TurnLogEvent(String type, String taskId, Integer turn, String delta, long timestamp) {
+        super(type, taskId, null, timestamp);
+        this.turn = turn;
+        this.delta = delta;
+    }
+
+    @Override
+    public String toString() {
+        return "TurnLogEvent{" +
+                "turn=" + turn +
+                ", delta='" + delta + '\'' +
+                "} " + super.toString();
+    }
+}
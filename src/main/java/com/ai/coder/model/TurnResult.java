@@ -11,10 +11,17 @@ public class TurnResult {
     private final String response;
     private final String errorMessage;
 
+    // 首个输出片段的延迟（毫秒），-1 表示非流式或无输出
+    private long firstTokenLatencyMs = -1;
+    // 本轮内执行的工具调用往返次数
+    private int toolCallRounds;
+    // 预执行的轮次被判定为不需要而丢弃
+    private boolean cancelled;
+
     public TurnResult(boolean success, String response, String errorMessage) {
         this.success = success;
         this.response = response;
         this.errorMessage = errorMessage;
     }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,48 @@
+package com.ai.coder.model;
+
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * 工作目录文件变更事件（Spring 应用内事件）
+ * 工具写入文件后立即发布（origin=TOOL）；文件监听器把外部修改去抖合并后批量发布（origin=FILESYSTEM）。
+ * 缓存和索引订阅该事件按路径增量更新，收到 OVERFLOW 时应整体失效重建。
+ *
+ * @param changes 本批次的变更，同一路径只出现一次
+ */
+public record WorkspaceChangeEvent(List<Change> changes, Origin origin) {
+
+    public enum Kind {
+        CREATED,
+        MODIFIED,
+        DELETED,
+        // 事件丢失（监听队列溢出或目录无法监听），path 为受影响的目录
+        OVERFLOW
+    }
+
+    public enum Origin {
+        TOOL,
+        FILESYSTEM
+    }
+
+    /**
+     * 单个路径的变更
+     *
+     * @param path      规范化后的绝对路径
+     * @param directory 是否为目录（已删除的路径无法判断，为 false）
+     */
+    public record Change(Path path, Kind kind, boolean directory) {
+    }
+
+    public static WorkspaceChangeEvent of(Path path, Kind kind, Origin origin) {
+        return new WorkspaceChangeEvent(List.of(new Change(path, kind, false)), origin);
+    }
+
+    /**
+     * 是否需要整体失效：包含溢出，或删除了目录（无法得知其下有哪些文件）
+     */
+    public boolean requiresFullRefresh() {
+        return changes.stream().anyMatch(change -> change.kind() == Kind.OVERFLOW
+                || (change.kind() == Kind.DELETED && change.directory()));
+    }
+}
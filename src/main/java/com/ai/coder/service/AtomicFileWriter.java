@@ -0,0 +1,296 @@
+package com.ai.coder.service;
+
+import com.ai.coder.config.AppProperties;
+import com.ai.coder.model.WorkspaceChangeEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 原子文件写入
+ * 内容先写入同目录下的临时文件，按落盘策略强制同步后原子重命名为目标文件，
+ * 进程在任何时刻崩溃，目标文件都只会是旧内容或新内容，不会被截断。
+ * 批量写入时先写完所有临时文件再集中同步、重命名，同一目录只同步一次。
+ * 写入成功后发布 {@link WorkspaceChangeEvent}（origin=TOOL），缓存和索引无需等待文件监听即可更新。
+ */
+@Service
+public class AtomicFileWriter {
+
+    private static final Logger logger = LoggerFactory.getLogger(AtomicFileWriter.class);
+
+    private final AppProperties.WriteDurability durability;
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final AtomicLong filesWritten = new AtomicLong(0);
+    private final AtomicLong batches = new AtomicLong(0);
+    private final AtomicLong fileSyncs = new AtomicLong(0);
+    private final AtomicLong directorySyncs = new AtomicLong(0);
+    private final AtomicLong syncNanos = new AtomicLong(0);
+
+    public AtomicFileWriter(AppProperties appProperties, ApplicationEventPublisher eventPublisher) {
+        this.durability = appProperties.getWorkspace().getWriteDurability();
+        this.eventPublisher = eventPublisher;
+    }
+
+    /**
+     * 原子写入单个文件（UTF-8），自动创建父目录
+     */
+    public void write(Path target, String content) throws IOException {
+        writeAll(Map.of(target, content));
+    }
+
+    /**
+     * 批量原子写入：写入全部临时文件 → 集中同步 → 依次重命名 → 同步涉及的目录
+     * 同一路径出现多次时以最后一次为准；任一步失败时清理剩余的临时文件。
+     * 重命名逐个进行，中途失败时把已替换的文件恢复为原内容、删除新建的文件（新建的父目录保留），整批要么全部写入要么都不写入；
+     * 个别文件无法恢复时抛出的异常列出这些文件，并为它们发布变更事件。
+     */
+    public void writeAll(Map<Path, String> files) throws IOException {
+        if (files.isEmpty()) {
+            return;
+        }
+        Map<Path, Path> temps = new LinkedHashMap<>();
+        try {
+            for (Map.Entry<Path, String> entry : files.entrySet()) {
+                Path target = entry.getKey().toAbsolutePath().normalize();
+                Files.createDirectories(target.getParent());
+                Path temp = tempFileFor(target);
+                writeBytes(temp, entry.getValue().getBytes(StandardCharsets.UTF_8));
+                copyPermissions(target, temp);
+                Path previous = temps.put(target, temp);
+                if (previous != null) {
+                    Files.deleteIfExists(previous);
+                }
+            }
+
+            for (Path temp : temps.values()) {
+                syncFile(temp);
+            }
+
+            Set<Path> directories = new LinkedHashSet<>();
+            List<WorkspaceChangeEvent.Change> changes = new ArrayList<>(temps.size());
+            // 多个文件时先保留已有目标文件的原内容（硬链接），单个文件的重命名本身是原子的
+            Map<Path, Path> originals = temps.size() > 1 ? preserveOriginals(temps.keySet()) : Map.of();
+            try {
+                for (Map.Entry<Path, Path> entry : temps.entrySet()) {
+                    WorkspaceChangeEvent.Kind kind = changeKind(entry.getKey());
+                    move(entry.getValue(), entry.getKey());
+                    changes.add(new WorkspaceChangeEvent.Change(entry.getKey(), kind, false));
+                    directories.add(entry.getKey().getParent());
+                }
+            } catch (IOException | RuntimeException e) {
+                rollback(changes, originals, e);
+                throw e;
+            } finally {
+                for (Path original : originals.values()) {
+                    Files.deleteIfExists(original);
+                }
+            }
+            syncDirectories(directories);
+
+            filesWritten.addAndGet(temps.size());
+            batches.incrementAndGet();
+            eventPublisher.publishEvent(new WorkspaceChangeEvent(changes, WorkspaceChangeEvent.Origin.TOOL));
+        } finally {
+            // 已重命名的临时文件不存在，这里只会清理失败后残留的临时文件
+            for (Path temp : temps.values()) {
+                Files.deleteIfExists(temp);
+            }
+        }
+    }
+
+    /**
+     * 为已存在的目标文件在同目录下保留一份原内容：优先创建硬链接，不支持时复制
+     *
+     * @return 目标文件 → 原内容文件
+     */
+    private Map<Path, Path> preserveOriginals(Set<Path> targets) throws IOException {
+        Map<Path, Path> originals = new LinkedHashMap<>();
+        try {
+            for (Path target : targets) {
+                if (!Files.exists(target, LinkOption.NOFOLLOW_LINKS)) {
+                    continue;
+                }
+                Path original = tempFileFor(target);
+                if (Files.isRegularFile(target, LinkOption.NOFOLLOW_LINKS)) {
+                    try {
+                        Files.createLink(original, target);
+                    } catch (UnsupportedOperationException | IOException e) {
+                        Files.copy(target, original, StandardCopyOption.COPY_ATTRIBUTES);
+                    }
+                } else {
+                    // 符号链接：保留链接本身
+                    Files.copy(target, original, LinkOption.NOFOLLOW_LINKS, StandardCopyOption.COPY_ATTRIBUTES);
+                }
+                originals.put(target, original);
+            }
+        } catch (IOException | RuntimeException e) {
+            for (Path original : originals.values()) {
+                Files.deleteIfExists(original);
+            }
+            throw e;
+        }
+        return originals;
+    }
+
+    /**
+     * 重命名中途失败时撤销已完成的重命名：恢复原内容或删除新建的文件
+     * 无法恢复的文件已是新内容，为它们发布变更事件并通过抛出的异常列出
+     */
+    private void rollback(List<WorkspaceChangeEvent.Change> applied, Map<Path, Path> originals,
+                          Exception cause) throws IOException {
+        List<WorkspaceChangeEvent.Change> unrestored = new ArrayList<>();
+        for (WorkspaceChangeEvent.Change change : applied) {
+            try {
+                Path original = originals.get(change.path());
+                if (original != null) {
+                    move(original, change.path());
+                } else {
+                    Files.deleteIfExists(change.path());
+                }
+            } catch (IOException | RuntimeException e) {
+                logger.error("批量写入回滚失败: {}, error={}", change.path(), e.getMessage());
+                cause.addSuppressed(e);
+                unrestored.add(change);
+            }
+        }
+        if (applied.isEmpty()) {
+            return;
+        }
+        logger.warn("批量写入失败，已恢复 {} 个已替换的文件", applied.size() - unrestored.size());
+        if (!unrestored.isEmpty()) {
+            filesWritten.addAndGet(unrestored.size());
+            eventPublisher.publishEvent(new WorkspaceChangeEvent(unrestored, WorkspaceChangeEvent.Origin.TOOL));
+            throw new IOException("Batch write failed and " + unrestored.size()
+                    + " file(s) could not be restored and now have the new content: "
+                    + unrestored.stream().map(change -> change.path().toString()).toList() + " (" + cause.getMessage() + ")",
+                    cause);
+        }
+    }
+
+    /**
+     * 为目标文件生成同目录下的临时文件路径，保证重命名在同一文件系统内完成
+     */
+    public Path tempFileFor(Path target) {
+        return target.resolveSibling("." + target.getFileName() + ".tmp-" + UUID.randomUUID());
+    }
+
+    /**
+     * 把已写好的临时文件按落盘策略同步后原子替换目标文件，失败时删除临时文件
+     */
+    public void commit(Path temp, Path target) throws IOException {
+        Path normalized = target.toAbsolutePath().normalize();
+        WorkspaceChangeEvent.Kind kind = changeKind(normalized);
+        try {
+            copyPermissions(target, temp);
+            syncFile(temp);
+            move(temp, target);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        syncDirectories(Set.of(normalized.getParent()));
+        filesWritten.incrementAndGet();
+        batches.incrementAndGet();
+        eventPublisher.publishEvent(WorkspaceChangeEvent.of(normalized, kind, WorkspaceChangeEvent.Origin.TOOL));
+    }
+
+    public Map<String, Object> getStats() {
+        return Map.of(
+                "durability", durability.name(),
+                "filesWritten", filesWritten.get(),
+                "batches", batches.get(),
+                "fileSyncs", fileSyncs.get(),
+                "directorySyncs", directorySyncs.get(),
+                "syncMillis", syncNanos.get() / 1_000_000
+        );
+    }
+
+    private static WorkspaceChangeEvent.Kind changeKind(Path target) {
+        return Files.exists(target) ? WorkspaceChangeEvent.Kind.MODIFIED : WorkspaceChangeEvent.Kind.CREATED;
+    }
+
+    private void writeBytes(Path temp, byte[] bytes) throws IOException {
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+
+    private void syncFile(Path temp) throws IOException {
+        if (durability == AppProperties.WriteDurability.NONE) {
+            return;
+        }
+        long start = System.nanoTime();
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+            channel.force(durability == AppProperties.WriteDurability.FULL);
+        }
+        syncNanos.addAndGet(System.nanoTime() - start);
+        fileSyncs.incrementAndGet();
+    }
+
+    /**
+     * 同步目录使重命名落盘；部分平台（如 Windows）不支持打开目录，忽略即可
+     */
+    private void syncDirectories(Set<Path> directories) {
+        if (durability != AppProperties.WriteDurability.FULL) {
+            return;
+        }
+        for (Path directory : directories) {
+            long start = System.nanoTime();
+            try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+                channel.force(true);
+                directorySyncs.incrementAndGet();
+            } catch (IOException e) {
+                logger.debug("目录同步不可用: {}, error={}", directory, e.getMessage());
+            }
+            syncNanos.addAndGet(System.nanoTime() - start);
+        }
+    }
+
+    private void move(Path temp, Path target) throws IOException {
+        try {
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * 替换已有文件时保留其权限（如可执行位）
+     */
+    private void copyPermissions(Path target, Path temp) {
+        PosixFileAttributeView targetView = Files.getFileAttributeView(target, PosixFileAttributeView.class);
+        if (targetView == null || !Files.exists(target)) {
+            return;
+        }
+        try {
+            Files.setPosixFilePermissions(temp, targetView.readAttributes().permissions());
+        } catch (IOException | UnsupportedOperationException e) {
+            logger.debug("复制文件权限失败: {}, error={}", target, e.getMessage());
+        }
+    }
+}
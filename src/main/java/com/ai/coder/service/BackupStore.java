@@ -0,0 +1,426 @@
+package com.ai.coder.service;
+
+import com.ai.coder.config.AppProperties;
+import com.ai.coder.config.TaskContextHolder;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 文件备份存储
+ * 工具修改文件前把原内容按 SHA-256 哈希存入隐藏目录（默认 工作目录/.ai-coder/backups），
+ * 相同内容只存一份，可选 gzip 压缩；每个任务一份追加写入的清单，记录备份的文件和对应哈希，
+ * 可按任务把文件恢复到任务修改前的内容。备份总大小和保留时间有上限，超出后整份删除最久未更新的清单，
+ * 内容只在不再被任何保留的清单引用时删除，保证保留的清单都能完整恢复。
+ */
+@Service
+public class BackupStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(BackupStore.class);
+
+    // 两次过期清理之间的最小间隔（毫秒）
+    private static final long SWEEP_INTERVAL_MS = 10 * 60_000L;
+
+    private static final String NO_TASK = "no-task";
+    private static final String COMPRESSED_SUFFIX = ".gz";
+
+    private final AppProperties.Backup config;
+    private final Path workspaceRoot;
+    private final Path objectsDirectory;
+    private final Path manifestsDirectory;
+    private final AtomicFileWriter atomicFileWriter;
+    private final WorkspacePathPolicy workspacePathPolicy;
+    private final ObjectMapper objectMapper;
+
+    // 写入内容和追加清单持有读锁，清理持有写锁，避免清理在两者之间删除刚被引用的内容
+    private final ReadWriteLock sweepLock = new ReentrantReadWriteLock();
+
+    private final AtomicLong lastSweepTime = new AtomicLong(0);
+    private final AtomicLong backups = new AtomicLong(0);
+    private final AtomicLong dedupHits = new AtomicLong(0);
+    private final AtomicLong storedBytes = new AtomicLong(0);
+    private final AtomicLong evictedObjects = new AtomicLong(0);
+    private final AtomicLong evictedManifests = new AtomicLong(0);
+
+    /**
+     * 清单中的一条备份记录
+     *
+     * @param path 相对工作目录的文件路径
+     * @param hash 备份内容的 SHA-256
+     * @param size 原文件字节数
+     */
+    public record BackupEntry(long timestamp, String path, String hash, long size, String tool) {
+    }
+
+    public BackupStore(AppProperties appProperties, AtomicFileWriter atomicFileWriter,
+                       WorkspacePathPolicy workspacePathPolicy) {
+        this.config = appProperties.getBackup();
+        this.atomicFileWriter = atomicFileWriter;
+        this.workspacePathPolicy = workspacePathPolicy;
+        this.workspaceRoot = workspacePathPolicy.getRoot();
+        this.objectMapper = new ObjectMapper()
+                .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+        String directory = config.getDirectory();
+        Path backupDirectory = directory == null || directory.isBlank()
+                ? workspaceRoot.resolve(".ai-coder").resolve("backups")
+                : Paths.get(directory);
+        this.objectsDirectory = backupDirectory.resolve("objects");
+        this.manifestsDirectory = backupDirectory.resolve("manifests");
+    }
+
+    /**
+     * 备份文件当前内容，记录到当前任务的清单
+     * 只读取一次原文件：边计算哈希边写入临时对象，哈希已存在时丢弃临时对象
+     */
+    public BackupEntry backup(Path file, String tool) throws IOException {
+        Files.createDirectories(objectsDirectory);
+        Path incoming = objectsDirectory.resolve(".incoming-" + UUID.randomUUID());
+        String hash;
+        long size = Files.size(file);
+        BackupEntry entry;
+
+        try {
+            MessageDigest digest = newDigest();
+            try (InputStream in = new DigestInputStream(Files.newInputStream(file), digest);
+                 OutputStream out = openObjectOutput(incoming)) {
+                in.transferTo(out);
+            }
+            hash = HexFormat.of().formatHex(digest.digest());
+
+            entry = new BackupEntry(System.currentTimeMillis(), relativize(file), hash, size, tool);
+            sweepLock.readLock().lock();
+            try {
+                storeObject(incoming, hash);
+                appendManifest(currentTaskId(), entry);
+            } finally {
+                sweepLock.readLock().unlock();
+            }
+        } finally {
+            Files.deleteIfExists(incoming);
+        }
+        backups.incrementAndGet();
+        logger.info("💾 备份文件: {} -> {}", entry.path(), hash.substring(0, 12));
+
+        sweepIfDue();
+        return entry;
+    }
+
+    /**
+     * 获取任务的备份清单（按备份时间先后）
+     */
+    public List<BackupEntry> getManifest(String taskId) throws IOException {
+        Path manifest = manifestPath(taskId);
+        List<BackupEntry> entries = new ArrayList<>();
+        if (!Files.exists(manifest)) {
+            return entries;
+        }
+        for (String line : Files.readAllLines(manifest, StandardCharsets.UTF_8)) {
+            if (!line.isBlank()) {
+                entries.add(objectMapper.readValue(line, BackupEntry.class));
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * 把文件恢复为任务中的备份内容
+     *
+     * @param hash 指定要恢复的版本；为空时恢复任务中该文件的第一次备份，即任务修改前的内容
+     * @return 被恢复的备份记录
+     */
+    public BackupEntry restore(String taskId, String path, String hash) throws IOException {
+        BackupEntry target = null;
+        for (BackupEntry entry : getManifest(taskId)) {
+            if (entry.path().equals(path) && (hash == null || hash.isBlank() || entry.hash().equals(hash))) {
+                target = entry;
+                break;
+            }
+        }
+        if (target == null) {
+            throw new IllegalArgumentException("任务 " + taskId + " 中没有文件的备份: " + path);
+        }
+
+        // 写入策略解析后的真实位置，清单中的路径可能经由符号链接指向工作目录之外
+        Path file = workspacePathPolicy.resolve(workspaceRoot.resolve(target.path()));
+        if (file == null) {
+            throw new IllegalArgumentException("路径不在工作目录内: " + path);
+        }
+
+        Files.createDirectories(file.getParent());
+        Path temp = atomicFileWriter.tempFileFor(file);
+        // 持有读锁读取内容，清理不会在读取期间删除
+        sweepLock.readLock().lock();
+        try {
+            Path object = objectPath(target.hash());
+            if (!Files.exists(object)) {
+                throw new IllegalStateException("备份内容已过期清理: " + target.hash());
+            }
+            try (InputStream in = openObjectInput(object);
+                 OutputStream out = Files.newOutputStream(temp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                in.transferTo(out);
+            }
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        } finally {
+            sweepLock.readLock().unlock();
+        }
+        atomicFileWriter.commit(temp, file);
+
+        logger.info("♻️ 恢复文件: taskId={}, {} <- {}", taskId, target.path(), target.hash().substring(0, 12));
+        return target;
+    }
+
+    public Map<String, Object> getStats() {
+        return Map.of(
+                "backups", backups.get(),
+                "dedupHits", dedupHits.get(),
+                "storedBytes", storedBytes.get(),
+                "evictedObjects", evictedObjects.get(),
+                "evictedManifests", evictedManifests.get(),
+                "compress", config.isCompress()
+        );
+    }
+
+    /**
+     * 把临时对象存为哈希对应的内容对象，已有相同内容时只刷新使用时间
+     * 调用方持有读锁，清理不会在此期间删除对象；对象在检查后被外部删除时重新写入
+     */
+    private void storeObject(Path incoming, String hash) throws IOException {
+        Path object = objectPath(hash);
+        try {
+            Files.setLastModifiedTime(object, FileTime.fromMillis(System.currentTimeMillis()));
+            dedupHits.incrementAndGet();
+            return;
+        } catch (NoSuchFileException e) {
+            // 尚无相同内容，或对象刚被删除，写入本次内容
+        }
+
+        Files.createDirectories(object.getParent());
+        try {
+            Files.move(incoming, object, StandardCopyOption.ATOMIC_MOVE);
+            storedBytes.addAndGet(Files.size(object));
+        } catch (FileAlreadyExistsException e) {
+            dedupHits.incrementAndGet();
+        }
+    }
+
+    /**
+     * 按保留天数和总大小清理，持有写锁，不与备份和恢复交错
+     */
+    private void sweepIfDue() {
+        long now = System.currentTimeMillis();
+        long last = lastSweepTime.get();
+        if (now - last < SWEEP_INTERVAL_MS || !lastSweepTime.compareAndSet(last, now)) {
+            return;
+        }
+
+        sweepLock.writeLock().lock();
+        try {
+            sweep(now - TimeUnit.DAYS.toMillis(config.getMaxAgeDays()));
+        } catch (IOException e) {
+            logger.warn("清理备份失败: {}", e.getMessage());
+        } finally {
+            sweepLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 先删除过期的清单，再删除不被任何保留清单引用的内容；总大小仍超出上限时，
+     * 从最久未更新的清单开始整份删除，连同只被这些清单引用的内容，直到低于上限。
+     * 保留的清单引用的内容不会被删除，按任务恢复时不会缺失部分文件。
+     */
+    private void sweep(long cutoff) throws IOException {
+        List<ManifestFile> manifests = new ArrayList<>();
+        Map<String, Integer> references = new HashMap<>();
+        if (Files.isDirectory(manifestsDirectory)) {
+            try (Stream<Path> files = Files.list(manifestsDirectory)) {
+                for (Path manifest : files.toList()) {
+                    long modified = Files.getLastModifiedTime(manifest).toMillis();
+                    if (modified < cutoff) {
+                        if (Files.deleteIfExists(manifest)) {
+                            evictedManifests.incrementAndGet();
+                        }
+                        continue;
+                    }
+                    Set<String> hashes = readHashes(manifest);
+                    hashes.forEach(hash -> references.merge(hash, 1, Integer::sum));
+                    manifests.add(new ManifestFile(manifest, modified, hashes));
+                }
+            }
+        }
+
+        if (!Files.isDirectory(objectsDirectory)) {
+            return;
+        }
+        List<Path> objects;
+        try (Stream<Path> walk = Files.walk(objectsDirectory)) {
+            objects = walk.filter(Files::isRegularFile)
+                    .filter(path -> !path.getFileName().toString().startsWith(".incoming-"))
+                    .toList();
+        }
+
+        Map<String, List<StoredObject>> retained = new HashMap<>();
+        long total = 0;
+        for (Path object : objects) {
+            String hash = hashOf(object);
+            if (!references.containsKey(hash)) {
+                deleteObject(object);
+                continue;
+            }
+            long size = Files.size(object);
+            retained.computeIfAbsent(hash, key -> new ArrayList<>()).add(new StoredObject(object, size));
+            total += size;
+        }
+
+        manifests.sort(Comparator.comparingLong(ManifestFile::lastModified));
+        for (ManifestFile manifest : manifests) {
+            if (total <= config.getMaxTotalBytes()) {
+                break;
+            }
+            Files.deleteIfExists(manifest.path());
+            evictedManifests.incrementAndGet();
+            for (String hash : manifest.hashes()) {
+                if (references.merge(hash, -1, Integer::sum) > 0) {
+                    continue;
+                }
+                for (StoredObject object : retained.getOrDefault(hash, List.of())) {
+                    deleteObject(object.path());
+                    total -= object.size();
+                }
+                retained.remove(hash);
+            }
+        }
+        storedBytes.set(total);
+        logger.debug("备份清理完成: 清单数={}, 内容数={}, 总大小={} bytes",
+                manifests.size(), retained.size(), total);
+    }
+
+    /**
+     * 读取清单引用的内容哈希，跳过损坏的记录
+     */
+    private Set<String> readHashes(Path manifest) throws IOException {
+        Set<String> hashes = new HashSet<>();
+        for (String line : Files.readAllLines(manifest, StandardCharsets.UTF_8)) {
+            if (line.isBlank()) {
+                continue;
+            }
+            try {
+                hashes.add(objectMapper.readValue(line, BackupEntry.class).hash());
+            } catch (IOException e) {
+                logger.debug("跳过损坏的清单记录: {}", manifest.getFileName());
+            }
+        }
+        return hashes;
+    }
+
+    private static String hashOf(Path object) {
+        String name = object.getFileName().toString();
+        return name.endsWith(COMPRESSED_SUFFIX) ? name.substring(0, name.length() - COMPRESSED_SUFFIX.length()) : name;
+    }
+
+    private void deleteObject(Path object) throws IOException {
+        if (Files.deleteIfExists(object)) {
+            evictedObjects.incrementAndGet();
+        }
+    }
+
+    private synchronized void appendManifest(String taskId, BackupEntry entry) throws IOException {
+        Files.createDirectories(manifestsDirectory);
+        byte[] line = (objectMapper.writeValueAsString(entry) + "\n").getBytes(StandardCharsets.UTF_8);
+        Files.write(manifestPath(taskId), line, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    private OutputStream openObjectOutput(Path path) throws IOException {
+        OutputStream out = Files.newOutputStream(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        return config.isCompress() ? new GZIPOutputStream(out, 64 * 1024) : out;
+    }
+
+    private InputStream openObjectInput(Path object) throws IOException {
+        InputStream in = Files.newInputStream(object);
+        return object.getFileName().toString().endsWith(COMPRESSED_SUFFIX) ? new GZIPInputStream(in, 64 * 1024) : in;
+    }
+
+    /**
+     * 内容对象路径：objects/哈希前两位/哈希[.gz]
+     * 已存在另一种压缩形式的对象时直接复用
+     */
+    private Path objectPath(String hash) {
+        Path directory = objectsDirectory.resolve(hash.substring(0, 2));
+        Path compressed = directory.resolve(hash + COMPRESSED_SUFFIX);
+        Path plain = directory.resolve(hash);
+        if (Files.exists(compressed)) {
+            return compressed;
+        }
+        if (Files.exists(plain)) {
+            return plain;
+        }
+        return config.isCompress() ? compressed : plain;
+    }
+
+    private Path manifestPath(String taskId) {
+        return manifestsDirectory.resolve(taskId.replaceAll("[^A-Za-z0-9_-]", "_") + ".jsonl");
+    }
+
+    private String currentTaskId() {
+        String taskId = TaskContextHolder.getCurrentTaskId();
+        return taskId != null ? taskId : NO_TASK;
+    }
+
+    private String relativize(Path file) {
+        Path absolute = file.toAbsolutePath().normalize();
+        if (absolute.startsWith(workspaceRoot)) {
+            return workspaceRoot.relativize(absolute).toString().replace('\\', '/');
+        }
+        return absolute.toString();
+    }
+
+    private record StoredObject(Path path, long size) {
+    }
+
+    private record ManifestFile(Path path, long lastModified, Set<String> hashes) {
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 不可用", e);
+        }
+    }
+}
@@ -0,0 +1,292 @@
+package com.ai.coder.service;
+
+import com.ai.coder.config.AppProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 上下文窗口管理器
+ * 位于对话历史与 ChatClient 之间：估算每条消息的token数，
+ * 历史超出预算时保留最近的消息，把更早的轮次增量折叠进滚动摘要，
+ * 使每轮的提示长度保持在预算内，而不是随轮数持续增长。
+ */
+@Service
+public class ContextWindowManager {
+
+    private static final Logger logger = LoggerFactory.getLogger(ContextWindowManager.class);
+
+    // 每条消息的固定开销（角色、分隔符等）
+    private static final int MESSAGE_OVERHEAD_TOKENS = 4;
+
+    // 折叠后目标占预算的比例，留出余量避免每轮都触发摘要
+    private static final double FOLD_TARGET_RATIO = 0.75;
+
+    // 生成摘要时每条消息最多取的字符数
+    private static final int MAX_CHARS_PER_FOLDED_MESSAGE = 2_000;
+
+    // 截取式摘要中每条消息保留的字符数
+    private static final int EXTRACT_CHARS_PER_MESSAGE = 200;
+
+    private static final String SUMMARY_PROMPT = """
+            请把下面的对话内容压缩为简洁的中文摘要，供后续对话继续使用。
+            保留：用户的目标和要求、已完成的操作（创建/修改了哪些文件）、关键决定、未完成的事项。
+            省略寒暄和重复内容，不要超过 %d 个字符，直接输出摘要正文。
+
+            已有摘要：
+            %s
+
+            新增对话：
+            %s
+            """;
+
+    private static final String SUMMARY_HEADER = "【早期对话摘要】以下是本任务之前对话的摘要，请在此基础上继续：\n";
+
+    private final ChatModel chatModel;
+    private final AppProperties.Conversation config;
+
+    private final AtomicLong totalTokensSaved = new AtomicLong(0);
+    private final AtomicLong totalSummarizations = new AtomicLong(0);
+
+    public ContextWindowManager(ChatModel chatModel, AppProperties appProperties) {
+        this.chatModel = chatModel;
+        this.config = appProperties.getConversation();
+    }
+
+    /**
+     * 为一个任务创建上下文窗口
+     *
+     * @param pinnedIndex 始终保留的消息下标（任务的初始用户消息）
+     */
+    public ContextWindow open(int pinnedIndex) {
+        return new ContextWindow(pinnedIndex);
+    }
+
+    /**
+     * 构建发送给模型的消息列表
+     *
+     * @param window  任务的上下文窗口
+     * @param history 完整的工作历史（只追加，不修改已有消息）
+     * @return 不超过预算的消息列表；未超出预算时与历史内容相同
+     */
+    public List<Message> buildPrompt(ContextWindow window, List<Message> history) {
+        if (!config.isContextWindowEnabled()) {
+            return history;
+        }
+
+        synchronized (window) {
+            int fullTokens = window.measure(history);
+            int budget = Math.max(1, config.getMaxPromptTokens());
+
+            if (window.promptTokens(history) > budget) {
+                fold(window, history, (int) (budget * FOLD_TARGET_RATIO));
+            }
+
+            if (window.foldedCount == 0) {
+                return history;
+            }
+
+            List<Message> prompt = window.assemble(history);
+            int saved = fullTokens - window.promptTokens(history);
+            if (saved > 0) {
+                window.tokensSaved += saved;
+                totalTokensSaved.addAndGet(saved);
+            }
+            return prompt;
+        }
+    }
+
+    /**
+     * 从最早未折叠的消息开始折叠，直到提示低于目标或只剩最近的消息
+     */
+    private void fold(ContextWindow window, List<Message> history, int targetTokens) {
+        int foldLimit = Math.max(window.foldedCount, history.size() - Math.max(1, config.getRecentMessages()));
+        int end = window.foldedCount;
+        int remaining = window.promptTokens(history);
+        while (end < foldLimit && remaining > targetTokens) {
+            if (end != window.pinnedIndex) {
+                remaining -= window.tokenCounts.get(end);
+            }
+            end++;
+        }
+
+        if (end == window.foldedCount) {
+            logger.debug("上下文超出预算但没有可折叠的消息，保留最近 {} 条", config.getRecentMessages());
+            return;
+        }
+
+        List<Message> toFold = new ArrayList<>();
+        for (int i = window.foldedCount; i < end; i++) {
+            if (i != window.pinnedIndex) {
+                toFold.add(history.get(i));
+            }
+        }
+
+        long startTime = System.currentTimeMillis();
+        window.summary = summarize(window.summary, toFold);
+        window.summaryTokens = estimateTokens(SUMMARY_HEADER + window.summary) + MESSAGE_OVERHEAD_TOKENS;
+        window.foldedCount = end;
+        window.summarizations++;
+        totalSummarizations.incrementAndGet();
+
+        logger.info("📉 折叠 {} 条早期消息到摘要，耗时 {}ms，当前提示约 {} tokens",
+                toFold.size(), System.currentTimeMillis() - startTime, window.promptTokens(history));
+    }
+
+    /**
+     * 把新折叠的消息合并进已有摘要
+     */
+    private String summarize(String previousSummary, List<Message> messages) {
+        if (config.isLlmSummaryEnabled()) {
+            try {
+                String prompt = String.format(SUMMARY_PROMPT, config.getSummaryMaxChars(),
+                        previousSummary.isEmpty() ? "（无）" : previousSummary,
+                        render(messages, MAX_CHARS_PER_FOLDED_MESSAGE));
+                String summary = ChatClient.create(chatModel)
+                        .prompt()
+                        .user(prompt)
+                        .call()
+                        .content();
+                if (summary != null && !summary.isBlank()) {
+                    return limit(summary.trim());
+                }
+            } catch (Exception e) {
+                logger.warn("LLM摘要生成失败，使用截取式摘要: {}", e.getMessage());
+            }
+        }
+
+        String extract = render(messages, EXTRACT_CHARS_PER_MESSAGE);
+        return limit(previousSummary.isEmpty() ? extract : previousSummary + "\n" + extract);
+    }
+
+    private String render(List<Message> messages, int maxCharsPerMessage) {
+        StringBuilder builder = new StringBuilder();
+        for (Message message : messages) {
+            String text = message.getText();
+            if (text == null || text.isBlank()) {
+                continue;
+            }
+            if (text.length() > maxCharsPerMessage) {
+                text = text.substring(0, maxCharsPerMessage) + "...";
+            }
+            builder.append(message instanceof AssistantMessage ? "助手: " : "用户: ")
+                    .append(text.replace('\n', ' '))
+                    .append('\n');
+        }
+        return builder.toString().trim();
+    }
+
+    // 摘要超长时保留最新的部分
+    private String limit(String summary) {
+        int maxChars = config.getSummaryMaxChars();
+        return summary.length() <= maxChars ? summary : summary.substring(summary.length() - maxChars);
+    }
+
+    /**
+     * 估算文本的token数：中日韩字符按每字1个token，其余按每4个字符1个token
+     */
+    public static int estimateTokens(String text) {
+        if (text == null || text.isEmpty()) {
+            return 0;
+        }
+        int wideChars = 0;
+        int otherChars = 0;
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) >= 0x2E80) {
+                wideChars++;
+            } else {
+                otherChars++;
+            }
+        }
+        return wideChars + (otherChars + 3) / 4;
+    }
+
+    public static int estimateTokens(Message message) {
+        return estimateTokens(message.getText()) + MESSAGE_OVERHEAD_TOKENS;
+    }
+
+    public long getTotalTokensSaved() {
+        return totalTokensSaved.get();
+    }
+
+    public long getTotalSummarizations() {
+        return totalSummarizations.get();
+    }
+
+    /**
+     * 单个任务的上下文窗口状态
+     * 历史中 [0, foldedCount) 的消息（固定保留的消息除外）已折叠进摘要
+     */
+    public static final class ContextWindow {
+        private final int pinnedIndex;
+        // 按下标缓存的消息token估算值，历史只追加，因此只需计算新增部分
+        private final List<Integer> tokenCounts = new ArrayList<>();
+        private int measuredTokens;
+
+        private String summary = "";
+        private int summaryTokens;
+        private int foldedCount;
+        private int summarizations;
+        private long tokensSaved;
+
+        private ContextWindow(int pinnedIndex) {
+            this.pinnedIndex = pinnedIndex;
+        }
+
+        /**
+         * 更新token缓存并返回完整历史的估算token数
+         */
+        private int measure(List<Message> history) {
+            // 预执行被丢弃时历史可能比缓存短
+            while (tokenCounts.size() > history.size()) {
+                measuredTokens -= tokenCounts.remove(tokenCounts.size() - 1);
+            }
+            for (int i = tokenCounts.size(); i < history.size(); i++) {
+                int tokens = estimateTokens(history.get(i));
+                tokenCounts.add(tokens);
+                measuredTokens += tokens;
+            }
+            return measuredTokens;
+        }
+
+        /**
+         * 当前折叠状态下提示的估算token数
+         */
+        private int promptTokens(List<Message> history) {
+            int tokens = measuredTokens;
+            for (int i = 0; i < Math.min(foldedCount, tokenCounts.size()); i++) {
+                if (i != pinnedIndex) {
+                    tokens -= tokenCounts.get(i);
+                }
+            }
+            return foldedCount > 0 ? tokens + summaryTokens : tokens;
+        }
+
+        private List<Message> assemble(List<Message> history) {
+            List<Message> prompt = new ArrayList<>(history.size() - foldedCount + 2);
+            prompt.add(new UserMessage(SUMMARY_HEADER + summary));
+            if (pinnedIndex < foldedCount && pinnedIndex < history.size()) {
+                prompt.add(history.get(pinnedIndex));
+            }
+            prompt.addAll(history.subList(foldedCount, history.size()));
+            return prompt;
+        }
+
+        public synchronized long getTokensSaved() {
+            return tokensSaved;
+        }
+
+        public synchronized int getSummarizations() {
+            return summarizations;
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.ai.coder.service;
 
+import com.ai.coder.config.AppProperties;
 import com.ai.coder.config.TaskContextHolder;
 import com.ai.coder.model.ConversationResult;
 import com.ai.coder.model.NextSpeakerResponse;
@@ -15,9 +16,11 @@ import org.springframework.ai.chat.model.ChatResponse;
 import org.springframework.ai.chat.model.Generation;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * 连续对话服务
@@ -29,6 +32,10 @@ public class ContinuousConversationService {
 
     private final ChatClient chatClient;
     private final NextSpeakerService nextSpeakerService;
+    private final StreamingTurnEngine streamingTurnEngine;
+    private final ConversationScheduler conversationScheduler;
+    private final ContextWindowManager contextWindowManager;
+    private final AppProperties appProperties;
 
     @Autowired
     private LogStreamService logStreamService;
@@ -53,31 +60,43 @@ public class ContinuousConversationService {
 
 
     private final TaskSummaryService taskSummaryService;
-    private final Map<String, TaskStatus> taskStatusMap = new ConcurrentHashMap<>();
-    private final Map<String, ConversationResult> conversationResults = new ConcurrentHashMap<>();
+    private final TaskRegistry taskRegistry;
+    private final FileContentCache fileContentCache;
 
     // 修改构造函数
     public ContinuousConversationService(ChatClient chatClient,
                                          NextSpeakerService nextSpeakerService,
-                                         TaskSummaryService taskSummaryService) {
+                                         TaskSummaryService taskSummaryService,
+                                         StreamingTurnEngine streamingTurnEngine,
+                                         ConversationScheduler conversationScheduler,
+                                         ContextWindowManager contextWindowManager,
+                                         TaskRegistry taskRegistry,
+                                         FileContentCache fileContentCache,
+                                         AppProperties appProperties) {
         this.chatClient = chatClient;
         this.nextSpeakerService = nextSpeakerService;
         this.taskSummaryService = taskSummaryService;
+        this.streamingTurnEngine = streamingTurnEngine;
+        this.conversationScheduler = conversationScheduler;
+        this.contextWindowManager = contextWindowManager;
+        this.taskRegistry = taskRegistry;
+        this.fileContentCache = fileContentCache;
+        this.appProperties = appProperties;
     }
 
     // 添加任务状态管理方法
     public TaskStatus getTaskStatus(String taskId) {
-        return taskStatusMap.get(taskId);
+        return taskRegistry.getStatus(taskId);
     }
 
-    // 获取对话结果
+    // 获取对话结果（内存中已淘汰时从磁盘加载）
     public ConversationResult getConversationResult(String taskId) {
-        return conversationResults.get(taskId);
+        return taskRegistry.getResult(taskId);
     }
 
     // 存储对话结果
     private void storeConversationResult(String taskId, ConversationResult result) {
-        conversationResults.put(taskId, result);
+        taskRegistry.storeResult(taskId, result);
     }
 
     public String startTask(String initialMessage) {
@@ -89,10 +108,42 @@ public class ContinuousConversationService {
         status.setTotalEstimatedTurns(estimatedTurns);
         status.setCurrentAction("开始分析任务...");
 
-        taskStatusMap.put(taskId, status);
+        taskRegistry.register(status);
         return taskId;
     }
 
+    /**
+     * 任务未被调度器接受时标记为失败，并像执行失败一样推送结束事件、关闭事件流
+     */
+    public void rejectTask(String taskId, String reason) {
+        TaskStatus status = taskRegistry.getStatus(taskId);
+        if (status == null) {
+            logStreamService.pushTaskComplete(taskId);
+            return;
+        }
+        status.setStatus("FAILED");
+        status.setErrorMessage(reason);
+        status.setCurrentAction("任务未能启动: " + reason);
+        logStreamService.pushTaskComplete(status, null);
+    }
+
+    /**
+     * 取消任务，排队中的任务不再执行，执行中的任务会被中断
+     *
+     * @return 任务是否存在且尚未结束
+     */
+    public boolean cancelTask(String taskId) {
+        TaskStatus status = taskRegistry.getStatus(taskId);
+        if (status == null || !status.compareAndSetStatus("RUNNING", "CANCELLED")) {
+            return false;
+        }
+
+        status.setCurrentAction("任务已取消");
+        conversationScheduler.cancel(taskId);
+        logStreamService.pushTaskComplete(taskId);
+        return true;
+    }
+
     /**
      * 智能判断用户消息是否可能需要工具调用
      * 用于决定是否使用异步模式和显示工具执行状态
@@ -166,7 +217,7 @@ public class ContinuousConversationService {
     }
 
     public void executeContinuousConversation(String taskId, String initialMessage, List<Message> conversationHistory) {
-        TaskStatus taskStatus = taskStatusMap.get(taskId);
+        TaskStatus taskStatus = taskRegistry.getStatus(taskId);
         if (taskStatus == null) {
             throw new IllegalArgumentException("任务不存在: " + taskId);
         }
@@ -178,7 +229,7 @@ public class ContinuousConversationService {
         logger.info("开始连续对话，输入为: {}", initialMessage);
 
         // 更新任务状态
-        taskStatus.setCurrentAction("开始处理对话...");
+        updateAction(taskStatus, "开始处理对话...");
         taskStatus.setCurrentTurn(0);
 
         // 创建工作副本
@@ -186,34 +237,45 @@ public class ContinuousConversationService {
         StringBuilder fullResponse = new StringBuilder();
         List<String> turnResponses = new ArrayList<>();
 
-        // 添加初始用户消息
+        // 添加初始用户消息，上下文窗口始终保留该消息
+        ContextWindowManager.ContextWindow contextWindow = contextWindowManager.open(workingHistory.size());
         UserMessage userMessage = new UserMessage(initialMessage);
         workingHistory.add(userMessage);
 
         int turnCount = 0;
         boolean shouldContinue = true;
         String stopReason = null;
+        // 预执行并被保留的下一轮结果
+        TurnResult speculativeTurn = null;
 
         try {
             while (shouldContinue && turnCount < MAX_TURNS) {
+                if (isCancelled(taskStatus)) {
+                    stopReason = "任务已取消";
+                    break;
+                }
+
                 turnCount++;
                 logger.info("执行对话轮次: {}", turnCount);
 
                 // 更新任务状态
                 taskStatus.setCurrentTurn(turnCount);
-                taskStatus.setCurrentAction(String.format("执行第 %d 轮对话...", turnCount));
+                updateAction(taskStatus, String.format("执行第 %d 轮对话...", turnCount));
 
-                // 检查总超时
+                // 检查总超时（已预执行的轮次已产生副作用，仍需记录其结果）
                 long elapsedTime = System.currentTimeMillis() - conversationStartTime;
-                if (elapsedTime > TOTAL_TIMEOUT_MS) {
+                if (elapsedTime > TOTAL_TIMEOUT_MS && speculativeTurn == null) {
                     logger.warn("经过 {}ms 对话超时", elapsedTime);
                     stopReason = "对话总时间超时";
                     break;
                 }
 
                 try {
-                    // 执行单轮对话
-                    TurnResult turnResult = executeSingleTurn(workingHistory, turnCount);
+                    // 执行单轮对话（若上一轮已预执行则直接使用其结果）
+                    TurnResult turnResult = speculativeTurn != null ?
+                            speculativeTurn : executeSingleTurn(taskId,
+                            contextWindowManager.buildPrompt(contextWindow, workingHistory), turnCount);
+                    speculativeTurn = null;
 
                     if (!turnResult.isSuccess()) {
                         logger.error("第 {} 轮执行失败: {}", turnCount, turnResult.getErrorMessage());
@@ -237,12 +299,22 @@ public class ContinuousConversationService {
                         // 更新任务状态 - 显示当前响应的简短摘要
                         String responseSummary = responseText.length() > 100 ?
                                 responseText.substring(0, 100) + "..." : responseText;
-                        taskStatus.setCurrentAction(String.format("第 %d 轮完成: %s", turnCount, responseSummary));
+                        updateAction(taskStatus, String.format("第 %d 轮完成: %s", turnCount, responseSummary));
                     }
+                    logStreamService.pushTurnComplete(taskStatus, turnCount, responseText);
 
                     // 判断是否应该继续
-                    taskStatus.setCurrentAction(String.format("分析第 %d 轮结果，判断是否继续...", turnCount));
-                    shouldContinue = shouldContinueConversation(workingHistory, turnCount, responseText);
+                    updateAction(taskStatus, String.format("分析第 %d 轮结果，判断是否继续...", turnCount));
+                    Boolean quickDecision = quickContinueDecision(turnCount, responseText);
+                    if (quickDecision == null && isSpeculationEnabled()) {
+                        updateAction(taskStatus, String.format("分析第 %d 轮结果，同时预执行第 %d 轮...",
+                                turnCount, turnCount + 1));
+                        speculativeTurn = executeSpeculativeTurn(taskId, workingHistory, contextWindow, turnCount);
+                        shouldContinue = speculativeTurn != null;
+                    } else {
+                        shouldContinue = quickDecision != null ?
+                                quickDecision : checkNextSpeakerDecision(workingHistory);
+                    }
 
                     if (shouldContinue && turnCount < MAX_TURNS) {
                         // 添加继续提示
@@ -250,9 +322,9 @@ public class ContinuousConversationService {
                         UserMessage continueMessage = new UserMessage(continuePrompt);
                         workingHistory.add(continueMessage);
                         logger.info("为第 {} 轮添加连续提示词: {}", turnCount + 1, continuePrompt);
-                        taskStatus.setCurrentAction(String.format("准备第 %d 轮对话...", turnCount + 1));
+                        updateAction(taskStatus, String.format("准备第 %d 轮对话...", turnCount + 1));
                     } else {
-                        taskStatus.setCurrentAction("对话即将结束...");
+                        updateAction(taskStatus, "对话即将结束...");
                     }
 
                 } catch (Exception e) {
@@ -270,7 +342,7 @@ public class ContinuousConversationService {
                     // 更新任务状态为错误
                     taskStatus.setStatus("FAILED");
                     taskStatus.setErrorMessage(e.getMessage());
-                    taskStatus.setCurrentAction("执行出错: " + e.getMessage());
+                    updateAction(taskStatus, "执行出错: " + e.getMessage());
                     break;
                 }
             }
@@ -278,6 +350,10 @@ public class ContinuousConversationService {
             long totalDuration = System.currentTimeMillis() - conversationStartTime;
             logger.info("连续对话经过 {} 轮 结束，耗时 {}ms. 结束原因: {}",
                     turnCount, totalDuration, stopReason);
+            if (contextWindow.getSummarizations() > 0) {
+                logger.info("上下文窗口共折叠 {} 次，节省约 {} tokens",
+                        contextWindow.getSummarizations(), contextWindow.getTokensSaved());
+            }
 
             // 创建结果对象
             ConversationResult result = new ConversationResult(
@@ -289,10 +365,15 @@ public class ContinuousConversationService {
                     stopReason,
                     totalDuration
             );
+            result.setContextTokensSaved(contextWindow.getTokensSaved());
 
-            // 更新任务状态为完成
-            taskStatus.setStatus("COMPLETED");
-            taskStatus.setCurrentAction("对话完成");
+            // 更新任务状态为完成；已取消（或在此期间被取消）的任务保持取消状态，结果仍然保存
+            String previousStatus = taskStatus.getStatus();
+            if (isCancelled(taskStatus) || !taskStatus.compareAndSetStatus(previousStatus, "COMPLETED")) {
+                storeConversationResult(taskId, result);
+                return;
+            }
+            updateAction(taskStatus, "对话完成");
             String summary = String.format("对话完成，共 %d 轮，耗时 %.1f 秒",
                     turnCount, totalDuration / 1000.0);
             if (stopReason != null) {
@@ -303,8 +384,8 @@ public class ContinuousConversationService {
             // 存储结果到任务状态中
             storeConversationResult(taskId, result);
 
-            // 推送任务完成事件
-            logStreamService.pushTaskComplete(taskId);
+            // 推送任务完成事件（附带最终结果）
+            logStreamService.pushTaskComplete(taskStatus, result);
 
         } catch (Exception e) {
             // 处理整个对话过程中的异常
@@ -312,8 +393,13 @@ public class ContinuousConversationService {
             taskStatus.setStatus("FAILED");
             taskStatus.setErrorMessage("Fatal error: " + e.getMessage());
             taskStatus.setCurrentAction("执行失败");
+            // 前端只依赖事件流，失败时同样推送结束事件
+            logStreamService.pushTaskComplete(taskStatus, null);
             throw e;
         } finally {
+            Map<String, Object> cacheStats = fileContentCache.finishTask(taskId);
+            logger.info("📦 任务文件缓存统计: taskId={}, 命中={}, 未命中={}",
+                    taskId, cacheStats.get("hits"), cacheStats.get("misses"));
             // 清理任务上下文
             TaskContextHolder.clearCurrentTaskId();
         }
@@ -322,7 +408,11 @@ public class ContinuousConversationService {
     /**
      * 执行单轮对话
      */
-    private TurnResult executeSingleTurn(List<Message> conversationHistory, int turnNumber) {
+    private TurnResult executeSingleTurn(String taskId, List<Message> conversationHistory, int turnNumber) {
+        if (appProperties.getConversation().isStreamingEnabled()) {
+            return streamingTurnEngine.executeTurn(taskId, conversationHistory, turnNumber, TURN_TIMEOUT_MS);
+        }
+
         long turnStartTime = System.currentTimeMillis();
         try {
             logger.info("执行第 {} 轮对话，历史消息数量: {}", turnNumber, conversationHistory.size());
@@ -354,11 +444,11 @@ public class ContinuousConversationService {
     }
 
     /**
-     * 判断是否应该继续对话，添加LLM智能判断
+     * 基于规则的快速判断，无需LLM调用
+     *
+     * @return 是否继续；返回 null 表示需要智能判断服务
      */
-    private boolean shouldContinueConversation(List<Message> conversationHistory, int turnCount, String lastResponse) {
-        long startTime = System.currentTimeMillis();
-
+    private Boolean quickContinueDecision(int turnCount, String lastResponse) {
         // 达到最大轮数
         if (turnCount >= MAX_TURNS) {
             logger.debug("Reached maximum turns ({}), stopping conversation", MAX_TURNS);
@@ -387,7 +477,14 @@ public class ContinuousConversationService {
             return true;
         }
 
-        // 只有在不确定的情况下才使用智能判断服务（包含LLM调用）
+        return null;
+    }
+
+    /**
+     * 使用智能判断服务（可能包含LLM调用）判断是否继续
+     */
+    private boolean checkNextSpeakerDecision(List<Message> conversationHistory) {
+        long startTime = System.currentTimeMillis();
         try {
             NextSpeakerResponse nextSpeaker =
                     nextSpeakerService.checkNextSpeaker(conversationHistory);
@@ -403,6 +500,52 @@ public class ContinuousConversationService {
         }
     }
 
+    /**
+     * 预执行下一轮：在判断下一发言者的同时开始下一轮对话
+     * 判断结果为用户发言时取消该轮，工具调用在判断完成前不会执行
+     *
+     * @return 被保留的下一轮结果；判断为不继续时返回 null
+     */
+    private TurnResult executeSpeculativeTurn(String taskId, List<Message> workingHistory,
+                                              ContextWindowManager.ContextWindow contextWindow, int turnCount) {
+        List<Message> checkHistory = new ArrayList<>(workingHistory);
+        CompletableFuture<Boolean> decision = Mono.fromCallable(() -> checkNextSpeakerDecision(checkHistory))
+                .subscribeOn(Schedulers.boundedElastic())
+                .onErrorReturn(false)
+                .toFuture();
+
+        // 预执行使用与正常流程相同的继续提示
+        List<Message> speculativeHistory = new ArrayList<>(workingHistory);
+        speculativeHistory.add(new UserMessage(getContinuePrompt(turnCount)));
+
+        TurnResult result = streamingTurnEngine.executeTurn(taskId,
+                contextWindowManager.buildPrompt(contextWindow, speculativeHistory), turnCount + 1,
+                TURN_TIMEOUT_MS, decision);
+        if (result.isCancelled()) {
+            return null;
+        }
+
+        logger.info("保留预执行的第 {} 轮结果", turnCount + 1);
+        return result;
+    }
+
+    /**
+     * 更新当前动作并推送状态增量
+     */
+    private void updateAction(TaskStatus taskStatus, String action) {
+        taskStatus.setCurrentAction(action);
+        logStreamService.pushTaskProgress(taskStatus);
+    }
+
+    private boolean isCancelled(TaskStatus taskStatus) {
+        return "CANCELLED".equals(taskStatus.getStatus()) || Thread.currentThread().isInterrupted();
+    }
+
+    private boolean isSpeculationEnabled() {
+        AppProperties.Conversation conversation = appProperties.getConversation();
+        return conversation.isStreamingEnabled() && conversation.isSpeculativeNextSpeaker();
+    }
+
     /**
      * 检查是否是明显的工具调用场景
      */
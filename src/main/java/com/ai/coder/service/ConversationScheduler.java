@@ -0,0 +1,193 @@
+package com.ai.coder.service;
+
+import com.ai.coder.config.AppProperties;
+import com.ai.coder.config.TaskContextHolder;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 对话任务调度器
+ * 使用独立的有界线程池执行连续对话任务，替代公共 ForkJoinPool：
+ * 限制并发数和排队数（队列满时拒绝新任务），支持按任务取消，
+ * 并为工具执行提供单独的线程池，避免对话线程等待工具结果时占满同一个池。
+ */
+@Service
+public class ConversationScheduler {
+
+    private static final Logger logger = LoggerFactory.getLogger(ConversationScheduler.class);
+
+    private final ThreadPoolExecutor conversationExecutor;
+    private final ThreadPoolExecutor toolExecutor;
+
+    // 已提交且未结束的任务 taskId -> FutureTask
+    private final Map<String, FutureTask<Void>> submittedTasks = new ConcurrentHashMap<>();
+
+    private final AtomicLong rejectedCount = new AtomicLong(0);
+    private final AtomicLong cancelledCount = new AtomicLong(0);
+
+    public ConversationScheduler(AppProperties appProperties) {
+        AppProperties.Scheduler config = appProperties.getScheduler();
+        boolean virtual = config.isVirtualThreads();
+
+        int maxConcurrent = Math.max(1, config.getMaxConcurrentTasks());
+        this.conversationExecutor = new ThreadPoolExecutor(
+                maxConcurrent, maxConcurrent,
+                60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, config.getMaxQueuedTasks())),
+                threadFactory("conversation-", virtual),
+                new ThreadPoolExecutor.AbortPolicy());
+        this.conversationExecutor.allowCoreThreadTimeOut(true);
+
+        // 工具线程池队列满时由调用方线程执行，保证工具调用不会被拒绝
+        int toolThreads = Math.max(1, config.getToolThreads());
+        this.toolExecutor = new ThreadPoolExecutor(
+                toolThreads, toolThreads,
+                60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(toolThreads * 16),
+                threadFactory("tool-", virtual),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        this.toolExecutor.allowCoreThreadTimeOut(true);
+
+        logger.info("对话调度器已启动: 并发={}, 队列={}, 工具线程={}, 虚拟线程={}",
+                maxConcurrent, config.getMaxQueuedTasks(), toolThreads, virtual);
+    }
+
+    /**
+     * 提交对话任务
+     *
+     * @return 是否被接受；并发和队列均已满时返回 false
+     */
+    public boolean submit(String taskId, Runnable task) {
+        FutureTask<Void> future = new FutureTask<>(task, null) {
+            @Override
+            protected void done() {
+                submittedTasks.remove(taskId, this);
+            }
+        };
+
+        submittedTasks.put(taskId, future);
+        try {
+            conversationExecutor.execute(future);
+            return true;
+        } catch (RejectedExecutionException e) {
+            submittedTasks.remove(taskId, future);
+            rejectedCount.incrementAndGet();
+            logger.warn("对话任务队列已满，拒绝任务: taskId={}, 执行中={}, 排队={}",
+                    taskId, conversationExecutor.getActiveCount(), conversationExecutor.getQueue().size());
+            return false;
+        }
+    }
+
+    /**
+     * 取消任务：排队中的任务直接移出队列，执行中的任务会被中断
+     *
+     * @return 任务是否存在且已被取消
+     */
+    public boolean cancel(String taskId) {
+        FutureTask<Void> future = submittedTasks.get(taskId);
+        if (future == null) {
+            return false;
+        }
+
+        boolean cancelled = future.cancel(true);
+        conversationExecutor.remove(future);
+        if (cancelled) {
+            cancelledCount.incrementAndGet();
+            logger.info("已取消对话任务: taskId={}", taskId);
+        }
+        return cancelled;
+    }
+
+    /**
+     * 工具执行线程池，提交时携带当前任务ID，工具线程中的缓存统计等可以归属到任务
+     */
+    public Executor getToolExecutor() {
+        return command -> {
+            String taskId = TaskContextHolder.getCurrentTaskId();
+            toolExecutor.execute(() -> {
+                // 队列满时由调用方线程执行，结束后恢复调用方原有的任务ID
+                String previous = TaskContextHolder.getCurrentTaskId();
+                TaskContextHolder.setCurrentTaskId(taskId);
+                try {
+                    command.run();
+                } finally {
+                    if (previous != null) {
+                        TaskContextHolder.setCurrentTaskId(previous);
+                    } else {
+                        TaskContextHolder.clearCurrentTaskId();
+                    }
+                }
+            });
+        };
+    }
+
+    /**
+     * 获取调度器统计信息
+     */
+    public Map<String, Object> getStats() {
+        return Map.of(
+                "activeTasks", conversationExecutor.getActiveCount(),
+                "queuedTasks", conversationExecutor.getQueue().size(),
+                "maxConcurrentTasks", conversationExecutor.getMaximumPoolSize(),
+                "completedTasks", conversationExecutor.getCompletedTaskCount(),
+                "rejectedTasks", rejectedCount.get(),
+                "cancelledTasks", cancelledCount.get(),
+                "activeToolThreads", toolExecutor.getActiveCount(),
+                "queuedToolCalls", toolExecutor.getQueue().size()
+        );
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        conversationExecutor.shutdownNow();
+        toolExecutor.shutdownNow();
+    }
+
+    /**
+     * 创建线程工厂，开启虚拟线程且运行时支持时使用虚拟线程
+     */
+    private static ThreadFactory threadFactory(String prefix, boolean virtual) {
+        if (virtual) {
+            ThreadFactory virtualFactory = virtualThreadFactory(prefix);
+            if (virtualFactory != null) {
+                return virtualFactory;
+            }
+            logger.warn("当前运行时不支持虚拟线程，使用平台线程: {}", prefix);
+        }
+
+        AtomicInteger counter = new AtomicInteger(0);
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * 通过反射获取虚拟线程工厂，使 Java 17 下仍可编译运行
+     */
+    private static ThreadFactory virtualThreadFactory(String prefix) {
+        try {
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, prefix, 1L);
+            return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package com.ai.coder.service;
+
+import com.ai.coder.config.AppProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 会话历史存储
+ * 按会话ID隔离对话历史，每个会话单独加锁；
+ * 单会话按消息数和字符数限制内存，空闲超时或会话数超限时淘汰会话。
+ */
+@Service
+public class ConversationStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(ConversationStore.class);
+
+    // 未提供会话ID时使用的默认会话
+    public static final String DEFAULT_SESSION = "default";
+
+    // 两次过期清理之间的最小间隔（毫秒）
+    private static final long SWEEP_INTERVAL_MS = 60_000;
+
+    private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+    private final AppProperties.Conversation config;
+    private final AtomicLong lastSweepTime = new AtomicLong(System.currentTimeMillis());
+    private final AtomicLong evictedSessions = new AtomicLong(0);
+
+    public ConversationStore(AppProperties appProperties) {
+        this.config = appProperties.getConversation();
+    }
+
+    /**
+     * 获取会话历史快照
+     */
+    public List<Message> getHistory(String sessionId) {
+        Session session = sessions.get(normalize(sessionId));
+        return session != null ? session.snapshot() : List.of();
+    }
+
+    /**
+     * 追加消息到会话
+     */
+    public void append(String sessionId, Message... messages) {
+        String key = normalize(sessionId);
+        sessions.computeIfAbsent(key, k -> new Session()).append(messages);
+        sweepIfDue(key);
+    }
+
+    /**
+     * 清除会话历史
+     */
+    public void clear(String sessionId) {
+        sessions.remove(normalize(sessionId));
+    }
+
+    public int getSessionCount() {
+        return sessions.size();
+    }
+
+    public long getEvictedSessionCount() {
+        return evictedSessions.get();
+    }
+
+    private String normalize(String sessionId) {
+        return sessionId == null || sessionId.isBlank() ? DEFAULT_SESSION : sessionId;
+    }
+
+    /**
+     * 定期淘汰空闲会话，会话数超限时立即按最久未使用淘汰
+     */
+    private void sweepIfDue(String currentKey) {
+        long now = System.currentTimeMillis();
+        long last = lastSweepTime.get();
+        boolean overCapacity = sessions.size() > config.getMaxSessions();
+        if (!overCapacity && (now - last < SWEEP_INTERVAL_MS || !lastSweepTime.compareAndSet(last, now))) {
+            return;
+        }
+
+        long ttlMs = config.getSessionTtlMinutes() * 60_000L;
+        sessions.entrySet().removeIf(entry -> {
+            boolean expired = !entry.getKey().equals(currentKey) && now - entry.getValue().lastAccessTime > ttlMs;
+            if (expired) {
+                evictedSessions.incrementAndGet();
+            }
+            return expired;
+        });
+
+        int excess = sessions.size() - config.getMaxSessions();
+        if (excess > 0) {
+            sessions.entrySet().stream()
+                    .filter(entry -> !entry.getKey().equals(currentKey))
+                    .sorted(Comparator.comparingLong(entry -> entry.getValue().lastAccessTime))
+                    .limit(excess)
+                    .map(Map.Entry::getKey)
+                    .toList()
+                    .forEach(key -> {
+                        if (sessions.remove(key) != null) {
+                            evictedSessions.incrementAndGet();
+                        }
+                    });
+        }
+
+        logger.debug("会话清理完成: 当前会话数={}, 累计淘汰={}", sessions.size(), evictedSessions.get());
+    }
+
+    /**
+     * 单个会话，所有访问都在会话自身的锁内完成
+     */
+    private final class Session {
+        private final Deque<Message> messages = new ArrayDeque<>();
+        private long totalChars;
+        private volatile long lastAccessTime = System.currentTimeMillis();
+
+        synchronized List<Message> snapshot() {
+            lastAccessTime = System.currentTimeMillis();
+            return new ArrayList<>(messages);
+        }
+
+        synchronized void append(Message... newMessages) {
+            lastAccessTime = System.currentTimeMillis();
+            for (Message message : newMessages) {
+                messages.addLast(message);
+                totalChars += length(message);
+            }
+
+            // 超出上限时丢弃最早的消息，至少保留最新一条
+            while (messages.size() > 1 && (messages.size() > config.getMaxHistoryMessages()
+                    || totalChars > config.getMaxHistoryChars())) {
+                totalChars -= length(messages.removeFirst());
+            }
+        }
+
+        private long length(Message message) {
+            String text = message.getText();
+            return text != null ? text.length() : 0;
+        }
+    }
+}
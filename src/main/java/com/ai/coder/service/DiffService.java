@@ -0,0 +1,215 @@
+package com.ai.coder.service;
+
+import com.ai.coder.config.AppProperties;
+import com.github.difflib.DiffUtils;
+import com.github.difflib.UnifiedDiffUtils;
+import com.github.difflib.algorithm.myers.MeyersDiffWithLinearSpace;
+import com.github.difflib.patch.Patch;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 差异生成服务
+ * 先逐字符跳过新旧内容相同的开头和结尾，只对中间被修改的窗口（加上下文行）按行拆分并计算差异，
+ * 再把差异块的行号平移回整个文件；一次编辑只改动一处时，耗时与改动大小相关而不是与文件大小相关。
+ * 窗口行数超过阈值时改用线性空间的 Myers 算法，超过上限时只输出增删行数的摘要。
+ */
+@Service
+public class DiffService {
+
+    private static final Logger logger = LoggerFactory.getLogger(DiffService.class);
+
+    private static final Pattern HUNK_HEADER = Pattern.compile("^@@ -(\\d+)(,\\d+)? \\+(\\d+)(,\\d+)? @@");
+
+    private final AppProperties.Diff config;
+
+    private final AtomicLong diffs = new AtomicLong(0);
+    private final AtomicLong linearSpaceDiffs = new AtomicLong(0);
+    private final AtomicLong summaryDiffs = new AtomicLong(0);
+    private final AtomicLong skippedChars = new AtomicLong(0);
+    private final AtomicLong totalNanos = new AtomicLong(0);
+    private final AtomicLong maxNanos = new AtomicLong(0);
+
+    public DiffService(AppProperties appProperties) {
+        this.config = appProperties.getDiff();
+    }
+
+    /**
+     * 生成统一格式的差异
+     */
+    public String unifiedDiff(String fileName, String oldContent, String newContent) {
+        return unifiedDiff(fileName, oldContent, newContent, 0);
+    }
+
+    /**
+     * 生成文件中一个片段的统一格式差异
+     *
+     * @param lineOffset 片段第一行之前的行数，差异块行号按此平移为整个文件中的行号
+     */
+    public String unifiedDiff(String fileName, String oldContent, String newContent, int lineOffset) {
+        if (fileName == null || oldContent == null || newContent == null) {
+            logger.warn("Input parameters cannot be null");
+            return "Diff generation failed: Input parameters cannot be null";
+        }
+        long startTime = System.nanoTime();
+        try {
+            return computeDiff(fileName, oldContent, newContent, lineOffset);
+        } catch (Exception e) {
+            logger.warn("Could not generate diff", e);
+            return "Diff generation failed: " + e.getMessage();
+        } finally {
+            long elapsed = System.nanoTime() - startTime;
+            diffs.incrementAndGet();
+            totalNanos.addAndGet(elapsed);
+            maxNanos.accumulateAndGet(elapsed, Math::max);
+            logger.debug("生成差异: {}, 耗时={}ms", fileName, elapsed / 1_000_000);
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        long count = diffs.get();
+        return Map.of(
+                "diffs", count,
+                "linearSpaceDiffs", linearSpaceDiffs.get(),
+                "summaryDiffs", summaryDiffs.get(),
+                "skippedChars", skippedChars.get(),
+                "totalMillis", totalNanos.get() / 1_000_000,
+                "avgMillis", count == 0 ? 0.0 : totalNanos.get() / 1_000_000.0 / count,
+                "maxMillis", maxNanos.get() / 1_000_000
+        );
+    }
+
+    private String computeDiff(String fileName, String oldContent, String newContent, int lineOffset) {
+        int contextLines = config.getContextLines();
+
+        // 相同开头：退回到行首，再向前扩展上下文行
+        int prefix = commonPrefix(oldContent, newContent);
+        int windowStart = oldContent.lastIndexOf('\n', prefix - 1) + 1;
+        for (int i = 0; i < contextLines && windowStart > 0; i++) {
+            windowStart = oldContent.lastIndexOf('\n', windowStart - 2) + 1;
+        }
+
+        // 相同结尾：不与开头重叠，推进到结尾内第一个换行符之后（新旧内容在此处都是行首），再向后扩展上下文行
+        int suffix = commonSuffix(oldContent, newContent, Math.min(oldContent.length(), newContent.length()) - prefix);
+        int oldEnd = nextLineStart(oldContent, oldContent.length() - suffix);
+        for (int i = 0; i < contextLines && oldEnd < oldContent.length(); i++) {
+            oldEnd = nextLineStart(oldContent, oldEnd);
+        }
+        int newEnd = oldEnd + newContent.length() - oldContent.length();
+
+        List<String> oldLines = splitLines(oldContent.substring(windowStart, oldEnd));
+        List<String> newLines = splitLines(newContent.substring(windowStart, newEnd));
+        skippedChars.addAndGet(oldContent.length() - (oldEnd - windowStart));
+
+        if (oldLines.size() + newLines.size() > config.getMaxDiffLines()) {
+            summaryDiffs.incrementAndGet();
+            return summarize(fileName, oldLines.size(), newLines.size(), lineOffset + countLines(oldContent, windowStart));
+        }
+
+        Patch<String> patch;
+        if (Math.max(oldLines.size(), newLines.size()) > config.getLinearSpaceThresholdLines()) {
+            linearSpaceDiffs.incrementAndGet();
+            patch = DiffUtils.diff(oldLines, newLines, MeyersDiffWithLinearSpace.factory().create());
+        } else {
+            patch = DiffUtils.diff(oldLines, newLines);
+        }
+
+        List<String> unifiedDiff = UnifiedDiffUtils.generateUnifiedDiff(
+                fileName + " (Original)",
+                fileName + " (Edited)",
+                oldLines,
+                patch,
+                contextLines
+        );
+        return shiftHunks(unifiedDiff, lineOffset + countLines(oldContent, windowStart));
+    }
+
+    /**
+     * 把窗口内的差异块行号平移为整个文件中的行号
+     */
+    private String shiftHunks(List<String> unifiedDiff, int lineOffset) {
+        if (lineOffset == 0) {
+            return String.join("\n", unifiedDiff);
+        }
+        List<String> shifted = new ArrayList<>(unifiedDiff.size());
+        for (String line : unifiedDiff) {
+            Matcher matcher = line.startsWith("@@") ? HUNK_HEADER.matcher(line) : null;
+            if (matcher != null && matcher.find()) {
+                String header = "@@ -" + (Integer.parseInt(matcher.group(1)) + lineOffset)
+                        + (matcher.group(2) != null ? matcher.group(2) : "")
+                        + " +" + (Integer.parseInt(matcher.group(3)) + lineOffset)
+                        + (matcher.group(4) != null ? matcher.group(4) : "")
+                        + " @@";
+                shifted.add(header + line.substring(matcher.end()));
+            } else {
+                shifted.add(line);
+            }
+        }
+        return String.join("\n", shifted);
+    }
+
+    private String summarize(String fileName, int oldLineCount, int newLineCount, int lineOffset) {
+        logger.info("差异过大，输出摘要: {}, 原窗口={} 行, 新窗口={} 行", fileName, oldLineCount, newLineCount);
+        return "--- " + fileName + " (Original)\n"
+                + "+++ " + fileName + " (Edited)\n"
+                + "@@ -" + (lineOffset + 1) + "," + oldLineCount + " +" + (lineOffset + 1) + "," + newLineCount + " @@\n"
+                + String.format("[Diff omitted: changed region replaces %d lines with %d lines, exceeding the %d line limit]",
+                oldLineCount, newLineCount, config.getMaxDiffLines());
+    }
+
+    /**
+     * 按换行符拆分；窗口以换行符结尾时不产生末尾的空行
+     */
+    private static List<String> splitLines(String text) {
+        if (text.isEmpty()) {
+            return new ArrayList<>();
+        }
+        String[] lines = text.split("\\R", -1);
+        int count = lines[lines.length - 1].isEmpty() ? lines.length - 1 : lines.length;
+        return Arrays.asList(lines).subList(0, count);
+    }
+
+    private static int commonPrefix(String a, String b) {
+        int limit = Math.min(a.length(), b.length());
+        int i = 0;
+        while (i < limit && a.charAt(i) == b.charAt(i)) {
+            i++;
+        }
+        return i;
+    }
+
+    private static int commonSuffix(String a, String b, int limit) {
+        int i = 0;
+        while (i < limit && a.charAt(a.length() - 1 - i) == b.charAt(b.length() - 1 - i)) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * position 及之后第一个换行符的下一个位置，没有换行符时返回文本长度
+     */
+    private static int nextLineStart(String text, int position) {
+        int newline = text.indexOf('\n', position);
+        return newline < 0 ? text.length() : newline + 1;
+    }
+
+    private static int countLines(String text, int end) {
+        int count = 0;
+        for (int i = 0; i < end; i++) {
+            if (text.charAt(i) == '\n') {
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,308 @@
+package com.ai.coder.service;
+
+import com.ai.coder.config.AppProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * 目录遍历引擎
+ * 基于 Files.walkFileTree 按深度优先逐个产出条目，每个条目的属性只读取一次（BasicFileAttributes），
+ * 跳过 .git、node_modules、target 等目录，并按最大深度、最大条目数和输出字节数限制遍历规模，
+ * 达到上限时立即停止遍历而不是先收集整棵树。
+ */
+@Service
+public class DirectoryLister {
+
+    private static final Logger logger = LoggerFactory.getLogger(DirectoryLister.class);
+
+    // 遍历时跳过的目录（仍会作为条目输出，但不进入）
+    private static final Set<String> IGNORED_DIRECTORIES = Set.of(
+            ".git", ".svn", "node_modules", "target", "build", "dist",
+            "__pycache__", ".idea", ".vscode"
+    );
+
+    private final AppProperties.Listing config;
+
+    private final AtomicLong listings = new AtomicLong(0);
+    private final AtomicLong entriesVisited = new AtomicLong(0);
+    private final AtomicLong ignoredDirectories = new AtomicLong(0);
+    private final AtomicLong truncatedListings = new AtomicLong(0);
+    private final AtomicLong totalNanos = new AtomicLong(0);
+
+    public DirectoryLister(AppProperties appProperties) {
+        this.config = appProperties.getListing();
+    }
+
+    /**
+     * 遍历中的一个条目
+     *
+     * @param relativePath 相对遍历起点的路径
+     * @param depth        深度，起点的直接子项为 1
+     * @param ignored      是否为被忽略（未进入）的目录
+     */
+    public record Entry(Path path, String relativePath, int depth, boolean directory, long size,
+                        long lastModifiedMillis, boolean ignored) {
+    }
+
+    /**
+     * 遍历选项
+     *
+     * @param maxDepth        最大深度，1 表示只列出直接子项
+     * @param maxEntries      最多产出的条目数
+     * @param maxOutputBytes  渲染输出的字节上限（仅用于 {@link #render}）
+     * @param showHidden      是否包含以 . 开头的文件和目录
+     * @param applyIgnoreRules 是否跳过 .git、node_modules 等目录
+     */
+    public record Options(int maxDepth, int maxEntries, long maxOutputBytes, boolean showHidden,
+                          boolean applyIgnoreRules) {
+
+        /**
+         * 按调用方指定的输出预算收紧字节上限，预算为空或更大时保持不变
+         */
+        public Options withOutputBudget(Long budgetBytes) {
+            if (budgetBytes == null || budgetBytes <= 0 || budgetBytes >= maxOutputBytes) {
+                return this;
+            }
+            return new Options(maxDepth, maxEntries, budgetBytes, showHidden, applyIgnoreRules);
+        }
+    }
+
+    /**
+     * 遍历结果摘要
+     *
+     * @param depthLimitedDirectories 位于最大深度、已列出但未展开内容的目录数
+     * @param truncationReason        提前停止的原因，未截断时为 null
+     */
+    public record Summary(int entries, int ignoredDirectories, int depthLimitedDirectories, int errors,
+                          long outputBytes, String truncationReason, long elapsedMillis) {
+
+        public boolean truncated() {
+            return truncationReason != null;
+        }
+    }
+
+    /**
+     * 使用配置中的默认上限构造遍历选项
+     *
+     * @param maxDepth 调用方指定的深度，为空时使用默认值，超过配置上限时取上限
+     */
+    public Options defaultOptions(Integer maxDepth, boolean showHidden) {
+        int depth = maxDepth != null ? Math.min(maxDepth, config.getMaxDepth()) : config.getMaxDepth();
+        return new Options(Math.max(1, depth), config.getMaxEntries(), config.getMaxOutputBytes(), showHidden, true);
+    }
+
+    /**
+     * 判断目录名是否属于默认忽略的目录（版本控制、依赖、构建输出和隐藏目录）
+     */
+    public static boolean isIgnoredDirectory(String dirName) {
+        return IGNORED_DIRECTORIES.contains(dirName) || dirName.startsWith(".");
+    }
+
+    /**
+     * 深度优先遍历目录，逐个把条目交给 visitor；visitor 返回 false 时停止遍历
+     */
+    public Summary walk(Path root, Options options, Predicate<Entry> visitor) throws IOException {
+        return walk(root, options, visitor, () -> "stopped by caller");
+    }
+
+    /**
+     * 遍历目录并逐行渲染到 out，超过输出字节上限时停止；是否截断由返回的摘要说明，截断提示由调用方按输出格式追加
+     *
+     * @param renderer 把条目渲染为一行文本（不含换行符），返回 null 表示不输出该条目
+     */
+    public Summary render(Path root, Options options, Function<Entry, String> renderer, StringBuilder out)
+            throws IOException {
+        OutputBudget budget = new OutputBudget(out, options.maxOutputBytes());
+        Summary summary = walk(root, options, entry -> budget.append(renderer.apply(entry)), budget::reason);
+        return finish(summary, budget);
+    }
+
+    /**
+     * 遍历目录后按 order 排序再渲染，用于单层列表等条目数有限的场景（条目数仍受 maxEntries 限制）
+     */
+    public Summary renderSorted(Path root, Options options, Comparator<Entry> order,
+                                Function<Entry, String> renderer, StringBuilder out) throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        Summary summary = walk(root, options, entries::add);
+        entries.sort(order);
+
+        OutputBudget budget = new OutputBudget(out, options.maxOutputBytes());
+        int rendered = 0;
+        for (Entry entry : entries) {
+            if (!budget.append(renderer.apply(entry))) {
+                break;
+            }
+            rendered++;
+        }
+        String reason = budget.reason() != null ? budget.reason() : summary.truncationReason();
+        return finish(new Summary(rendered, summary.ignoredDirectories(), summary.depthLimitedDirectories(),
+                summary.errors(), 0, reason, summary.elapsedMillis()), budget);
+    }
+
+    private Summary finish(Summary summary, OutputBudget budget) {
+        return new Summary(summary.entries(), summary.ignoredDirectories(), summary.depthLimitedDirectories(),
+                summary.errors(), budget.bytes, summary.truncationReason(), summary.elapsedMillis());
+    }
+
+    /**
+     * 按 UTF-8 字节数累计输出，超过上限时拒绝追加并记录原因
+     */
+    private static final class OutputBudget {
+        private final StringBuilder out;
+        private final long maxBytes;
+        private long bytes;
+        private String reason;
+
+        OutputBudget(StringBuilder out, long maxBytes) {
+            this.out = out;
+            this.maxBytes = maxBytes;
+        }
+
+        boolean append(String line) {
+            if (line == null) {
+                return true;
+            }
+            long lineBytes = line.getBytes(StandardCharsets.UTF_8).length + 1;
+            if (bytes + lineBytes > maxBytes) {
+                reason = "output limit of " + maxBytes + " bytes";
+                return false;
+            }
+            out.append(line).append('\n');
+            bytes += lineBytes;
+            return true;
+        }
+
+        String reason() {
+            return reason;
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        long count = listings.get();
+        return Map.of(
+                "listings", count,
+                "entriesVisited", entriesVisited.get(),
+                "ignoredDirectories", ignoredDirectories.get(),
+                "truncatedListings", truncatedListings.get(),
+                "avgMillis", count == 0 ? 0.0 : totalNanos.get() / 1_000_000.0 / count
+        );
+    }
+
+    private Summary walk(Path root, Options options, Predicate<Entry> visitor, Supplier<String> stopReason)
+            throws IOException {
+        long startTime = System.nanoTime();
+        int rootDepth = root.getNameCount();
+        int[] counts = new int[4]; // 条目数、忽略目录数、错误数、因深度上限未展开的目录数
+        String[] truncation = {null};
+
+        Files.walkFileTree(root, EnumSet.noneOf(FileVisitOption.class), options.maxDepth(), new SimpleFileVisitor<>() {
+
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                if (dir.equals(root)) {
+                    return FileVisitResult.CONTINUE;
+                }
+                String name = dir.getFileName().toString();
+                if (!options.showHidden() && name.startsWith(".")) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                // 隐藏目录由 showHidden 控制，这里只跳过固定的忽略目录
+                boolean ignored = options.applyIgnoreRules() && IGNORED_DIRECTORIES.contains(name);
+                if (ignored) {
+                    counts[1]++;
+                }
+                FileVisitResult result = emit(dir, attrs, ignored);
+                if (result == FileVisitResult.CONTINUE && ignored) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                return result;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                // 达到最大深度的目录也通过 visitFile 传入，不再进入
+                String name = file.getFileName().toString();
+                if (!options.showHidden() && name.startsWith(".")) {
+                    return FileVisitResult.CONTINUE;
+                }
+                if (!attrs.isDirectory()) {
+                    return emit(file, attrs, false);
+                }
+                boolean ignored = options.applyIgnoreRules() && IGNORED_DIRECTORIES.contains(name);
+                FileVisitResult result = emit(file, attrs, ignored);
+                if (result == FileVisitResult.CONTINUE) {
+                    counts[ignored ? 1 : 3]++;
+                }
+                return result;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                counts[2]++;
+                logger.debug("无法访问: {}, error={}", file, exc.getMessage());
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException exc) {
+                if (exc != null) {
+                    counts[2]++;
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            private FileVisitResult emit(Path path, BasicFileAttributes attrs, boolean ignored) {
+                if (counts[0] >= options.maxEntries()) {
+                    truncation[0] = "entry limit of " + options.maxEntries();
+                    return FileVisitResult.TERMINATE;
+                }
+                Entry entry = new Entry(
+                        path,
+                        root.relativize(path).toString(),
+                        path.getNameCount() - rootDepth,
+                        attrs.isDirectory(),
+                        attrs.isDirectory() ? 0 : attrs.size(),
+                        attrs.lastModifiedTime().toMillis(),
+                        ignored);
+                if (!visitor.test(entry)) {
+                    truncation[0] = stopReason.get();
+                    return FileVisitResult.TERMINATE;
+                }
+                counts[0]++;
+                return FileVisitResult.CONTINUE;
+            }
+        });
+
+        long elapsed = System.nanoTime() - startTime;
+        listings.incrementAndGet();
+        entriesVisited.addAndGet(counts[0]);
+        ignoredDirectories.addAndGet(counts[1]);
+        totalNanos.addAndGet(elapsed);
+        if (truncation[0] != null) {
+            truncatedListings.incrementAndGet();
+        }
+        logger.debug("遍历目录: {}, 条目={}, 忽略目录={}, 未展开目录={}, 截断={}, 耗时={}ms",
+                root, counts[0], counts[1], counts[3], truncation[0], elapsed / 1_000_000);
+        return new Summary(counts[0], counts[1], counts[3], counts[2], 0, truncation[0], elapsed / 1_000_000);
+    }
+}
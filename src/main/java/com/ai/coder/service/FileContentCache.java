@@ -0,0 +1,218 @@
+package com.ai.coder.service;
+
+import com.ai.coder.config.AppProperties;
+import com.ai.coder.config.TaskContextHolder;
+import com.ai.coder.model.WorkspaceChangeEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 工作空间文件内容缓存
+ * 同一任务中同一文件常被多次读取（读取、编辑确认、编辑、写后校验），缓存按真实路径保存文件内容，
+ * 每次读取都用修改时间、大小和文件标识（inode，平台支持时）校验，任一变化即重新读取。
+ * 缓存总字节数有上限，按最近访问顺序淘汰；工具写入文件后直接更新缓存（write-through）。
+ */
+@Service
+public class FileContentCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(FileContentCache.class);
+
+    private final long maxBytes;
+    private final long maxEntryBytes;
+
+    // 按访问顺序排列的缓存条目 realPath -> Entry，所有访问在对象锁内完成
+    private final LinkedHashMap<Path, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private long totalBytes;
+
+    private final AtomicLong hits = new AtomicLong(0);
+    private final AtomicLong misses = new AtomicLong(0);
+    private final AtomicLong evictions = new AtomicLong(0);
+
+    // 进行中任务的命中统计 taskId -> TaskStats
+    private final Map<String, TaskStats> taskStats = new ConcurrentHashMap<>();
+
+    public FileContentCache(AppProperties appProperties) {
+        this.maxBytes = appProperties.getWorkspace().getContentCacheMaxBytes();
+        // 单个文件最多占用缓存的四分之一，避免一个大文件清空整个缓存
+        this.maxEntryBytes = maxBytes / 4;
+    }
+
+    /**
+     * 读取文件内容（UTF-8），缓存有效时直接返回
+     */
+    public String read(Path path) throws IOException {
+        Path realPath = path.toRealPath();
+        BasicFileAttributes attributes = Files.readAttributes(realPath, BasicFileAttributes.class);
+
+        synchronized (this) {
+            Entry entry = entries.get(realPath);
+            if (entry != null && entry.matches(attributes)) {
+                recordHit();
+                return entry.content;
+            }
+        }
+
+        recordMiss();
+        String content = Files.readString(realPath, StandardCharsets.UTF_8);
+        store(realPath, content, attributes);
+        return content;
+    }
+
+    /**
+     * 写入文件后更新缓存
+     */
+    public void put(Path path, String content) {
+        try {
+            Path realPath = path.toRealPath();
+            store(realPath, content, Files.readAttributes(realPath, BasicFileAttributes.class));
+        } catch (IOException e) {
+            logger.debug("更新文件缓存失败: {}, error={}", path, e.getMessage());
+            invalidate(path);
+        }
+    }
+
+    /**
+     * 丢弃文件的缓存
+     */
+    public void invalidate(Path path) {
+        Path key;
+        try {
+            key = path.toRealPath();
+        } catch (IOException e) {
+            key = path.toAbsolutePath().normalize();
+        }
+        synchronized (this) {
+            Entry removed = entries.remove(key);
+            if (removed != null) {
+                totalBytes -= removed.bytes;
+            }
+        }
+    }
+
+    /**
+     * 外部删除的文件立即移出缓存，释放占用的内存；修改过的文件在下次读取时按属性校验失效
+     */
+    @EventListener
+    public void onWorkspaceChange(WorkspaceChangeEvent event) {
+        if (event.origin() != WorkspaceChangeEvent.Origin.FILESYSTEM) {
+            return;
+        }
+        for (WorkspaceChangeEvent.Change change : event.changes()) {
+            if (change.kind() == WorkspaceChangeEvent.Kind.DELETED) {
+                invalidate(change.path());
+            }
+        }
+    }
+
+    /**
+     * 移除并返回任务的命中统计，任务结束时调用
+     */
+    public Map<String, Object> finishTask(String taskId) {
+        TaskStats stats = taskStats.remove(taskId);
+        if (stats == null) {
+            return Map.of("hits", 0L, "misses", 0L);
+        }
+        return stats.toMap();
+    }
+
+    public Map<String, Object> getStats() {
+        int entryCount;
+        long bytes;
+        synchronized (this) {
+            entryCount = entries.size();
+            bytes = totalBytes;
+        }
+        Map<String, Object> tasks = new LinkedHashMap<>();
+        taskStats.forEach((taskId, stats) -> tasks.put(taskId, stats.toMap()));
+        return Map.of(
+                "entries", entryCount,
+                "bytes", bytes,
+                "maxBytes", maxBytes,
+                "hits", hits.get(),
+                "misses", misses.get(),
+                "evictions", evictions.get(),
+                "tasks", tasks
+        );
+    }
+
+    private void store(Path realPath, String content, BasicFileAttributes attributes) {
+        long bytes = attributes.size();
+        synchronized (this) {
+            Entry previous = entries.remove(realPath);
+            if (previous != null) {
+                totalBytes -= previous.bytes;
+            }
+            if (bytes > maxEntryBytes) {
+                return;
+            }
+
+            entries.put(realPath, new Entry(content, bytes, attributes.lastModifiedTime().toMillis(),
+                    attributes.fileKey()));
+            totalBytes += bytes;
+
+            Iterator<Entry> iterator = entries.values().iterator();
+            while (totalBytes > maxBytes && iterator.hasNext()) {
+                Entry eldest = iterator.next();
+                iterator.remove();
+                totalBytes -= eldest.bytes;
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    private void recordHit() {
+        hits.incrementAndGet();
+        TaskStats stats = currentTaskStats();
+        if (stats != null) {
+            stats.hits.incrementAndGet();
+        }
+    }
+
+    private void recordMiss() {
+        misses.incrementAndGet();
+        TaskStats stats = currentTaskStats();
+        if (stats != null) {
+            stats.misses.incrementAndGet();
+        }
+    }
+
+    private TaskStats currentTaskStats() {
+        String taskId = TaskContextHolder.getCurrentTaskId();
+        return taskId != null ? taskStats.computeIfAbsent(taskId, k -> new TaskStats()) : null;
+    }
+
+    /**
+     * 缓存条目，bytes 为文件字节数
+     */
+    private record Entry(String content, long bytes, long modifiedTime, Object fileKey) {
+
+        boolean matches(BasicFileAttributes attributes) {
+            return attributes.size() == bytes
+                    && attributes.lastModifiedTime().toMillis() == modifiedTime
+                    && Objects.equals(attributes.fileKey(), fileKey);
+        }
+    }
+
+    private static final class TaskStats {
+        private final AtomicLong hits = new AtomicLong(0);
+        private final AtomicLong misses = new AtomicLong(0);
+
+        Map<String, Object> toMap() {
+            return Map.of("hits", hits.get(), "misses", misses.get());
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.ai.coder.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * 日志事件编码器
+ * 复用同一个线程安全的 ObjectWriter 序列化事件，事件在发布时只编码一次，
+ * 所有订阅者和重放缓存共享编码结果。
+ * 另提供紧凑的二进制帧格式，供非浏览器客户端批量拉取事件：
+ * 每帧为 [8字节事件ID][4字节负载长度][UTF-8 JSON负载]，整数均为大端序。
+ */
+@Component
+public class LogEventEncoder {
+
+    private static final Logger logger = LoggerFactory.getLogger(LogEventEncoder.class);
+
+    // 帧头长度：事件ID + 负载长度
+    public static final int FRAME_HEADER_BYTES = Long.BYTES + Integer.BYTES;
+
+    private final ObjectWriter writer = new ObjectMapper().writer();
+
+    /**
+     * 编码为JSON文本
+     *
+     * @return JSON文本；序列化失败时返回 null
+     */
+    public String encode(Object event) {
+        try {
+            return writer.writeValueAsString(event);
+        } catch (IOException e) {
+            logger.error("序列化日志事件失败: type={}, error={}",
+                    event != null ? event.getClass().getSimpleName() : null, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 把已编码的事件打包为二进制帧
+     */
+    public byte[] encodeFrames(List<Long> ids, List<String> payloads) {
+        byte[][] encoded = new byte[payloads.size()][];
+        int total = 0;
+        for (int i = 0; i < encoded.length; i++) {
+            encoded[i] = payloads.get(i).getBytes(StandardCharsets.UTF_8);
+            total += FRAME_HEADER_BYTES + encoded[i].length;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(total);
+        for (int i = 0; i < encoded.length; i++) {
+            buffer.putLong(ids.get(i));
+            buffer.putInt(encoded[i].length);
+            buffer.put(encoded[i]);
+        }
+        return buffer.array();
+    }
+}
@@ -1,83 +1,208 @@
 package com.ai.coder.service;
 
+import com.ai.coder.config.AppProperties;
+import com.ai.coder.model.ConversationResult;
 import com.ai.coder.model.LogEvent;
+import com.ai.coder.model.TaskProgressEvent;
+import com.ai.coder.model.TaskStatus;
+import com.ai.coder.model.TaskStatusSnapshot;
 import com.ai.coder.model.ToolLogEvent;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ai.coder.model.TurnLogEvent;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.io.IOException;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * SSE日志推送服务
- * 负责将AOP日志实时推送到前端
+ * 负责将AOP日志实时推送到前端。
+ * 每个任务的事件带有递增的事件ID并缓存在有界环形缓冲区中，
+ * 连接建立前产生的事件和断线期间的事件会在连接或重连时按 Last-Event-ID 重放。
+ * 同一任务可有多个订阅者，每个订阅者有独立的有界发送队列，由发送线程异步推送，
+ * 推送事件的线程（工具执行、对话线程）只负责入队，不受客户端网络速度影响。
+ * 延迟关闭、心跳和失效连接回收统一由一个调度线程执行。
  */
 @Service
 public class LogStreamService {
 
     private static final Logger logger = LoggerFactory.getLogger(LogStreamService.class);
-    private static final DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
 
-    // 活跃的SSE连接 taskId -> SseEmitter
-    private final Map<String, SseEmitter> activeConnections = new ConcurrentHashMap<>();
+    // 长时间无事件的缓存视为废弃（毫秒）
+    private static final long IDLE_EVENT_LOG_MS = 30 * 60_000L;
 
-    // JSON序列化器
-    private final ObjectMapper objectMapper = new ObjectMapper();
+    // 缓存清理间隔（毫秒）
+    private static final long SWEEP_INTERVAL_MS = 10_000;
+
+    // 关闭连接的队列标记
+    private static final OutboundEvent CLOSE = new OutboundEvent(null, null, null);
+
+    // 心跳的队列标记，以SSE注释发送，前端不会收到事件
+    private static final OutboundEvent HEARTBEAT = new OutboundEvent(null, null, null);
+
+    // 活跃的SSE订阅者 taskId -> 订阅者集合
+    private final Map<String, Set<Subscriber>> activeConnections = new ConcurrentHashMap<>();
+
+    // 每个任务的可重放事件缓存 taskId -> TaskEventLog
+    private final Map<String, TaskEventLog> eventLogs = new ConcurrentHashMap<>();
+
+    // 每个任务最近一次推送的状态快照，用于计算增量 taskId -> TaskStatusSnapshot
+    private final Map<String, TaskStatusSnapshot> lastPushedStatus = new ConcurrentHashMap<>();
+
+    private final LogEventEncoder encoder;
+    private final TaskRegistry taskRegistry;
+    private final AppProperties.LogStream config;
+
+    // 异步发送线程池
+    private final ExecutorService senderExecutor;
+
+    // 延迟关闭、心跳、回收共用的调度线程
+    private final ScheduledExecutorService scheduler;
+
+    private final AtomicLong replayedEvents = new AtomicLong(0);
+    private final AtomicLong reapedConnections = new AtomicLong(0);
+    private volatile double reapRatePerMinute;
+    // 上一次心跳时的累计回收数，只在调度线程中读写
+    private long reapedAtLastPass;
+    private final AtomicLong droppedEvents = new AtomicLong(0);
+    private final AtomicLong coalescedEvents = new AtomicLong(0);
+
+    public LogStreamService(LogEventEncoder encoder, TaskRegistry taskRegistry, AppProperties appProperties) {
+        this.encoder = encoder;
+        this.taskRegistry = taskRegistry;
+        this.config = appProperties.getLogStream();
+
+        AtomicInteger counter = new AtomicInteger(0);
+        this.senderExecutor = Executors.newFixedThreadPool(Math.max(1, config.getSenderThreads()), runnable -> {
+            Thread thread = new Thread(runnable, "sse-sender-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "sse-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long heartbeatSeconds = Math.max(1, config.getHeartbeatSeconds());
+        scheduler.scheduleWithFixedDelay(this::heartbeatAndReap, heartbeatSeconds, heartbeatSeconds, TimeUnit.SECONDS);
+        scheduler.scheduleWithFixedDelay(this::sweepEventLogs, SWEEP_INTERVAL_MS, SWEEP_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+        senderExecutor.shutdownNow();
+    }
 
     /**
      * 建立SSE连接
      */
     public SseEmitter createConnection(String taskId) {
-        logger.info("🔗 建立SSE连接: taskId={}", taskId);
+        return createConnection(taskId, null);
+    }
+
+    /**
+     * 建立SSE连接，并重放 lastEventId 之后缓存的事件
+     *
+     * @param lastEventId 客户端已收到的最后一个事件ID，为 null 时重放全部缓存事件
+     */
+    public SseEmitter createConnection(String taskId, Long lastEventId) {
+        logger.info("🔗 建立SSE连接: taskId={}, lastEventId={}", taskId, lastEventId);
 
-        SseEmitter emitter = new SseEmitter(0L); // 无超时
+        // 超时后浏览器会自动重连，并通过 Last-Event-ID 续传
+        SseEmitter emitter = new SseEmitter(TimeUnit.MINUTES.toMillis(config.getEmitterTimeoutMinutes()));
+        Subscriber subscriber = new Subscriber(taskId, emitter);
 
         // 设置连接事件处理
         emitter.onCompletion(() -> {
             logger.info("✅ SSE连接完成: taskId={}", taskId);
-            activeConnections.remove(taskId);
+            removeSubscriber(subscriber);
         });
 
         emitter.onTimeout(() -> {
             logger.warn("⏰ SSE连接超时: taskId={}", taskId);
-            activeConnections.remove(taskId);
+            removeSubscriber(subscriber);
         });
 
         emitter.onError((ex) -> {
             logger.error("❌ SSE连接错误: taskId={}, error={}", taskId, ex.getMessage());
-            activeConnections.remove(taskId);
+            removeSubscriber(subscriber);
         });
 
-        // 保存连接
-        activeConnections.put(taskId, emitter);
+        // 在任务事件缓存的锁内注册订阅者并入队重放事件，保证重放事件与实时事件不会乱序
+        TaskEventLog eventLog = eventLogs.computeIfAbsent(taskId, k -> new TaskEventLog(config.getReplayBufferSize()));
+        synchronized (eventLog) {
+            // 保存连接
+            activeConnections.compute(taskId, (key, subscribers) -> {
+                Set<Subscriber> result = subscribers != null ? subscribers : new CopyOnWriteArraySet<>();
+                result.add(subscriber);
+                return result;
+            });
 
-        // 发送连接成功消息
-        sendLogEvent(taskId, LogEvent.createConnectionEvent(taskId));
+            // 发送连接成功消息
+            subscriber.enqueue(new OutboundEvent(null, encoder.encode(LogEvent.createConnectionEvent(taskId)), null), true);
+
+            List<BufferedEvent> missed = eventLog.since(lastEventId == null ? 0 : lastEventId);
+            for (BufferedEvent event : missed) {
+                subscriber.enqueue(new OutboundEvent(event.id(), event.data(), null), true);
+            }
+            replayedEvents.addAndGet(missed.size());
+            if (!missed.isEmpty()) {
+                logger.info("🔁 重放事件: taskId={}, 数量={}", taskId, missed.size());
+            }
+
+            // 缓存可能已覆盖早期的增量，新连接额外收到一次完整的任务状态
+            TaskStatus status = taskRegistry.getStatus(taskId);
+            if (status != null) {
+                TaskProgressEvent event = new TaskProgressEvent("TASK_PROGRESS", taskId,
+                        System.currentTimeMillis());
+                event.applyDelta(null, status.snapshot());
+                subscriber.enqueue(new OutboundEvent(null, encoder.encode(event), null), true);
+            }
+        }
 
         return emitter;
     }
 
     /**
-     * 关闭SSE连接
+     * 关闭任务的所有SSE连接，已入队的事件发送完后再关闭
      */
     public void closeConnection(String taskId) {
-        SseEmitter emitter = activeConnections.remove(taskId);
-        if (emitter != null) {
-            try {
-                emitter.complete();
-                logger.info("🔚 关闭SSE连接: taskId={}", taskId);
-            } catch (Exception e) {
-                logger.error("关闭SSE连接失败: taskId={}, error={}", taskId, e.getMessage());
+        Set<Subscriber> subscribers = activeConnections.remove(taskId);
+        if (subscribers != null) {
+            for (Subscriber subscriber : subscribers) {
+                subscriber.enqueue(CLOSE, true);
             }
+            logger.info("🔚 关闭SSE连接: taskId={}, 订阅者数={}", taskId, subscribers.size());
         }
     }
 
+    private void removeSubscriber(Subscriber subscriber) {
+        subscriber.closed = true;
+        activeConnections.computeIfPresent(subscriber.taskId, (key, subscribers) -> {
+            subscribers.remove(subscriber);
+            return subscribers.isEmpty() ? null : subscribers;
+        });
+    }
+
     /**
      * 推送工具开始执行事件
      */
@@ -88,7 +213,7 @@ public class LogStreamService {
         event.setToolName(toolName);
         event.setFilePath(filePath);
         event.setMessage(message);
-        event.setTimestamp(LocalDateTime.now().format(formatter));
+        event.setTimestamp(System.currentTimeMillis());
         event.setIcon(getToolIcon(toolName));
         event.setStatus("RUNNING");
 
@@ -105,7 +230,7 @@ public class LogStreamService {
         event.setToolName(toolName);
         event.setFilePath(filePath);
         event.setMessage(message);
-        event.setTimestamp(LocalDateTime.now().format(formatter));
+        event.setTimestamp(System.currentTimeMillis());
         event.setIcon(getToolIcon(toolName));
         event.setStatus("SUCCESS");
         event.setExecutionTime(executionTime);
@@ -123,7 +248,7 @@ public class LogStreamService {
         event.setToolName(toolName);
         event.setFilePath(filePath);
         event.setMessage(message);
-        event.setTimestamp(LocalDateTime.now().format(formatter));
+        event.setTimestamp(System.currentTimeMillis());
         event.setIcon("❌");
         event.setStatus("ERROR");
         event.setExecutionTime(executionTime);
@@ -131,61 +256,246 @@ public class LogStreamService {
         sendLogEvent(taskId, event);
     }
 
+    /**
+     * 推送模型输出片段事件
+     * 输出片段不进入重放缓存（完整输出由 TURN_COMPLETE 事件携带），
+     * 无订阅者时直接丢弃，避免为每个片段构造事件
+     */
+    public void pushTurnToken(String taskId, int turn, String delta) {
+        if (!activeConnections.containsKey(taskId)) {
+            return;
+        }
+
+        TurnLogEvent event = new TurnLogEvent("TURN_TOKEN", taskId, turn, delta,
+                System.currentTimeMillis());
+
+        // 输出片段延迟到发送线程序列化，以便队列中同轮片段合并
+        Set<Subscriber> subscribers = activeConnections.get(taskId);
+        if (subscribers != null) {
+            for (Subscriber subscriber : subscribers) {
+                subscriber.enqueue(new OutboundEvent(null, null, event), false);
+            }
+        }
+    }
+
+    /**
+     * 推送任务状态变化事件，只携带相对上一次推送变化的字段
+     */
+    public void pushTaskProgress(TaskStatus status) {
+        TaskProgressEvent event = createProgressEvent("TASK_PROGRESS", status);
+        if (event.getVersion() != null) {
+            sendLogEvent(status.getTaskId(), event);
+        }
+    }
+
+    /**
+     * 推送单轮完成事件，附带本轮输出和状态增量
+     */
+    public void pushTurnComplete(TaskStatus status, int turn, String response) {
+        TaskProgressEvent event = createProgressEvent("TURN_COMPLETE", status);
+        event.setTurn(turn);
+        event.setResponse(response);
+        sendLogEvent(status.getTaskId(), event);
+    }
+
+    /**
+     * 推送任务完成事件，附带最终状态和对话结果，前端无需再请求结果接口
+     */
+    public void pushTaskComplete(TaskStatus status, ConversationResult result) {
+        String taskId = status.getTaskId();
+        TaskProgressEvent event = createProgressEvent("TASK_COMPLETE", status);
+        event.setMessage("任务执行完成");
+        if (result != null) {
+            event.applyResult(result);
+        }
+
+        sendLogEvent(taskId, event);
+        markCompleted(taskId);
+        scheduleClose(taskId);
+    }
+
     /**
      * 推送任务完成事件
      */
     public void pushTaskComplete(String taskId) {
+        TaskStatus status = taskRegistry.getStatus(taskId);
+        if (status != null) {
+            pushTaskComplete(status, null);
+            return;
+        }
+
         LogEvent event = new LogEvent();
         event.setType("TASK_COMPLETE");
         event.setTaskId(taskId);
         event.setMessage("任务执行完成");
-        event.setTimestamp(LocalDateTime.now().format(formatter));
+        event.setTimestamp(System.currentTimeMillis());
 
         sendLogEvent(taskId, event);
+        markCompleted(taskId);
+        scheduleClose(taskId);
+    }
 
-        // 延迟关闭连接
-        new Thread(() -> {
-            try {
-                Thread.sleep(2000); // 等待2秒让前端处理完成事件
-                closeConnection(taskId);
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
+    /**
+     * 构建状态增量事件并更新增量基线
+     *
+     * @return 事件；状态无变化时事件的 version 为 null
+     */
+    private TaskProgressEvent createProgressEvent(String type, TaskStatus status) {
+        String taskId = status.getTaskId();
+        TaskStatusSnapshot current = status.snapshot();
+        TaskStatusSnapshot previous = lastPushedStatus.put(taskId, current);
+        TaskProgressEvent event = new TaskProgressEvent(type, taskId, System.currentTimeMillis());
+        if (!event.applyDelta(previous, current)) {
+            event.setVersion(null);
+        }
+        return event;
+    }
+
+    /**
+     * 标记任务结束，事件缓存在保留期后清理
+     */
+    private void markCompleted(String taskId) {
+        lastPushedStatus.remove(taskId);
+        TaskEventLog eventLog = eventLogs.get(taskId);
+        if (eventLog != null) {
+            eventLog.completedAt = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * 延迟关闭连接
+     */
+    private void scheduleClose(String taskId) {
+        // 等待片刻让前端处理完成事件
+        scheduler.schedule(() -> closeConnection(taskId), config.getCloseDelayMs(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 向所有订阅者发送心跳，并回收失效的订阅者：
+     * 已断开的客户端在发送心跳时报错并关闭；发送队列长时间无进展的订阅者直接关闭
+     */
+    private void heartbeatAndReap() {
+        try {
+            long now = System.currentTimeMillis();
+            long stallTimeoutMs = TimeUnit.SECONDS.toMillis(config.getStallTimeoutSeconds());
+            int reaped = 0;
+
+            for (Set<Subscriber> subscribers : activeConnections.values()) {
+                for (Subscriber subscriber : subscribers) {
+                    if (subscriber.isStalled(now, stallTimeoutMs)) {
+                        logger.warn("🧹 回收无响应的SSE连接: taskId={}, 待发送事件={}",
+                                subscriber.taskId, subscriber.queueSize());
+                        subscriber.close();
+                        reaped++;
+                    } else {
+                        subscriber.enqueue(HEARTBEAT, false);
+                    }
+                }
             }
-        }).start();
+
+            reapedConnections.addAndGet(reaped);
+            // 按两次心跳之间累计回收数的增量计算，包含发送心跳失败后在发送线程中回收的连接
+            long totalReaped = reapedConnections.get();
+            reapRatePerMinute = (totalReaped - reapedAtLastPass) * 60.0 / Math.max(1, config.getHeartbeatSeconds());
+            reapedAtLastPass = totalReaped;
+        } catch (Exception e) {
+            logger.error("SSE心跳任务执行失败: {}", e.getMessage(), e);
+        }
     }
 
     /**
-     * 发送日志事件到前端
+     * 发送日志事件到前端，并写入重放缓存
      */
     private void sendLogEvent(String taskId, Object event) {
-        SseEmitter emitter = activeConnections.get(taskId);
-        if (emitter != null) {
-            try {
-                String jsonData = objectMapper.writeValueAsString(event);
-                logger.info("📤 准备推送日志事件: taskId={}, type={}, data={}", taskId,
-                        event instanceof LogEvent ? ((LogEvent) event).getType() : "unknown", jsonData);
+        publish(taskId, event, true);
+    }
+
+    /**
+     * 发布事件：写入重放缓存并放入每个订阅者的发送队列
+     *
+     * @param replayable 是否分配事件ID并写入重放缓存
+     */
+    private void publish(String taskId, Object event, boolean replayable) {
+        String jsonData = encoder.encode(event);
+        if (jsonData == null) {
+            return;
+        }
 
-                emitter.send(SseEmitter.event()
-                        .name("log")
-                        .data(jsonData));
+        TaskEventLog eventLog = replayable
+                ? eventLogs.computeIfAbsent(taskId, k -> new TaskEventLog(config.getReplayBufferSize()))
+                : eventLogs.get(taskId);
+        if (eventLog == null) {
+            enqueueAll(taskId, new OutboundEvent(null, jsonData, null));
+            return;
+        }
 
-                logger.info("✅ 日志事件推送成功: taskId={}", taskId);
-            } catch (IOException e) {
-                logger.error("推送日志事件失败: taskId={}, error={}", taskId, e.getMessage());
-                activeConnections.remove(taskId);
+        synchronized (eventLog) {
+            Long eventId = replayable ? eventLog.append(jsonData) : null;
+            if (!enqueueAll(taskId, new OutboundEvent(eventId, jsonData, null))) {
+                logger.debug("未找到SSE连接，事件已缓存: taskId={}, eventId={}", taskId, eventId);
             }
-        } else {
-            logger.warn("⚠️ 未找到SSE连接: taskId={}, 无法推送事件", taskId);
         }
     }
 
+    private boolean enqueueAll(String taskId, OutboundEvent event) {
+        Set<Subscriber> subscribers = activeConnections.get(taskId);
+        if (subscribers == null || subscribers.isEmpty()) {
+            return false;
+        }
+        for (Subscriber subscriber : subscribers) {
+            subscriber.enqueue(event, false);
+        }
+        return true;
+    }
+
+    /**
+     * 以二进制帧格式获取缓存中 afterId 之后的事件，供非浏览器客户端轮询
+     *
+     * @return 帧数据；任务没有事件缓存时返回 null
+     */
+    public byte[] getBufferedFrames(String taskId, long afterId) {
+        TaskEventLog eventLog = eventLogs.get(taskId);
+        if (eventLog == null) {
+            return null;
+        }
+
+        List<BufferedEvent> events;
+        synchronized (eventLog) {
+            events = eventLog.since(afterId);
+        }
+        List<Long> ids = new ArrayList<>(events.size());
+        List<String> payloads = new ArrayList<>(events.size());
+        for (BufferedEvent event : events) {
+            ids.add(event.id());
+            payloads.add(event.data());
+        }
+        return encoder.encodeFrames(ids, payloads);
+    }
+
+    /**
+     * 清理已结束且超过保留期的任务缓存，以及长时间无事件的缓存
+     */
+    private void sweepEventLogs() {
+        long now = System.currentTimeMillis();
+        long retentionMs = config.getCompletedRetentionSeconds() * 1000L;
+        eventLogs.entrySet().removeIf(entry -> {
+            TaskEventLog eventLog = entry.getValue();
+            boolean expired = eventLog.completedAt > 0
+                    ? now - eventLog.completedAt > retentionMs
+                    : now - eventLog.lastEventTime > IDLE_EVENT_LOG_MS;
+            return expired && !activeConnections.containsKey(entry.getKey());
+        });
+    }
+
     /**
      * 获取工具图标
      */
     private String getToolIcon(String toolName) {
         return switch (toolName) {
             case "readFile" -> "📖";
+            case "readFiles" -> "📚";
             case "writeFile" -> "✏️";
+            case "writeFiles" -> "🗂️";
             case "editFile" -> "📝";
             case "listDirectory" -> "📁";
             case "analyzeProject" -> "🔍";
@@ -196,9 +506,250 @@ public class LogStreamService {
     }
 
     /**
-     * 获取活跃连接数
+     * 获取活跃连接数（所有任务的订阅者总数）
      */
     public int getActiveConnectionCount() {
-        return activeConnections.size();
+        int count = 0;
+        for (Set<Subscriber> subscribers : activeConnections.values()) {
+            count += subscribers.size();
+        }
+        return count;
+    }
+
+    /**
+     * 获取推送统计信息
+     */
+    public Map<String, Object> getStats() {
+        int queuedEvents = 0;
+        for (Set<Subscriber> subscribers : activeConnections.values()) {
+            for (Subscriber subscriber : subscribers) {
+                queuedEvents += subscriber.queueSize();
+            }
+        }
+        return Map.of(
+                "subscribedTasks", activeConnections.size(),
+                "subscribers", getActiveConnectionCount(),
+                "reapedConnections", reapedConnections.get(),
+                "reapRatePerMinute", reapRatePerMinute,
+                "queuedEvents", queuedEvents,
+                "droppedEvents", droppedEvents.get(),
+                "coalescedEvents", coalescedEvents.get(),
+                "bufferedTasks", eventLogs.size(),
+                "replayedEvents", replayedEvents.get()
+        );
+    }
+
+    /**
+     * 缓存中的事件
+     */
+    private record BufferedEvent(long id, String data) {
+    }
+
+    /**
+     * 待发送的事件；输出片段保留原始事件，由发送线程序列化
+     */
+    private record OutboundEvent(Long id, String data, TurnLogEvent token) {
+    }
+
+    /**
+     * SSE订阅者
+     * 拥有独立的有界发送队列，同一时刻最多一个发送线程在处理该队列，保证事件顺序
+     */
+    private final class Subscriber {
+        private final String taskId;
+        private final SseEmitter emitter;
+        private final Deque<OutboundEvent> queue = new ArrayDeque<>();
+        private boolean draining;
+        private volatile boolean closed;
+        // 最近一次发送成功（或队列为空）的时间
+        private volatile long lastProgressTime = System.currentTimeMillis();
+
+        Subscriber(String taskId, SseEmitter emitter) {
+            this.taskId = taskId;
+            this.emitter = emitter;
+        }
+
+        /**
+         * 入队事件
+         *
+         * @param force 是否忽略队列容量（连接时的重放事件和关闭标记）
+         */
+        void enqueue(OutboundEvent event, boolean force) {
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                // 队列已满时才合并输出片段，发送跟得上时逐个发送以保持流式效果
+                boolean full = queue.size() >= config.getSubscriberQueueSize();
+                if (event.token() != null && full && coalesce(event.token())) {
+                    coalescedEvents.incrementAndGet();
+                    return;
+                }
+                if (!force && full && !dropOldestTransient()) {
+                    droppedEvents.incrementAndGet();
+                    if (event.id() == null) {
+                        return;
+                    }
+                    // 可重放事件无法入队：断开该订阅者，客户端重连后按 Last-Event-ID 从缓存补齐
+                    logger.warn("⚠️ SSE订阅者发送队列已满，断开连接等待重连: taskId={}", taskId);
+                    queue.clear();
+                    queue.addLast(CLOSE);
+                    closed = true;
+                } else {
+                    queue.addLast(event);
+                }
+                if (draining) {
+                    return;
+                }
+                draining = true;
+            }
+            senderExecutor.execute(this::drain);
+        }
+
+        /**
+         * 把输出片段合并进队尾同一轮的待发送片段
+         */
+        private boolean coalesce(TurnLogEvent token) {
+            OutboundEvent last = queue.peekLast();
+            if (last == null || last.token() == null || !last.token().getTurn().equals(token.getTurn())) {
+                return false;
+            }
+            TurnLogEvent merged = new TurnLogEvent(token.getType(), token.getTaskId(), token.getTurn(),
+                    last.token().getDelta() + token.getDelta(), token.getTimestamp());
+            queue.pollLast();
+            queue.addLast(new OutboundEvent(null, null, merged));
+            return true;
+        }
+
+        /**
+         * 丢弃队列中最早的临时事件（无事件ID）
+         */
+        private boolean dropOldestTransient() {
+            Iterator<OutboundEvent> iterator = queue.iterator();
+            while (iterator.hasNext()) {
+                OutboundEvent queued = iterator.next();
+                if (queued.id() == null && queued != CLOSE) {
+                    iterator.remove();
+                    droppedEvents.incrementAndGet();
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        synchronized int queueSize() {
+            return queue.size();
+        }
+
+        /**
+         * 有待发送事件但长时间没有发送成功
+         */
+        synchronized boolean isStalled(long now, long stallTimeoutMs) {
+            if (queue.isEmpty() && !draining) {
+                lastProgressTime = now;
+                return false;
+            }
+            return now - lastProgressTime > stallTimeoutMs;
+        }
+
+        /**
+         * 在发送线程中依次发送队列中的事件
+         */
+        private void drain() {
+            while (true) {
+                OutboundEvent event;
+                synchronized (this) {
+                    event = queue.pollFirst();
+                    if (event == null) {
+                        draining = false;
+                        return;
+                    }
+                }
+
+                if (event == CLOSE) {
+                    close();
+                    return;
+                }
+
+                if (event == HEARTBEAT) {
+                    try {
+                        emitter.send(SseEmitter.event().comment("heartbeat"));
+                        lastProgressTime = System.currentTimeMillis();
+                    } catch (IOException | IllegalStateException e) {
+                        logger.info("🧹 心跳发送失败，回收SSE连接: taskId={}", taskId);
+                        reapedConnections.incrementAndGet();
+                        close();
+                        return;
+                    }
+                    continue;
+                }
+
+                String jsonData = event.data() != null ? event.data() : encoder.encode(event.token());
+                if (jsonData == null) {
+                    continue;
+                }
+                try {
+                    SseEmitter.SseEventBuilder builder = SseEmitter.event()
+                            .name("log")
+                            .data(jsonData);
+                    if (event.id() != null) {
+                        builder.id(String.valueOf(event.id()));
+                    }
+                    emitter.send(builder);
+                    lastProgressTime = System.currentTimeMillis();
+                    logger.debug("📤 日志事件推送成功: taskId={}, eventId={}", taskId, event.id());
+                } catch (IOException | IllegalStateException e) {
+                    logger.error("推送日志事件失败: taskId={}, error={}", taskId, e.getMessage());
+                    close();
+                    return;
+                }
+            }
+        }
+
+        private void close() {
+            synchronized (this) {
+                closed = true;
+                queue.clear();
+                draining = false;
+            }
+            removeSubscriber(this);
+            try {
+                emitter.complete();
+            } catch (Exception e) {
+                logger.debug("关闭SSE连接失败: taskId={}, error={}", taskId, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 单个任务的事件缓存，事件ID从1开始递增，超出容量时覆盖最早的事件
+     * 所有访问都在对象自身的锁内完成
+     */
+    private static final class TaskEventLog {
+        private final BufferedEvent[] ring;
+        private long nextId = 1;
+        private volatile long lastEventTime = System.currentTimeMillis();
+        private volatile long completedAt = -1;
+
+        TaskEventLog(int capacity) {
+            this.ring = new BufferedEvent[Math.max(1, capacity)];
+        }
+
+        long append(String data) {
+            long id = nextId++;
+            ring[(int) ((id - 1) % ring.length)] = new BufferedEvent(id, data);
+            lastEventTime = System.currentTimeMillis();
+            return id;
+        }
+
+        List<BufferedEvent> since(long lastEventId) {
+            long oldest = Math.max(1, nextId - ring.length);
+            long from = Math.max(lastEventId + 1, oldest);
+            List<BufferedEvent> events = new ArrayList<>((int) Math.max(0, nextId - from));
+            for (long id = from; id < nextId; id++) {
+                events.add(ring[(int) ((id - 1) % ring.length)]);
+            }
+            return events;
+        }
     }
 }
@@ -0,0 +1,255 @@
+package com.ai.coder.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 分页文件读取器
+ * 为每个文件维护稀疏的行偏移索引（每 {@link #INDEX_STRIDE} 行记录一次字节偏移），
+ * 读取某一页时直接定位到最近的索引点，只扫描和解码请求窗口附近的字节。
+ * 索引按文件的修改时间和大小校验，文件变化后重建。
+ * 行结束符与 Files.readAllLines 一致：\n、\r\n 或单独的 \r。
+ * 使用 FileChannel 流式读取而非内存映射，避免映射区域在部分平台上锁定文件导致无法编辑。
+ */
+@Service
+public class PagedFileReader {
+
+    private static final Logger logger = LoggerFactory.getLogger(PagedFileReader.class);
+
+    // 索引点间隔（行）
+    static final int INDEX_STRIDE = 256;
+
+    // 最多缓存索引的文件数
+    private static final int MAX_INDEXED_FILES = 64;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    // 行偏移索引缓存（按访问顺序淘汰）
+    private final Map<Path, LineIndex> indexes = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Path, LineIndex> eldest) {
+            return size() > MAX_INDEXED_FILES;
+        }
+    };
+
+    private final AtomicLong indexBuilds = new AtomicLong(0);
+    private final AtomicLong indexHits = new AtomicLong(0);
+
+    /**
+     * 读取结果
+     *
+     * @param content    窗口内容，行之间以 \n 连接（\r\n 和单独的 \r 均转换为 \n）
+     * @param startLine  起始行（从0开始）
+     * @param endLine    结束行（不包含）
+     * @param totalLines 文件总行数
+     */
+    public record Page(String content, int startLine, int endLine, int totalLines) {
+    }
+
+    /**
+     * 读取从 offset 行开始的 limit 行，offset 超出文件行数时返回 endLine 等于 startLine 的空页
+     */
+    public Page readPage(Path filePath, int offset, int limit) throws IOException {
+        LineIndex index = getIndex(filePath);
+        if (offset >= index.totalLines) {
+            return new Page("", offset, offset, index.totalLines);
+        }
+        int endLine = (int) Math.min((long) offset + limit, index.totalLines);
+
+        try (FileChannel channel = FileChannel.open(filePath, StandardOpenOption.READ)) {
+            int checkpoint = offset / INDEX_STRIDE;
+            long start = skipLines(channel, index.checkpoints[checkpoint], offset - checkpoint * INDEX_STRIDE);
+            long end = skipLines(channel, start, endLine - offset);
+
+            ByteBuffer window = ByteBuffer.allocate((int) (end - start));
+            while (window.hasRemaining()) {
+                if (channel.read(window, start + window.position()) < 0) {
+                    break;
+                }
+            }
+            return new Page(toContent(window.array(), window.position()), offset, endLine, index.totalLines);
+        }
+    }
+
+    /**
+     * 获取文件行数（使用索引，无需解码文件内容）
+     */
+    public int countLines(Path filePath) throws IOException {
+        return getIndex(filePath).totalLines;
+    }
+
+    /**
+     * 丢弃文件的索引
+     */
+    public void invalidate(Path filePath) {
+        synchronized (indexes) {
+            indexes.remove(filePath.toAbsolutePath().normalize());
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        int indexedFiles;
+        synchronized (indexes) {
+            indexedFiles = indexes.size();
+        }
+        return Map.of(
+                "indexedFiles", indexedFiles,
+                "indexBuilds", indexBuilds.get(),
+                "indexHits", indexHits.get()
+        );
+    }
+
+    private LineIndex getIndex(Path filePath) throws IOException {
+        Path key = filePath.toAbsolutePath().normalize();
+        BasicFileAttributes attributes = Files.readAttributes(key, BasicFileAttributes.class);
+        long modifiedTime = attributes.lastModifiedTime().toMillis();
+        long size = attributes.size();
+
+        LineIndex index;
+        synchronized (indexes) {
+            index = indexes.get(key);
+        }
+        if (index != null && index.modifiedTime == modifiedTime && index.size == size) {
+            indexHits.incrementAndGet();
+            return index;
+        }
+
+        index = buildIndex(key, modifiedTime, size);
+        synchronized (indexes) {
+            indexes.put(key, index);
+        }
+        return index;
+    }
+
+    /**
+     * 扫描整个文件建立行偏移索引
+     * UTF-8 多字节字符中不会出现 0x0A 和 0x0D，因此可以直接按字节查找换行符
+     */
+    private LineIndex buildIndex(Path filePath, long modifiedTime, long size) throws IOException {
+        long startTime = System.currentTimeMillis();
+        long[] checkpoints = new long[16];
+        checkpoints[0] = 0;
+        int checkpointCount = 1;
+        long lines = 0;
+        long position = 0;
+        byte last = '\n';
+        boolean pendingCr = false;
+
+        try (FileChannel channel = FileChannel.open(filePath, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            while (channel.read(buffer) > 0) {
+                buffer.flip();
+                int limit = buffer.limit();
+                for (int i = 0; i < limit; i++) {
+                    byte b = buffer.get(i);
+                    long lineEnd = lineEnd(pendingCr, b, position + i);
+                    pendingCr = b == '\r';
+                    if (lineEnd >= 0) {
+                        lines++;
+                        if (lines % INDEX_STRIDE == 0) {
+                            if (checkpointCount == checkpoints.length) {
+                                checkpoints = Arrays.copyOf(checkpoints, checkpointCount * 2);
+                            }
+                            checkpoints[checkpointCount++] = lineEnd;
+                        }
+                    }
+                }
+                if (limit > 0) {
+                    last = buffer.get(limit - 1);
+                }
+                position += limit;
+                buffer.clear();
+            }
+        }
+
+        // 文件以单独的 \r 结尾时，该行在文件末尾结束；最后一行没有换行符时也计为一行，与 Files.readAllLines 一致
+        if (pendingCr || (position > 0 && last != '\n')) {
+            lines++;
+        }
+
+        indexBuilds.incrementAndGet();
+        logger.debug("建立行索引: {}, 行数={}, 大小={} bytes, 耗时={}ms",
+                filePath, lines, position, System.currentTimeMillis() - startTime);
+        return new LineIndex(modifiedTime, size, (int) Math.min(lines, Integer.MAX_VALUE),
+                Arrays.copyOf(checkpoints, checkpointCount));
+    }
+
+    /**
+     * 从 position 开始跳过 count 行
+     *
+     * @return 跳过后的字节位置
+     */
+    private long skipLines(FileChannel channel, long position, int count) throws IOException {
+        if (count <= 0) {
+            return position;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        int remaining = count;
+        long current = position;
+        // position 总是行首，前一个字节若是 \r 则其后不是 \n，不需要延续状态
+        boolean pendingCr = false;
+        while (true) {
+            buffer.clear();
+            int read = channel.read(buffer, current);
+            if (read <= 0) {
+                return current;
+            }
+            for (int i = 0; i < read; i++) {
+                byte b = buffer.get(i);
+                long lineEnd = lineEnd(pendingCr, b, current + i);
+                pendingCr = b == '\r';
+                if (lineEnd >= 0 && --remaining == 0) {
+                    return lineEnd;
+                }
+            }
+            current += read;
+        }
+    }
+
+    /**
+     * 判断读到 offset 处的字节 b 时是否有一行结束：b 为 \n 时行在其后结束；
+     * 前一个字节是 \r 且 b 不是 \n 时，行在 \r 之后（即 offset）结束。\r 后是否跟 \n 要看到下一个字节才能确定，
+     * 因此跨分块时由调用方保存 previousCr。
+     *
+     * @return 行结束（下一行开始）的字节偏移，没有行结束时返回 -1
+     */
+    private static long lineEnd(boolean previousCr, byte b, long offset) {
+        if (b == '\n') {
+            return offset + 1;
+        }
+        return previousCr ? offset : -1;
+    }
+
+    /**
+     * 解码窗口字节，把 \r\n 和单独的 \r 统一为 \n 并去掉末尾换行符
+     */
+    private String toContent(byte[] bytes, int length) {
+        String content = new String(bytes, 0, length, StandardCharsets.UTF_8)
+                .replace("\r\n", "\n")
+                .replace('\r', '\n');
+        if (content.endsWith("\n")) {
+            content = content.substring(0, content.length() - 1);
+        }
+        return content;
+    }
+
+    /**
+     * 文件的行偏移索引，checkpoints[k] 为第 k * INDEX_STRIDE 行的起始字节偏移
+     */
+    private record LineIndex(long modifiedTime, long size, int totalLines, long[] checkpoints) {
+    }
+}
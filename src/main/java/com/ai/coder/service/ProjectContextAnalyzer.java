@@ -1,24 +1,49 @@
 package com.ai.coder.service;
 
+import com.ai.coder.config.AppProperties;
 import com.ai.coder.model.ProjectContext;
 import com.ai.coder.model.ProjectStructure;
 import com.ai.coder.model.ProjectType;
+import com.ai.coder.model.WorkspaceChangeEvent;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Stream;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32C;
 
 /**
  * 项目上下文分析器
  * 提供完整的项目分析功能，生成AI可理解的项目上下文
+ * 分析结果按项目根目录缓存：每个文件记录指纹（修改时间、大小、内容校验和）和代码统计，
+ * 再次分析时只重新读取指纹变化的文件；项目类型、结构、依赖和配置文件只在文件增删或非代码文件变化时重新分析。
+ * 工作目录监听生效时，未收到变更事件的项目直接使用缓存，不再遍历文件。
  */
 
 @Service
@@ -26,12 +51,201 @@ public class ProjectContextAnalyzer {
 
     private static final Logger logger = LoggerFactory.getLogger(ProjectContextAnalyzer.class);
 
+    // 代码统计遍历的最大深度：根目录下 3 层子目录中的文件
+    private static final int CODE_SCAN_MAX_DEPTH = 4;
+
+    private static final Pattern JAVA_CLASS = Pattern.compile(".*\\bclass\\s+\\w+.*");
+    private static final Pattern JAVA_METHOD = Pattern.compile(".*\\b(public|private|protected)\\s+.*\\s+\\w+\\s*\\(.*\\).*");
+    private static final Pattern JS_FUNCTION = Pattern.compile(".*\\bfunction\\s+\\w+.*");
+    private static final Pattern JS_OBJECT_FUNCTION = Pattern.compile(".*\\w+\\s*:\\s*function.*");
+    private static final Pattern JS_ARROW_FUNCTION = Pattern.compile(".*\\w+\\s*=\\s*\\(.*\\)\\s*=>.*");
+    private static final Pattern PYTHON_CLASS = Pattern.compile("^class\\s+\\w+.*:");
+    private static final Pattern PYTHON_FUNCTION = Pattern.compile("^def\\s+\\w+.*:");
+
+    // 逐字节判断用到的关键字和注释符号（均为 ASCII）
+    private static final byte[] CLASS_KEYWORD = bytes("class");
+    private static final byte[] DEF_KEYWORD = bytes("def");
+    private static final byte[] FUNCTION_KEYWORD = bytes("function");
+    private static final byte[] ARROW = bytes("=>");
+    private static final byte[] OPEN_PAREN = bytes("(");
+    private static final byte[] LINE_COMMENT = bytes("//");
+    private static final byte[] BLOCK_COMMENT = bytes("/*");
+    private static final byte[] ASTERISK = bytes("*");
+    private static final byte[] HASH = bytes("#");
+    private static final byte[] HTML_COMMENT = bytes("<!--");
+
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+    private static final ThreadLocal<byte[]> READ_BUFFER = ThreadLocal.withInitial(() -> new byte[READ_BUFFER_SIZE]);
+
     @Autowired
     public ProjectTypeDetector projectTypeDetector;
 
     @Autowired
     public ProjectDiscoveryService projectDiscoveryService;
 
+    @Autowired
+    private WorkspaceWatcher workspaceWatcher;
+
+    @Autowired
+    private AppProperties appProperties;
+
+    // 代码统计扫描专用线程池，按目录拆分任务
+    private ForkJoinPool scanPool;
+
+    // 项目根目录 -> 分析快照，按访问顺序淘汰
+    private final LinkedHashMap<Path, Snapshot> snapshots = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final AtomicLong analyses = new AtomicLong(0);
+    private final AtomicLong cachedAnalyses = new AtomicLong(0);
+    private final AtomicLong fullValidations = new AtomicLong(0);
+    private final AtomicLong structureRebuilds = new AtomicLong(0);
+    private final AtomicLong filesRead = new AtomicLong(0);
+    private final AtomicLong filesReused = new AtomicLong(0);
+    private final AtomicLong totalNanos = new AtomicLong(0);
+
+    /**
+     * 单个代码文件的统计
+     */
+    record FileStatistics(String language, int totalLines, int codeLines, int commentLines, int blankLines,
+                          int classes, int methods, int functions) {
+    }
+
+    /**
+     * 文件指纹，代码文件同时保存统计结果；非代码文件的校验和为 0、统计为 null
+     */
+    private record FileEntry(long lastModified, long size, long checksum, FileStatistics statistics) {
+
+        boolean matches(BasicFileAttributes attributes) {
+            return lastModified == attributes.lastModifiedTime().toMillis() && size == attributes.size();
+        }
+    }
+
+    /**
+     * 单个项目的分析快照，分析在快照锁内进行；变更标记由事件线程设置，不加锁
+     */
+    private static final class Snapshot {
+        private final Path root;
+        private Map<Path, FileEntry> files = new HashMap<>();
+        private ProjectType projectType;
+        private ProjectStructure structure;
+        private List<ProjectContext.DependencyInfo> dependencies;
+        private List<ProjectContext.ConfigFile> configFiles;
+        private ProjectContext.CodeStatistics codeStatistics;
+        // 上次完整检查时项目在监听范围内
+        private boolean watched;
+
+        // 需要重新遍历全部文件（有文件或目录增删、非代码文件变化、事件丢失）
+        private volatile boolean structureDirty = true;
+        // 只需重新检查的代码文件
+        private final Set<Path> dirtyFiles = ConcurrentHashMap.newKeySet();
+
+        private Snapshot(Path root) {
+            this.root = root;
+        }
+    }
+
+    /**
+     * 一次检查中发现的变化和读取计数；并行扫描时每个任务各自累计，汇合时合并
+     */
+    private static final class Changes {
+        private boolean structure;
+        private boolean code;
+        private long filesRead;
+        private long filesReused;
+
+        private void merge(Changes other) {
+            structure |= other.structure;
+            code |= other.code;
+            filesRead += other.filesRead;
+            filesReused += other.filesReused;
+        }
+    }
+
+    /**
+     * 扫描一个目录子树的结果，只由执行该子树的任务写入
+     */
+    private static final class ScanResult {
+        private final List<Map.Entry<Path, FileEntry>> files = new ArrayList<>();
+        private final Changes changes = new Changes();
+
+        private void merge(ScanResult other) {
+            files.addAll(other.files);
+            changes.merge(other.changes);
+        }
+    }
+
+    /**
+     * 以目录为单位拆分的扫描任务：子目录分叉为子任务，当前目录中的文件在本任务内检查
+     */
+    private final class ScanTask extends RecursiveTask<ScanResult> {
+        private final Path root;
+        private final Path directory;
+        private final int depth;
+        private final Map<Path, FileEntry> previous;
+
+        private ScanTask(Path root, Path directory, int depth, Map<Path, FileEntry> previous) {
+            this.root = root;
+            this.directory = directory;
+            this.depth = depth;
+            this.previous = previous;
+        }
+
+        @Override
+        protected ScanResult compute() {
+            ScanResult result = new ScanResult();
+            List<ScanTask> subtasks = new ArrayList<>();
+            try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory)) {
+                for (Path entry : entries) {
+                    BasicFileAttributes attrs;
+                    try {
+                        attrs = Files.readAttributes(entry, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                    } catch (IOException e) {
+                        logger.warn("Error processing path during code analysis: {}", entry);
+                        continue;
+                    }
+                    if (attrs.isDirectory()) {
+                        // 子项深度为 depth + 1，只进入最大深度以内且未被忽略的目录
+                        if (depth + 1 < CODE_SCAN_MAX_DEPTH
+                                && !DirectoryLister.isIgnoredDirectory(entry.getFileName().toString())) {
+                            subtasks.add(new ScanTask(root, entry, depth + 1, previous));
+                        }
+                    } else if (attrs.isRegularFile()) {
+                        result.files.add(Map.entry(entry,
+                                fingerprint(entry, attrs, previous.get(entry), result.changes)));
+                    }
+                }
+            } catch (IOException e) {
+                logger.warn("Error listing directory: {}", directory);
+            }
+
+            invokeAll(subtasks);
+            for (ScanTask subtask : subtasks) {
+                result.merge(subtask.join());
+            }
+            return result;
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        int parallelism = appProperties.getAnalysis().getParallelism();
+        if (parallelism <= 0) {
+            parallelism = Runtime.getRuntime().availableProcessors();
+        }
+        scanPool = new ForkJoinPool(parallelism, pool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("code-scan-" + thread.getPoolIndex());
+            thread.setDaemon(true);
+            return thread;
+        }, null, false);
+        logger.info("代码统计扫描并行度: {}", parallelism);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scanPool.shutdownNow();
+    }
+
     /**
      * 分析项目并生成完整上下文
      *
@@ -40,197 +254,444 @@ public class ProjectContextAnalyzer {
      */
     public ProjectContext analyzeProject(Path projectRoot) {
         logger.info("开始分析项目: {}", projectRoot);
+        long startTime = System.nanoTime();
 
         ProjectContext context = new ProjectContext(projectRoot);
 
         try {
-            // 1. 检测项目类型
-            ProjectType projectType = projectTypeDetector.detectProjectType(projectRoot);
-            context.setProjectType(projectType);
-            logger.debug("项目类型: {}", projectType);
-
-            // 2. 分析项目结构
-            ProjectStructure structure = projectDiscoveryService.analyzeProjectStructure(projectRoot);
-            context.setProjectStructure(structure);
-            logger.debug("项目结构目录数量: {}", structure.getDirectories().size());
-
-            // 3. 分析依赖关系
-            List<ProjectContext.DependencyInfo> dependencies =
-                    projectDiscoveryService.analyzeDependencies(projectRoot);
-            context.setDependencies(dependencies);
-            logger.debug("项目依赖数量: {}", dependencies.size());
-
-            // 4. 查找配置文件
-            List<ProjectContext.ConfigFile> configFiles =
-                    projectDiscoveryService.findConfigurationFiles(projectRoot);
-            context.setConfigFiles(configFiles);
-            logger.debug("配置文件数量: {}", configFiles.size());
-
-            // 5. 分析代码统计
-            ProjectContext.CodeStatistics codeStats = analyzeCodeStatistics(projectRoot, projectType);
-            context.setCodeStatistics(codeStats);
-            logger.debug("代码统计总行数: {}", codeStats.getTotalLines());
+            Snapshot snapshot = snapshotFor(projectRoot.toAbsolutePath().normalize());
+            synchronized (snapshot) {
+                refresh(snapshot);
+
+                // 1-4. 项目类型、结构、依赖关系、配置文件
+                context.setProjectType(snapshot.projectType);
+                context.setProjectStructure(snapshot.structure);
+                context.setDependencies(new ArrayList<>(snapshot.dependencies));
+                context.setConfigFiles(new ArrayList<>(snapshot.configFiles));
+
+                // 5. 代码统计
+                context.setCodeStatistics(copyOf(snapshot.codeStatistics));
+            }
+            logger.debug("项目类型: {}, 依赖数量: {}, 配置文件数量: {}, 代码统计总行数: {}",
+                    context.getProjectType(), context.getDependencies().size(), context.getConfigFiles().size(),
+                    context.getCodeStatistics().getTotalLines());
 
             // 6. 收集项目元数据
-            Map<String, Object> metadata = collectProjectMetadata(projectRoot, projectType);
+            Map<String, Object> metadata = collectProjectMetadata(projectRoot, context.getProjectType());
             context.setMetadata(metadata);
 
             // 7. 生成上下文摘要
             String summary = context.generateContextSummary();
             logger.debug("上下文摘要长度: {}", summary.length());
 
-            logger.info("项目分析完成: {}", projectRoot);
+            logger.info("项目分析完成: {}, 耗时={}ms", projectRoot, (System.nanoTime() - startTime) / 1_000_000);
             return context;
 
         } catch (Exception e) {
             logger.error("项目分析错误: {}", projectRoot, e);
             return context;
+        } finally {
+            analyses.incrementAndGet();
+            totalNanos.addAndGet(System.nanoTime() - startTime);
+        }
+    }
+
+    /**
+     * 工具写入和外部修改：修改已有代码文件只标记该文件，其他变化标记整个项目需要重新遍历
+     */
+    @EventListener
+    public void onWorkspaceChange(WorkspaceChangeEvent event) {
+        List<Snapshot> cached;
+        synchronized (snapshots) {
+            cached = new ArrayList<>(snapshots.values());
+        }
+        for (Snapshot snapshot : cached) {
+            for (WorkspaceChangeEvent.Change change : event.changes()) {
+                Path path = change.path();
+                if (change.kind() == WorkspaceChangeEvent.Kind.OVERFLOW || change.directory()) {
+                    if (path.startsWith(snapshot.root) || snapshot.root.startsWith(path)) {
+                        snapshot.structureDirty = true;
+                    }
+                } else if (path.startsWith(snapshot.root)) {
+                    if (change.kind() == WorkspaceChangeEvent.Kind.MODIFIED && isScannedCodeFile(snapshot.root, path)) {
+                        snapshot.dirtyFiles.add(path);
+                    } else {
+                        snapshot.structureDirty = true;
+                    }
+                }
+            }
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        int cachedProjects;
+        synchronized (snapshots) {
+            cachedProjects = snapshots.size();
+        }
+        long count = analyses.get();
+        return Map.of(
+                "cachedProjects", cachedProjects,
+                "analyses", count,
+                "cachedAnalyses", cachedAnalyses.get(),
+                "fullValidations", fullValidations.get(),
+                "structureRebuilds", structureRebuilds.get(),
+                "filesRead", filesRead.get(),
+                "filesReused", filesReused.get(),
+                "avgMillis", count == 0 ? 0.0 : totalNanos.get() / 1_000_000.0 / count,
+                "scanParallelism", scanPool.getParallelism()
+        );
+    }
+
+    private Snapshot snapshotFor(Path root) {
+        AppProperties.Analysis config = appProperties.getAnalysis();
+        if (!config.isCacheEnabled()) {
+            return new Snapshot(root);
+        }
+        synchronized (snapshots) {
+            Snapshot snapshot = snapshots.computeIfAbsent(root, Snapshot::new);
+            while (snapshots.size() > Math.max(1, config.getMaxCachedProjects())) {
+                Path eldest = snapshots.keySet().iterator().next();
+                snapshots.remove(eldest);
+                logger.debug("移除项目分析缓存: {}", eldest);
+            }
+            return snapshot;
         }
     }
 
     /**
-     * 分析代码统计信息
+     * 使快照与磁盘一致：项目在监听范围内、没有增删且监听器没有未发布的变更时只检查被标记的文件，
+     * 否则遍历全部文件比对指纹（外部修改在监听器去抖期间还没有标记到快照上）
      */
-    private ProjectContext.CodeStatistics analyzeCodeStatistics(Path projectRoot, ProjectType projectType) {
-        logger.info("开始分析代码统计信息: {}", projectRoot);
+    private void refresh(Snapshot snapshot) throws IOException {
+        boolean watched = workspaceWatcher.isWatching(snapshot.root);
+        boolean settled = watched && !workspaceWatcher.hasPendingChanges();
+        boolean fullValidation = snapshot.structureDirty || !settled || !snapshot.watched;
 
-        ProjectContext.CodeStatistics stats = new ProjectContext.CodeStatistics();
+        // 先清除标记再检查，检查期间到达的变更会重新标记，留给下一次分析
+        snapshot.structureDirty = false;
+        List<Path> dirty = new ArrayList<>(snapshot.dirtyFiles);
+        dirty.forEach(snapshot.dirtyFiles::remove);
 
+        Changes changes = new Changes();
         try {
-            analyzeCodeInDirectory(projectRoot, stats, projectType, 0, 3);
-        } catch (Exception e) {
-            logger.warn("分析代码统计信息错误：{}", e.getMessage());
+            if (fullValidation) {
+                fullValidations.incrementAndGet();
+                validateAll(snapshot, changes);
+            } else {
+                validateFiles(snapshot, dirty, changes);
+            }
+        } catch (IOException | RuntimeException e) {
+            snapshot.structureDirty = true;
+            throw e;
+        }
+        snapshot.watched = watched;
+        filesRead.addAndGet(changes.filesRead);
+        filesReused.addAndGet(changes.filesReused);
+
+        if (changes.structure || snapshot.projectType == null) {
+            structureRebuilds.incrementAndGet();
+            snapshot.projectType = projectTypeDetector.detectProjectType(snapshot.root);
+            snapshot.structure = projectDiscoveryService.analyzeProjectStructure(snapshot.root);
+            snapshot.dependencies = projectDiscoveryService.analyzeDependencies(snapshot.root);
+            snapshot.configFiles = projectDiscoveryService.findConfigurationFiles(snapshot.root);
         }
+        if (changes.code || snapshot.codeStatistics == null) {
+            snapshot.codeStatistics = aggregate(snapshot.files.values());
+        }
+        if (!fullValidation && dirty.isEmpty()) {
+            cachedAnalyses.incrementAndGet();
+        }
+    }
 
-        return stats;
+    /**
+     * 并行遍历项目中的全部文件（跳过 .git、node_modules 等目录），指纹未变的文件沿用缓存
+     */
+    private void validateAll(Snapshot snapshot, Changes changes) {
+        logger.info("开始分析代码统计信息: {}", snapshot.root);
+        Map<Path, FileEntry> previous = snapshot.files;
+        Map<Path, FileEntry> current = new HashMap<>(Math.max(16, previous.size() * 4 / 3 + 1));
+
+        if (Files.isDirectory(snapshot.root)) {
+            ScanResult result = scanPool.invoke(new ScanTask(snapshot.root, snapshot.root, 0, previous));
+            for (Map.Entry<Path, FileEntry> entry : result.files) {
+                current.put(entry.getKey(), entry.getValue());
+            }
+            changes.merge(result.changes);
+        }
+
+        for (Map.Entry<Path, FileEntry> entry : previous.entrySet()) {
+            if (!current.containsKey(entry.getKey())) {
+                changes.structure = true;
+                changes.code |= entry.getValue().statistics() != null;
+            }
+        }
+        snapshot.files = current;
     }
 
     /**
-     * 递归分析目录中的代码
+     * 只检查变更事件标记过的代码文件
      */
-    private void analyzeCodeInDirectory(Path directory, ProjectContext.CodeStatistics stats,
-                                        ProjectType projectType, int currentDepth, int maxDepth) {
-        if (currentDepth > maxDepth) {
-            return;
-        }
-
-        try (Stream<Path> paths = Files.list(directory)) {
-            paths.forEach(path -> {
-                try {
-                    if (Files.isDirectory(path)) {
-                        String dirName = path.getFileName().toString();
-                        // 跳过不需要分析的目录
-                        if (!shouldSkipDirectory(dirName)) {
-                            analyzeCodeInDirectory(path, stats, projectType, currentDepth + 1, maxDepth);
-                        }
-                    } else if (Files.isRegularFile(path)) {
-                        analyzeCodeFile(path, stats, projectType);
-                    }
-                } catch (Exception e) {
-                    logger.warn("Error processing path during code analysis: " + path, e);
+    private void validateFiles(Snapshot snapshot, List<Path> paths, Changes changes) throws IOException {
+        for (Path path : paths) {
+            FileEntry previous = snapshot.files.get(path);
+            BasicFileAttributes attrs;
+            try {
+                attrs = Files.readAttributes(path, BasicFileAttributes.class);
+            } catch (NoSuchFileException e) {
+                if (snapshot.files.remove(path) != null) {
+                    changes.structure = true;
+                    changes.code |= previous.statistics() != null;
                 }
-            });
+                continue;
+            }
+            if (attrs.isRegularFile()) {
+                snapshot.files.put(path, fingerprint(path, attrs, previous, changes));
+            }
+        }
+    }
+
+    /**
+     * 比对文件指纹：修改时间和大小未变时沿用缓存；变化时重新读取，内容校验和相同则沿用统计结果
+     */
+    private FileEntry fingerprint(Path file, BasicFileAttributes attrs, FileEntry previous, Changes changes) {
+        if (previous != null && previous.matches(attrs)) {
+            changes.filesReused++;
+            return previous;
+        }
+        long lastModified = attrs.lastModifiedTime().toMillis();
+        String extension = getFileExtension(file.getFileName().toString()).toLowerCase();
+        boolean codeFile = isCodeFile(extension, null);
+        // 新文件和非代码文件（构建文件、配置文件等）的变化需要重新分析项目结构
+        if (previous == null || !codeFile) {
+            changes.structure = true;
+        }
+        if (!codeFile) {
+            return new FileEntry(lastModified, attrs.size(), 0, null);
+        }
+
+        try {
+            LineCounter counter = new LineCounter(extension);
+            long checksum = counter.scan(file);
+            changes.filesRead++;
+            if (previous != null && previous.checksum() == checksum && previous.statistics() != null) {
+                return new FileEntry(lastModified, attrs.size(), checksum, previous.statistics());
+            }
+            changes.code = true;
+            return new FileEntry(lastModified, attrs.size(), checksum, counter.toStatistics());
         } catch (IOException e) {
-            logger.warn("Error listing directory: " + directory, e);
+            // 记录指纹，文件再次变化前不重复读取
+            logger.warn("Error reading file for code analysis: " + file, e);
+            changes.code |= previous != null && previous.statistics() != null;
+            return new FileEntry(lastModified, attrs.size(), 0, null);
         }
     }
 
     /**
      * 分析单个代码文件
+     * 按块读取字节并逐行分类，同时计算校验和；只有可能是类、方法或函数定义的行才解码为字符串做正则匹配。
+     * 行的划分与 String.lines() 一致（\n、\r、\r\n），空白判断与 String.trim() 一致（不大于 0x20 的字节），
+     * UTF-8 多字节字符的各字节都不小于 0x80，不会被误判为空白或注释符号。
      */
-    private void analyzeCodeFile(Path filePath, ProjectContext.CodeStatistics stats, ProjectType projectType) {
-        String fileName = filePath.getFileName().toString();
-        String extension = getFileExtension(fileName).toLowerCase();
+    static final class LineCounter {
+        private final String extension;
+        private final CRC32C crc = new CRC32C();
+        private byte[] line = new byte[256];
+        private int length;
+        private boolean afterCarriageReturn;
+
+        private int totalLines;
+        private int codeLines;
+        private int commentLines;
+        private int blankLines;
+        private int classes;
+        private int methods;
+        private int functions;
+
+        LineCounter(String extension) {
+            this.extension = extension;
+        }
 
-        // 只分析代码文件
-        if (!isCodeFile(extension, projectType)) {
-            return;
+        /**
+         * 读取并统计文件，返回内容校验和
+         */
+        long scan(Path file) throws IOException {
+            byte[] buffer = READ_BUFFER.get();
+            try (InputStream in = Files.newInputStream(file)) {
+                int read;
+                while ((read = in.read(buffer)) > 0) {
+                    crc.update(buffer, 0, read);
+                    accept(buffer, read);
+                }
+            }
+            if (length > 0) {
+                endLine();
+            }
+            return crc.getValue();
         }
 
-        try {
-            List<String> lines = Files.readAllLines(filePath);
-            int totalLines = lines.size();
-            int codeLines = 0;
-            int commentLines = 0;
-            int blankLines = 0;
-
-            for (String line : lines) {
-                String trimmedLine = line.trim();
-                if (trimmedLine.isEmpty()) {
-                    blankLines++;
-                } else if (isCommentLine(trimmedLine, extension)) {
-                    commentLines++;
+        private void accept(byte[] buffer, int count) {
+            for (int i = 0; i < count; i++) {
+                byte b = buffer[i];
+                if (b == '\n') {
+                    if (afterCarriageReturn) {
+                        afterCarriageReturn = false;
+                    } else {
+                        endLine();
+                    }
+                } else if (b == '\r') {
+                    endLine();
+                    afterCarriageReturn = true;
                 } else {
-                    codeLines++;
+                    afterCarriageReturn = false;
+                    if (length == line.length) {
+                        line = Arrays.copyOf(line, length * 2);
+                    }
+                    line[length++] = b;
                 }
             }
+        }
 
-            // 更新统计信息
-            stats.setTotalLines(stats.getTotalLines() + totalLines);
-            stats.setCodeLines(stats.getCodeLines() + codeLines);
-            stats.setCommentLines(stats.getCommentLines() + commentLines);
-            stats.setBlankLines(stats.getBlankLines() + blankLines);
-
-            // 按语言统计
-            String language = getLanguageByExtension(extension);
-            stats.addLanguageLines(language, totalLines);
-
-            // 分析类和方法（简单实现）
-            if (extension.equals(".java")) {
-                analyzeJavaFile(lines, stats);
-            } else if (extension.equals(".js") || extension.equals(".ts")) {
-                analyzeJavaScriptFile(lines, stats);
-            } else if (extension.equals(".py")) {
-                analyzePythonFile(lines, stats);
+        private void endLine() {
+            totalLines++;
+            int start = 0;
+            int end = length;
+            while (start < end && (line[start] & 0xff) <= ' ') {
+                start++;
             }
+            while (end > start && (line[end - 1] & 0xff) <= ' ') {
+                end--;
+            }
+            length = 0;
 
-        } catch (IOException e) {
-            logger.warn("Error reading file for code analysis: " + filePath, e);
+            if (start == end) {
+                blankLines++;
+                return;
+            }
+            if (isCommentLine(line, start, end, extension)) {
+                commentLines++;
+            } else {
+                codeLines++;
+            }
+            countDefinitions(start, end);
         }
-    }
 
-    /**
-     * 分析Java文件
-     */
-    private void analyzeJavaFile(List<String> lines, ProjectContext.CodeStatistics stats) {
-        for (String line : lines) {
-            String trimmedLine = line.trim();
-            if (trimmedLine.matches(".*\\bclass\\s+\\w+.*")) {
-                stats.setTotalClasses(stats.getTotalClasses() + 1);
+        /**
+         * 分析类和方法（简单实现），正则要求的关键字不在行中时跳过匹配
+         */
+        private void countDefinitions(int start, int end) {
+            switch (extension) {
+                case ".java" -> {
+                    if (contains(start, end, CLASS_KEYWORD) && JAVA_CLASS.matcher(text(start, end)).matches()) {
+                        classes++;
+                    }
+                    if (contains(start, end, OPEN_PAREN) && JAVA_METHOD.matcher(text(start, end)).matches()) {
+                        methods++;
+                    }
+                }
+                case ".js", ".ts" -> {
+                    if (contains(start, end, FUNCTION_KEYWORD) || contains(start, end, ARROW)) {
+                        String trimmedLine = text(start, end);
+                        if (JS_FUNCTION.matcher(trimmedLine).matches()
+                                || JS_OBJECT_FUNCTION.matcher(trimmedLine).matches()
+                                || JS_ARROW_FUNCTION.matcher(trimmedLine).matches()) {
+                            functions++;
+                        }
+                    }
+                }
+                case ".py" -> {
+                    if (startsWith(line, start, end, CLASS_KEYWORD) && PYTHON_CLASS.matcher(text(start, end)).matches()) {
+                        classes++;
+                    }
+                    if (startsWith(line, start, end, DEF_KEYWORD) && PYTHON_FUNCTION.matcher(text(start, end)).matches()) {
+                        functions++;
+                    }
+                }
+                default -> {
+                }
             }
-            if (trimmedLine.matches(".*\\b(public|private|protected)\\s+.*\\s+\\w+\\s*\\(.*\\).*")) {
-                stats.setTotalMethods(stats.getTotalMethods() + 1);
+        }
+
+        private String text(int start, int end) {
+            return new String(line, start, end - start, StandardCharsets.UTF_8);
+        }
+
+        private boolean contains(int start, int end, byte[] needle) {
+            for (int i = start; i <= end - needle.length; i++) {
+                if (startsWith(line, i, end, needle)) {
+                    return true;
+                }
             }
+            return false;
+        }
+
+        FileStatistics toStatistics() {
+            return new FileStatistics(getLanguageByExtension(extension), totalLines, codeLines, commentLines,
+                    blankLines, classes, methods, functions);
         }
     }
 
-    /**
-     * 分析JavaScript文件
-     */
-    private void analyzeJavaScriptFile(List<String> lines, ProjectContext.CodeStatistics stats) {
-        for (String line : lines) {
-            String trimmedLine = line.trim();
-            if (trimmedLine.matches(".*\\bfunction\\s+\\w+.*") ||
-                    trimmedLine.matches(".*\\w+\\s*:\\s*function.*") ||
-                    trimmedLine.matches(".*\\w+\\s*=\\s*\\(.*\\)\\s*=>.*")) {
-                stats.setTotalFunctions(stats.getTotalFunctions() + 1);
+    private static boolean startsWith(byte[] bytes, int start, int end, byte[] prefix) {
+        if (end - start < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (bytes[start + i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static ProjectContext.CodeStatistics aggregate(Collection<FileEntry> entries) {
+        ProjectContext.CodeStatistics stats = new ProjectContext.CodeStatistics();
+        for (FileEntry entry : entries) {
+            FileStatistics file = entry.statistics();
+            if (file == null) {
+                continue;
             }
+            stats.setTotalLines(stats.getTotalLines() + file.totalLines());
+            stats.setCodeLines(stats.getCodeLines() + file.codeLines());
+            stats.setCommentLines(stats.getCommentLines() + file.commentLines());
+            stats.setBlankLines(stats.getBlankLines() + file.blankLines());
+            stats.addLanguageLines(file.language(), file.totalLines());
+            stats.setTotalClasses(stats.getTotalClasses() + file.classes());
+            stats.setTotalMethods(stats.getTotalMethods() + file.methods());
+            stats.setTotalFunctions(stats.getTotalFunctions() + file.functions());
         }
+        return stats;
+    }
+
+    private static ProjectContext.CodeStatistics copyOf(ProjectContext.CodeStatistics source) {
+        ProjectContext.CodeStatistics copy = new ProjectContext.CodeStatistics();
+        copy.setTotalLines(source.getTotalLines());
+        copy.setCodeLines(source.getCodeLines());
+        copy.setCommentLines(source.getCommentLines());
+        copy.setBlankLines(source.getBlankLines());
+        copy.setLanguageLines(new HashMap<>(source.getLanguageLines()));
+        copy.setTotalClasses(source.getTotalClasses());
+        copy.setTotalMethods(source.getTotalMethods());
+        copy.setTotalFunctions(source.getTotalFunctions());
+        return copy;
+    }
+
+    private static byte[] bytes(String ascii) {
+        return ascii.getBytes(StandardCharsets.US_ASCII);
     }
 
     /**
-     * 分析Python文件
+     * 是否为代码统计范围内的代码文件：在遍历深度内、不在被忽略的目录中
      */
-    private void analyzePythonFile(List<String> lines, ProjectContext.CodeStatistics stats) {
-        for (String line : lines) {
-            String trimmedLine = line.trim();
-            if (trimmedLine.matches("^class\\s+\\w+.*:")) {
-                stats.setTotalClasses(stats.getTotalClasses() + 1);
-            }
-            if (trimmedLine.matches("^def\\s+\\w+.*:")) {
-                stats.setTotalFunctions(stats.getTotalFunctions() + 1);
+    private boolean isScannedCodeFile(Path root, Path path) {
+        Path relative = root.relativize(path);
+        if (relative.getNameCount() > CODE_SCAN_MAX_DEPTH) {
+            return false;
+        }
+        for (int i = 0; i < relative.getNameCount() - 1; i++) {
+            if (DirectoryLister.isIgnoredDirectory(relative.getName(i).toString())) {
+                return false;
             }
         }
+        return isCodeFile(getFileExtension(path.getFileName().toString()).toLowerCase(), null);
     }
 
     /**
@@ -282,13 +743,6 @@ public class ProjectContextAnalyzer {
     }
 
     // 辅助方法
-    private boolean shouldSkipDirectory(String dirName) {
-        return dirName.equals(".git") || dirName.equals("node_modules") ||
-                dirName.equals("target") || dirName.equals("build") ||
-                dirName.equals("dist") || dirName.equals("__pycache__") ||
-                dirName.startsWith(".");
-    }
-
     private String getFileExtension(String fileName) {
         int lastDot = fileName.lastIndexOf('.');
         return lastDot > 0 ? fileName.substring(lastDot) : "";
@@ -302,7 +756,7 @@ public class ProjectContextAnalyzer {
                 extension.equals(".cs") || extension.equals(".cpp") || extension.equals(".c");
     }
 
-    private boolean isCommentLine(String line, String extension) {
+    private static boolean isCommentLine(byte[] line, int start, int end, String extension) {
         switch (extension) {
             case ".java":
             case ".js":
@@ -310,17 +764,18 @@ public class ProjectContextAnalyzer {
             case ".jsx":
             case ".tsx":
             case ".css":
-                return line.startsWith("//") || line.startsWith("/*") || line.startsWith("*");
+                return startsWith(line, start, end, LINE_COMMENT) || startsWith(line, start, end, BLOCK_COMMENT)
+                        || startsWith(line, start, end, ASTERISK);
             case ".py":
-                return line.startsWith("#");
+                return startsWith(line, start, end, HASH);
             case ".html":
-                return line.startsWith("<!--");
+                return startsWith(line, start, end, HTML_COMMENT);
             default:
-                return line.startsWith("#") || line.startsWith("//");
+                return startsWith(line, start, end, HASH) || startsWith(line, start, end, LINE_COMMENT);
         }
     }
 
-    private String getLanguageByExtension(String extension) {
+    private static String getLanguageByExtension(String extension) {
         switch (extension) {
             case ".java":
                 return "Java";
@@ -346,11 +346,7 @@ public class ProjectDiscoveryService {
      * 检查是否应该忽略目录
      */
     private boolean shouldIgnoreDirectory(String dirName) {
-        return dirName.equals(".git") || dirName.equals(".svn") ||
-                dirName.equals("node_modules") || dirName.equals("target") ||
-                dirName.equals("build") || dirName.equals("dist") ||
-                dirName.equals("__pycache__") || dirName.equals(".idea") ||
-                dirName.equals(".vscode") || dirName.startsWith(".");
+        return DirectoryLister.isIgnoredDirectory(dirName);
     }
 
     /**
@@ -0,0 +1,231 @@
+package com.ai.coder.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 流式文件编辑引擎
+ * 分块扫描文件查找匹配文本或行范围，只把被替换的区域放入内存：
+ * 编辑结果写入同目录下的临时文件，未修改的区域通过 FileChannel.transferTo 直接复制，
+ * 写完后由 {@link AtomicFileWriter} 按落盘策略同步并原子替换原文件，编辑过程中原文件始终完整。
+ * 匹配按 UTF-8 字节进行，与按字符串匹配的结果一致。
+ */
+@Service
+public class StreamingFileEditor {
+
+    private static final Logger logger = LoggerFactory.getLogger(StreamingFileEditor.class);
+
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    private final AtomicFileWriter atomicFileWriter;
+
+    public StreamingFileEditor(AtomicFileWriter atomicFileWriter) {
+        this.atomicFileWriter = atomicFileWriter;
+    }
+
+    /**
+     * 待替换的字节区域 [start, end)
+     */
+    public record Region(long start, long end, byte[] replacement) {
+    }
+
+    /**
+     * 行范围的位置和原内容
+     *
+     * @param start    起始行首的字节偏移
+     * @param end      结束行末（不含换行符）的字节偏移
+     * @param content  区域原内容
+     */
+    public record LineRange(long start, long end, String content) {
+    }
+
+    /**
+     * 查找文本在文件中的位置（不重叠）
+     *
+     * @param limit 最多返回的匹配数
+     * @return 各匹配的起始字节偏移
+     */
+    public List<Long> findMatches(Path file, String text, int limit) throws IOException {
+        byte[] pattern = text.getBytes(StandardCharsets.UTF_8);
+        List<Long> matches = new ArrayList<>();
+        if (pattern.length == 0) {
+            return matches;
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            // 缓冲区保留上一块末尾 pattern.length - 1 个字节，处理跨块的匹配
+            ByteBuffer buffer = ByteBuffer.allocate(Math.max(CHUNK_SIZE, pattern.length * 2));
+            long bufferStart = 0;
+            // 下一个允许的匹配起点（保证匹配不重叠）
+            long nextAllowed = 0;
+
+            while (true) {
+                boolean eof = channel.read(buffer) < 0;
+                buffer.flip();
+                int length = buffer.limit();
+                byte[] array = buffer.array();
+
+                int lastStart = length - pattern.length;
+                for (int i = (int) Math.max(0, nextAllowed - bufferStart); i <= lastStart; i++) {
+                    if (array[i] == pattern[0] && regionEquals(array, i, pattern)) {
+                        matches.add(bufferStart + i);
+                        if (matches.size() >= limit) {
+                            return matches;
+                        }
+                        nextAllowed = bufferStart + i + pattern.length;
+                        i += pattern.length - 1;
+                    }
+                }
+
+                if (eof) {
+                    break;
+                }
+                int keep = Math.min(pattern.length - 1, length);
+                System.arraycopy(array, length - keep, array, 0, keep);
+                bufferStart += length - keep;
+                buffer.clear();
+                buffer.position(keep);
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * 定位 1-based 的行范围 [startLine, endLine]，行号超出文件行数时返回 null
+     * 行以 \n 分隔，区域内容与按 \n 拆分后再拼接的结果一致
+     */
+    public LineRange findLineRange(Path file, int startLine, int endLine) throws IOException {
+        long start = -1;
+        long end = -1;
+        int line = 1;
+        long position = 0;
+
+        if (startLine == 1) {
+            start = 0;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(CHUNK_SIZE);
+            int read;
+            scan:
+            while ((read = channel.read(buffer)) > 0) {
+                byte[] array = buffer.array();
+                for (int i = 0; i < read; i++) {
+                    if (array[i] != '\n') {
+                        continue;
+                    }
+                    if (line == endLine) {
+                        end = position + i;
+                        break scan;
+                    }
+                    line++;
+                    if (line == startLine) {
+                        start = position + i + 1;
+                    }
+                }
+                position += read;
+                buffer.clear();
+            }
+            if (end < 0) {
+                // 最后一行没有换行符
+                if (line != endLine) {
+                    return null;
+                }
+                end = channel.size();
+            }
+            if (start < 0) {
+                return null;
+            }
+
+            ByteBuffer content = ByteBuffer.allocate((int) (end - start));
+            while (content.hasRemaining() && channel.read(content, start + content.position()) > 0) {
+                // 读满区域
+            }
+            return new LineRange(start, end, new String(content.array(), 0, content.position(), StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * 统计文件中 [0, end) 字节范围内的换行符数，即 end 所在行之前的行数
+     */
+    public int countLines(Path file, long end) throws IOException {
+        int count = 0;
+        long position = 0;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(CHUNK_SIZE);
+            int read;
+            while (position < end && (read = channel.read(buffer)) > 0) {
+                byte[] array = buffer.array();
+                int limit = (int) Math.min(read, end - position);
+                for (int i = 0; i < limit; i++) {
+                    if (array[i] == '\n') {
+                        count++;
+                    }
+                }
+                position += read;
+                buffer.clear();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 替换文件中的若干区域（按起点升序、互不重叠），写入临时文件后原子替换原文件
+     *
+     * @return 新文件的字节数
+     */
+    public long rewrite(Path file, List<Region> regions) throws IOException {
+        long startTime = System.currentTimeMillis();
+        Path temp = atomicFileWriter.tempFileFor(file);
+        long written = 0;
+
+        try (FileChannel source = FileChannel.open(file, StandardOpenOption.READ);
+             FileChannel target = FileChannel.open(temp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            long position = 0;
+            for (Region region : regions) {
+                written += transfer(source, position, region.start() - position, target);
+                ByteBuffer replacement = ByteBuffer.wrap(region.replacement());
+                while (replacement.hasRemaining()) {
+                    written += target.write(replacement);
+                }
+                position = region.end();
+            }
+            written += transfer(source, position, source.size() - position, target);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+
+        atomicFileWriter.commit(temp, file);
+        logger.debug("流式编辑完成: {}, 区域数={}, 新大小={} bytes, 耗时={}ms",
+                file, regions.size(), written, System.currentTimeMillis() - startTime);
+        return written;
+    }
+
+    private long transfer(FileChannel source, long position, long count, FileChannel target) throws IOException {
+        long transferred = 0;
+        while (transferred < count) {
+            long n = source.transferTo(position + transferred, count - transferred, target);
+            if (n <= 0) {
+                break;
+            }
+            transferred += n;
+        }
+        return transferred;
+    }
+
+    private static boolean regionEquals(byte[] array, int offset, byte[] pattern) {
+        return Arrays.equals(array, offset, offset + pattern.length, pattern, 0, pattern.length);
+    }
+}
@@ -0,0 +1,287 @@
+package com.ai.coder.service;
+
+import com.ai.coder.model.TurnResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.ToolResponseMessage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.model.tool.ToolCallingChatOptions;
+import org.springframework.ai.model.tool.ToolCallingManager;
+import org.springframework.ai.model.tool.ToolExecutionResult;
+import org.springframework.ai.tool.ToolCallbackProvider;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 流式轮次引擎
+ * 基于 ChatClient.stream() 执行单轮对话，模型输出片段到达即推送到前端。
+ * 关闭框架内部的工具执行，由当前对话线程执行工具调用，
+ * 保证 TaskContextHolder 中的任务上下文对工具切面可见。
+ * 预执行模式下由 gate 控制：结果确定前输出片段只缓存不推送、工具调用等待放行，
+ * gate 为 false 时立即取消流并丢弃本轮。
+ */
+@Service
+public class StreamingTurnEngine {
+
+    private static final Logger logger = LoggerFactory.getLogger(StreamingTurnEngine.class);
+
+    // 单轮内工具调用往返上限，防止模型反复调用工具
+    private static final int MAX_TOOL_ROUNDS = 25;
+
+    private final ChatClient chatClient;
+    private final ToolCallingManager toolCallingManager;
+    private final ToolCallbackProvider toolCallbackProvider;
+    private final LogStreamService logStreamService;
+
+    public StreamingTurnEngine(ChatClient chatClient,
+                               ToolCallingManager toolCallingManager,
+                               ToolCallbackProvider workspaceToolCallbackProvider,
+                               LogStreamService logStreamService) {
+        this.chatClient = chatClient;
+        this.toolCallingManager = toolCallingManager;
+        this.toolCallbackProvider = workspaceToolCallbackProvider;
+        this.logStreamService = logStreamService;
+    }
+
+    /**
+     * 以流式方式执行单轮对话
+     *
+     * @param taskId              任务ID，用于推送输出片段
+     * @param conversationHistory 本轮之前的对话历史（不会被修改）
+     * @param turnNumber          轮次号
+     * @param timeoutMs           本轮超时时间
+     * @return 本轮结果，response 为本轮所有输出片段的拼接
+     */
+    public TurnResult executeTurn(String taskId, List<Message> conversationHistory, int turnNumber, long timeoutMs) {
+        return executeTurn(taskId, conversationHistory, turnNumber, timeoutMs, null);
+    }
+
+    /**
+     * 以流式方式预执行单轮对话
+     *
+     * @param gate 是否保留本轮的判定结果；为 null 表示非预执行，直接推送并执行工具
+     * @return 本轮结果；gate 判定为 false 时返回 cancelled 的结果
+     */
+    public TurnResult executeTurn(String taskId, List<Message> conversationHistory, int turnNumber,
+                                  long timeoutMs, CompletableFuture<Boolean> gate) {
+        long turnStartTime = System.currentTimeMillis();
+        long deadline = turnStartTime + timeoutMs;
+
+        List<Message> turnMessages = new ArrayList<>(conversationHistory);
+        StringBuilder responseText = new StringBuilder();
+        AtomicLong firstTokenAt = new AtomicLong(-1);
+        TokenForwarder forwarder = new TokenForwarder(taskId, turnNumber, gate != null);
+        if (gate != null) {
+            gate.thenAccept(proceed -> {
+                if (proceed) {
+                    forwarder.release();
+                }
+            });
+        }
+        int toolRounds = 0;
+
+        try {
+            logger.info("{}执行第 {} 轮对话，历史消息数量: {}", gate != null ? "预" : "流式",
+                    turnNumber, conversationHistory.size());
+
+            while (true) {
+                ChatResponse toolCallResponse = streamOnce(turnMessages, turnNumber, responseText,
+                        firstTokenAt, forwarder, gate, deadline);
+
+                // 工具调用有副作用，必须在判定保留本轮后才能执行
+                if (gate != null && !awaitGate(gate, deadline)) {
+                    return discarded(turnNumber);
+                }
+
+                if (toolCallResponse == null) {
+                    break;
+                }
+
+                toolRounds++;
+                if (toolRounds > MAX_TOOL_ROUNDS) {
+                    logger.warn("第 {} 轮工具调用次数超过上限 {}，结束本轮", turnNumber, MAX_TOOL_ROUNDS);
+                    break;
+                }
+
+                // 在当前线程执行工具调用，并把工具结果并入本轮消息
+                Prompt toolPrompt = new Prompt(turnMessages, toolExecutionOptions());
+                ToolExecutionResult executionResult = toolCallingManager.executeToolCalls(toolPrompt, toolCallResponse);
+                turnMessages = new ArrayList<>(executionResult.conversationHistory());
+
+                if (executionResult.returnDirect()) {
+                    appendDirectToolResult(turnMessages, responseText);
+                    break;
+                }
+            }
+
+            long turnDuration = System.currentTimeMillis() - turnStartTime;
+            long firstTokenLatency = firstTokenAt.get() < 0 ? -1 : firstTokenAt.get() - turnStartTime;
+            logger.debug("Turn {} streamed in {}ms, first token after {}ms, tool rounds: {}, response length: {} characters",
+                    turnNumber, turnDuration, firstTokenLatency, toolRounds, responseText.length());
+
+            TurnResult result = new TurnResult(true, responseText.isEmpty() ? null : responseText.toString(), null);
+            result.setFirstTokenLatencyMs(firstTokenLatency);
+            result.setToolCallRounds(toolRounds);
+            return result;
+
+        } catch (Exception e) {
+            if (gate != null && !awaitGate(gate, deadline)) {
+                return discarded(turnNumber);
+            }
+            long turnDuration = System.currentTimeMillis() - turnStartTime;
+            logger.error("Failed to stream turn {} after {}ms: {}", turnNumber, turnDuration, e.getMessage(), e);
+            return new TurnResult(false, null, e.getMessage());
+        }
+    }
+
+    /**
+     * 发起一次流式请求，转发输出片段
+     *
+     * @return 若模型请求调用工具，返回包含工具调用的响应；否则返回 null
+     */
+    private ChatResponse streamOnce(List<Message> messages, int turnNumber, StringBuilder responseText,
+                                    AtomicLong firstTokenAt, TokenForwarder forwarder,
+                                    CompletableFuture<Boolean> gate, long deadline) {
+        long remaining = deadline - System.currentTimeMillis();
+        if (remaining <= 0) {
+            throw new IllegalStateException("第" + turnNumber + "轮对话超时");
+        }
+
+        AtomicReference<ChatResponse> toolCallResponse = new AtomicReference<>();
+
+        Flux<ChatResponse> stream = chatClient.prompt()
+                .messages(messages)
+                .options(streamingOptions())
+                .stream()
+                .chatResponse();
+        if (gate != null) {
+            // 判定为不保留时立即取消流；使用副本避免取消订阅时连带取消 gate
+            stream = stream.takeUntilOther(Mono.fromFuture(gate.copy())
+                    .flatMap(proceed -> proceed ? Mono.<Boolean>never() : Mono.just(Boolean.TRUE)));
+        }
+
+        stream.doOnNext(chunk -> {
+                    if (chunk.hasToolCalls()) {
+                        toolCallResponse.set(chunk);
+                    }
+
+                    String delta = Optional.ofNullable(chunk.getResult())
+                            .map(Generation::getOutput)
+                            .map(AssistantMessage::getText)
+                            .orElse(null);
+                    if (delta != null && !delta.isEmpty()) {
+                        firstTokenAt.compareAndSet(-1, System.currentTimeMillis());
+                        responseText.append(delta);
+                        forwarder.accept(delta);
+                    }
+                })
+                .blockLast(Duration.ofMillis(remaining));
+
+        return toolCallResponse.get();
+    }
+
+    /**
+     * 等待预执行判定结果，超时视为不保留
+     */
+    private boolean awaitGate(CompletableFuture<Boolean> gate, long deadline) {
+        try {
+            long remaining = Math.max(0, deadline - System.currentTimeMillis());
+            return Boolean.TRUE.equals(gate.get(remaining, TimeUnit.MILLISECONDS));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException | TimeoutException e) {
+            logger.warn("预执行判定未能完成，丢弃预执行轮次: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    private TurnResult discarded(int turnNumber) {
+        logger.info("下一发言者为用户，丢弃预执行的第 {} 轮", turnNumber);
+        TurnResult result = new TurnResult(false, null, "Speculative turn discarded");
+        result.setCancelled(true);
+        return result;
+    }
+
+    /**
+     * 工具要求直接返回时，把工具结果作为本轮输出
+     */
+    private void appendDirectToolResult(List<Message> turnMessages, StringBuilder responseText) {
+        Message last = turnMessages.get(turnMessages.size() - 1);
+        if (last instanceof ToolResponseMessage toolResponseMessage) {
+            for (ToolResponseMessage.ToolResponse response : toolResponseMessage.getResponses()) {
+                if (!responseText.isEmpty()) {
+                    responseText.append("\n");
+                }
+                responseText.append(response.responseData());
+            }
+        }
+    }
+
+    /**
+     * 输出片段转发器
+     * 预执行轮次在放行前缓存片段，放行时一次性推送
+     */
+    private final class TokenForwarder {
+        private final String taskId;
+        private final int turnNumber;
+        private final StringBuilder pending = new StringBuilder();
+        private boolean released;
+
+        TokenForwarder(String taskId, int turnNumber, boolean gated) {
+            this.taskId = taskId;
+            this.turnNumber = turnNumber;
+            this.released = !gated;
+        }
+
+        synchronized void accept(String delta) {
+            if (released) {
+                logStreamService.pushTurnToken(taskId, turnNumber, delta);
+            } else {
+                pending.append(delta);
+            }
+        }
+
+        synchronized void release() {
+            if (released) {
+                return;
+            }
+            released = true;
+            if (!pending.isEmpty()) {
+                logStreamService.pushTurnToken(taskId, turnNumber, pending.toString());
+                pending.setLength(0);
+            }
+        }
+    }
+
+    // ChatClient 会把默认工具合并进选项对象，因此每次请求都创建新实例
+    private ToolCallingChatOptions streamingOptions() {
+        return ToolCallingChatOptions.builder()
+                .internalToolExecutionEnabled(false)
+                .build();
+    }
+
+    private ToolCallingChatOptions toolExecutionOptions() {
+        return ToolCallingChatOptions.builder()
+                .toolCallbacks(toolCallbackProvider.getToolCallbacks())
+                .internalToolExecutionEnabled(false)
+                .build();
+    }
+}
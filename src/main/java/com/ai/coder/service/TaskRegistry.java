@@ -0,0 +1,373 @@
+package com.ai.coder.service;
+
+import com.ai.coder.config.AppProperties;
+import com.ai.coder.model.ConversationResult;
+import com.ai.coder.model.TaskStatus;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * 任务注册表
+ * 保存任务状态和对话结果：已结束的任务按保留时间和数量淘汰，
+ * 对话结果在内存中只保留最近的若干条，被淘汰（或应用关闭）时可选地追加写入工作目录之外的磁盘文件，之后按需加载。
+ */
+@Service
+public class TaskRegistry {
+
+    private static final Logger logger = LoggerFactory.getLogger(TaskRegistry.class);
+
+    // 两次过期清理之间的最小间隔（毫秒）
+    private static final long SWEEP_INTERVAL_MS = 60_000;
+
+    private static final String SEGMENT_PREFIX = "results-";
+    private static final String SEGMENT_SUFFIX = ".jsonl";
+    private static final Pattern SEGMENT_PATTERN = Pattern.compile("results-(\\d+)\\.jsonl");
+
+    private final AppProperties.TaskRegistry config;
+    private final ObjectMapper objectMapper;
+
+    private final Map<String, TaskStatus> tasks = new ConcurrentHashMap<>();
+    private final Map<String, ConversationResult> results;
+    // 从内存淘汰、等待写入磁盘的结果，在 Map 锁外写入
+    private final Queue<Map.Entry<String, ConversationResult>> pendingSpills = new ConcurrentLinkedQueue<>();
+
+    // 磁盘结果索引 taskId -> 文件位置
+    private final Map<String, SpillLocation> spillIndex = new ConcurrentHashMap<>();
+    private final Path spillDirectory;
+    private int currentSegment;
+
+    private final AtomicLong lastSweepTime = new AtomicLong(System.currentTimeMillis());
+    private final AtomicLong evictedTasks = new AtomicLong(0);
+    private final AtomicLong spillLoads = new AtomicLong(0);
+
+    public TaskRegistry(AppProperties appProperties) {
+        this.config = appProperties.getTaskRegistry();
+        this.objectMapper = new ObjectMapper()
+                .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+        int maxResults = Math.max(1, config.getMaxResultsInMemory());
+        this.results = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, ConversationResult> eldest) {
+                if (size() <= maxResults) {
+                    return false;
+                }
+                if (config.isSpillEnabled()) {
+                    pendingSpills.add(Map.entry(eldest.getKey(), eldest.getValue()));
+                }
+                return true;
+            }
+        });
+
+        String directory = config.getSpillDirectory();
+        this.spillDirectory = directory == null || directory.isBlank()
+                ? Paths.get(System.getProperty("user.home"), ".ai-coder", "tasks")
+                : Paths.get(directory);
+
+        if (config.isSpillEnabled()) {
+            loadSpillIndex();
+        }
+    }
+
+    public void register(TaskStatus status) {
+        tasks.put(status.getTaskId(), status);
+        sweepIfDue();
+    }
+
+    public TaskStatus getStatus(String taskId) {
+        return tasks.get(taskId);
+    }
+
+    /**
+     * 保存对话结果，只放在内存中；被淘汰时才写入结果文件
+     */
+    public void storeResult(String taskId, ConversationResult result) {
+        // 新结果替代磁盘上的旧记录
+        spillIndex.remove(taskId);
+        results.put(taskId, result);
+        spillPending();
+        sweepIfDue();
+    }
+
+    /**
+     * 获取对话结果，内存中已淘汰时从结果文件加载
+     */
+    public ConversationResult getResult(String taskId) {
+        ConversationResult result = results.get(taskId);
+        if (result != null || !config.isSpillEnabled()) {
+            return result;
+        }
+
+        SpillLocation location = spillIndex.get(taskId);
+        if (location == null) {
+            // 刚被淘汰、尚未写入磁盘
+            return pendingSpills.stream()
+                    .filter(entry -> entry.getKey().equals(taskId))
+                    .map(Map.Entry::getValue)
+                    .findFirst()
+                    .orElse(null);
+        }
+
+        result = load(location);
+        if (result != null) {
+            spillLoads.incrementAndGet();
+            results.put(taskId, result);
+            spillPending();
+        }
+        return result;
+    }
+
+    /**
+     * 应用关闭时把仍在内存中的结果写入磁盘，重启后仍可查询
+     */
+    @PreDestroy
+    public void shutdown() {
+        if (!config.isSpillEnabled()) {
+            return;
+        }
+        List<Map.Entry<String, ConversationResult>> remaining;
+        synchronized (results) {
+            remaining = new ArrayList<>(results.entrySet());
+        }
+        remaining.forEach(entry -> spillIfAbsent(entry.getKey(), entry.getValue()));
+        spillPending();
+    }
+
+    public Map<String, Object> getStats() {
+        return Map.of(
+                "tasks", tasks.size(),
+                "resultsInMemory", results.size(),
+                "spilledResults", spillIndex.size(),
+                "evictedTasks", evictedTasks.get(),
+                "spillLoads", spillLoads.get()
+        );
+    }
+
+    /**
+     * 定期淘汰已结束的过期任务，任务数超限时按最后更新时间淘汰
+     */
+    private void sweepIfDue() {
+        long now = System.currentTimeMillis();
+        long last = lastSweepTime.get();
+        boolean overCapacity = tasks.size() > config.getMaxTasks();
+        if (!overCapacity && (now - last < SWEEP_INTERVAL_MS || !lastSweepTime.compareAndSet(last, now))) {
+            return;
+        }
+
+        long ttlMs = config.getTaskTtlMinutes() * 60_000L;
+        tasks.entrySet().removeIf(entry -> {
+            TaskStatus status = entry.getValue();
+            boolean expired = isFinished(status) && now - status.getLastUpdateTime() > ttlMs;
+            if (expired) {
+                evict(entry.getKey());
+            }
+            return expired;
+        });
+
+        int excess = tasks.size() - config.getMaxTasks();
+        if (excess > 0) {
+            tasks.values().stream()
+                    .filter(this::isFinished)
+                    .sorted(Comparator.comparingLong(TaskStatus::getLastUpdateTime))
+                    .limit(excess)
+                    .map(TaskStatus::getTaskId)
+                    .toList()
+                    .forEach(taskId -> {
+                        if (tasks.remove(taskId) != null) {
+                            evict(taskId);
+                        }
+                    });
+        }
+
+        logger.debug("任务注册表清理完成: 任务数={}, 内存结果数={}, 累计淘汰={}",
+                tasks.size(), results.size(), evictedTasks.get());
+    }
+
+    private void evict(String taskId) {
+        ConversationResult result = results.remove(taskId);
+        if (result != null && config.isSpillEnabled()) {
+            spillIfAbsent(taskId, result);
+        }
+        evictedTasks.incrementAndGet();
+    }
+
+    private boolean isFinished(TaskStatus status) {
+        return !"RUNNING".equals(status.getStatus());
+    }
+
+    /**
+     * 写入内存淘汰出的结果，写完后才移出等待队列，期间查询仍能从队列中取到
+     */
+    private void spillPending() {
+        Map.Entry<String, ConversationResult> entry;
+        while ((entry = pendingSpills.peek()) != null) {
+            spillIfAbsent(entry.getKey(), entry.getValue());
+            pendingSpills.remove(entry);
+        }
+    }
+
+    /**
+     * 追加写入结果文件，对话历史不落盘；从磁盘加载回内存的结果已有记录，不重复写入
+     */
+    private synchronized void spillIfAbsent(String taskId, ConversationResult result) {
+        if (spillIndex.containsKey(taskId)) {
+            return;
+        }
+        try {
+            StoredResult stored = new StoredResult(taskId, result.getFullResponse(), result.getTurnResponses(),
+                    result.getTotalTurns(), result.isReachedMaxTurns(), result.getStopReason(),
+                    result.getTotalDurationMs(), result.getContextTokensSaved());
+            byte[] line = (objectMapper.writeValueAsString(stored) + "\n").getBytes(StandardCharsets.UTF_8);
+
+            Files.createDirectories(spillDirectory);
+            Path segment = segmentPath(currentSegment);
+            if (Files.exists(segment) && Files.size(segment) + line.length > config.getMaxSpillFileBytes()) {
+                rotateSegment();
+                segment = segmentPath(currentSegment);
+            }
+
+            try (FileChannel channel = FileChannel.open(segment,
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                long offset = channel.size();
+                ByteBuffer buffer = ByteBuffer.wrap(line);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                spillIndex.put(taskId, new SpillLocation(currentSegment, offset, line.length));
+            }
+        } catch (IOException e) {
+            logger.warn("对话结果写入磁盘失败: taskId={}, {}", taskId, e.getMessage());
+        }
+    }
+
+    /**
+     * 切换到新的结果文件，只保留上一个文件
+     */
+    private void rotateSegment() throws IOException {
+        int dropped = currentSegment - 1;
+        currentSegment++;
+        if (dropped >= 0) {
+            Files.deleteIfExists(segmentPath(dropped));
+            spillIndex.values().removeIf(location -> location.segment() <= dropped);
+        }
+        logger.info("对话结果文件已滚动: {}", segmentPath(currentSegment).getFileName());
+    }
+
+    private ConversationResult load(SpillLocation location) {
+        try (FileChannel channel = FileChannel.open(segmentPath(location.segment()), StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(location.length());
+            long position = location.offset();
+            while (buffer.hasRemaining()) {
+                int read = channel.read(buffer, position);
+                if (read < 0) {
+                    break;
+                }
+                position += read;
+            }
+            StoredResult stored = objectMapper.readValue(buffer.array(), 0, buffer.position(), StoredResult.class);
+            ConversationResult result = new ConversationResult(stored.fullResponse(), stored.turnResponses(),
+                    List.of(), stored.totalTurns(), stored.reachedMaxTurns(), stored.stopReason(),
+                    stored.totalDurationMs());
+            result.setContextTokensSaved(stored.contextTokensSaved());
+            return result;
+        } catch (IOException e) {
+            logger.warn("从磁盘加载对话结果失败: segment={}, {}", location.segment(), e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 启动时扫描已有结果文件重建索引，使重启前的结果仍可查询
+     */
+    private void loadSpillIndex() {
+        if (!Files.isDirectory(spillDirectory)) {
+            return;
+        }
+
+        List<Integer> segments = new ArrayList<>();
+        try (Stream<Path> files = Files.list(spillDirectory)) {
+            files.forEach(file -> {
+                Matcher matcher = SEGMENT_PATTERN.matcher(file.getFileName().toString());
+                if (matcher.matches()) {
+                    segments.add(Integer.parseInt(matcher.group(1)));
+                }
+            });
+        } catch (IOException e) {
+            logger.warn("扫描对话结果目录失败: {}", e.getMessage());
+            return;
+        }
+
+        segments.sort(null);
+        for (int segment : segments) {
+            indexSegment(segment);
+            currentSegment = segment;
+        }
+        logger.info("已加载磁盘对话结果索引: {} 条, 文件数={}", spillIndex.size(), segments.size());
+    }
+
+    private void indexSegment(int segment) {
+        try {
+            byte[] content = Files.readAllBytes(segmentPath(segment));
+            int lineStart = 0;
+            for (int i = 0; i < content.length; i++) {
+                if (content[i] != '\n') {
+                    continue;
+                }
+                int length = i + 1 - lineStart;
+                try {
+                    StoredResult stored = objectMapper.readValue(content, lineStart, length, StoredResult.class);
+                    spillIndex.put(stored.taskId(), new SpillLocation(segment, lineStart, length));
+                } catch (IOException e) {
+                    logger.debug("跳过损坏的结果记录: segment={}, offset={}", segment, lineStart);
+                }
+                lineStart = i + 1;
+            }
+        } catch (IOException e) {
+            logger.warn("读取对话结果文件失败: segment={}, {}", segment, e.getMessage());
+        }
+    }
+
+    private Path segmentPath(int segment) {
+        return spillDirectory.resolve(SEGMENT_PREFIX + segment + SEGMENT_SUFFIX);
+    }
+
+    /**
+     * 结果文件中的记录位置
+     */
+    private record SpillLocation(int segment, long offset, int length) {
+    }
+
+    /**
+     * 落盘的对话结果（不含对话历史）
+     */
+    record StoredResult(String taskId, String fullResponse, List<String> turnResponses,
+                        int totalTurns, boolean reachedMaxTurns, String stopReason,
+                        long totalDurationMs, long contextTokensSaved) {
+    }
+}
@@ -0,0 +1,326 @@
+package com.ai.coder.service;
+
+import com.ai.coder.config.AppProperties;
+import com.ai.coder.model.WorkspaceChangeEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * 工作目录路径策略
+ * 所有工具共用的“路径是否在工作目录内”判断：工作目录的真实路径只解析一次（定期刷新），
+ * 目标路径按操作系统的方式解析（先跟随符号链接再处理 ..），确认真实位置在工作目录内后返回该位置，
+ * 调用方只对返回的路径做读写，不再使用原始路径。
+ * 不含 .. 的路径通过缓存的父目录真实路径解析，只有目标本身是符号链接时才完整解析其真实路径；
+ * 含 .. 的路径（.. 前面可能是指向工作目录外的符号链接）直接由 toRealPath 解析最长的已存在前缀。
+ * 缓存命中时仍读取一次目录属性（不跟随符号链接）：目录已变成符号链接或 fileKey 与解析时不同（被删除重建、替换）
+ * 时丢弃缓存重新解析；上级目录被移走并替换为符号链接的情况由目录删除事件或刷新间隔清空缓存。
+ * 应用自身的数据目录（工作目录下的 .ai-coder、任务结果目录、备份目录）即使位于工作目录内也不允许访问。
+ */
+@Service
+public class WorkspacePathPolicy {
+
+    private static final Logger logger = LoggerFactory.getLogger(WorkspacePathPolicy.class);
+
+    // 工作目录真实路径和目录缓存的有效期（毫秒），过期后重新解析，感知目录被替换或新建的符号链接
+    private static final long REFRESH_INTERVAL_MS = 10_000L;
+    private static final int MAX_CACHED_DIRECTORIES = 1024;
+
+    private final Path lexicalRoot;
+    // 工具不可访问的应用数据目录（词法规范化后的绝对路径）
+    private final List<Path> internalDirectories;
+
+    private volatile Path realRoot;
+    private final AtomicLong lastRefreshTime = new AtomicLong(0);
+
+    // 目录词法路径 -> 真实路径，访问顺序 LRU
+    private final Map<Path, CachedDirectory> realDirectories = new LinkedHashMap<>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Path, CachedDirectory> eldest) {
+            return size() > MAX_CACHED_DIRECTORIES;
+        }
+    };
+
+    private final AtomicLong checks = new AtomicLong(0);
+    private final AtomicLong directoryHits = new AtomicLong(0);
+    private final AtomicLong directoryMisses = new AtomicLong(0);
+    private final AtomicLong rejected = new AtomicLong(0);
+    private final AtomicLong staleDirectories = new AtomicLong(0);
+
+    /**
+     * 缓存的目录真实路径
+     *
+     * @param identity 解析时目录的 fileKey（文件系统不提供时为创建时间），用于发现目录被替换
+     */
+    private record CachedDirectory(Path realPath, Object identity) {
+    }
+
+    public WorkspacePathPolicy(AppProperties appProperties) {
+        this.lexicalRoot = Paths.get(appProperties.getWorkspace().getRootDirectory()).toAbsolutePath().normalize();
+        this.internalDirectories = Stream.concat(
+                Stream.of(lexicalRoot.resolve(".ai-coder")),
+                Stream.of(appProperties.getTaskRegistry().getSpillDirectory(), appProperties.getBackup().getDirectory())
+                        .filter(directory -> directory != null && !directory.isBlank())
+                        .map(directory -> Paths.get(directory).toAbsolutePath().normalize()))
+                .toList();
+        refresh();
+    }
+
+    /**
+     * 工作目录（词法规范化后的绝对路径）
+     */
+    public Path getRoot() {
+        return lexicalRoot;
+    }
+
+    /**
+     * 判断路径是否在工作目录内，包括尚不存在的路径（如待创建的文件）
+     * 需要读写该路径时使用 {@link #resolve}，对返回的路径做读写
+     */
+    public boolean isWithinWorkspace(Path path) {
+        return resolve(path) != null;
+    }
+
+    /**
+     * 解析路径的真实位置，在工作目录内时返回以工作目录为前缀的等价路径（各级目录均为真实目录，
+     * 目标是符号链接时为其指向的位置），否则返回 null。包括尚不存在的路径（如待创建的文件）。
+     */
+    public Path resolve(Path path) {
+        checks.incrementAndGet();
+        Path resolved = check(path);
+        if (resolved == null) {
+            rejected.incrementAndGet();
+        }
+        return resolved;
+    }
+
+    /**
+     * 清空缓存并重新解析工作目录
+     */
+    public void refresh() {
+        synchronized (realDirectories) {
+            realDirectories.clear();
+        }
+        realRoot = resolveRoot();
+        lastRefreshTime.set(System.currentTimeMillis());
+    }
+
+    /**
+     * 工作目录中有目录被删除或事件丢失时立即清空缓存，不等刷新间隔（目录可能被替换为符号链接）
+     */
+    @EventListener
+    public void onWorkspaceChange(WorkspaceChangeEvent event) {
+        if (event.requiresFullRefresh()) {
+            refresh();
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        int cached;
+        synchronized (realDirectories) {
+            cached = realDirectories.size();
+        }
+        return Map.of(
+                "root", String.valueOf(realRoot != null ? realRoot : lexicalRoot),
+                "checks", checks.get(),
+                "rejected", rejected.get(),
+                "directoryHits", directoryHits.get(),
+                "directoryMisses", directoryMisses.get(),
+                "staleDirectories", staleDirectories.get(),
+                "cachedDirectories", cached
+        );
+    }
+
+    private Path check(Path path) {
+        Path root = currentRealRoot();
+        Path absolute = path.toAbsolutePath();
+        Path normalized = absolute.normalize();
+        if (isInternal(normalized)) {
+            return null;
+        }
+        if (root == null) {
+            // 工作目录尚不存在，只能按词法判断
+            return normalized.startsWith(lexicalRoot) ? normalized : null;
+        }
+
+        try {
+            Path real = realPathOf(absolute, normalized);
+            if (real == null || !real.startsWith(root)) {
+                return null;
+            }
+            // 以词法工作目录为前缀返回，工具输出的路径和相对路径保持不变
+            Path resolved = lexicalRoot.resolve(root.relativize(real));
+            return isInternal(resolved) ? null : resolved;
+        } catch (IOException e) {
+            logger.debug("解析路径失败: {}, error={}", absolute, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 解析路径的真实位置（不存在的部分按词法拼接）
+     * 含 .. 时先规范化会把 link/.. 直接消去，而操作系统会先跟随 link 再取其上级目录，
+     * 因此交给 toRealPath 按原始路径解析；不含 .. 时规范化不改变含义，走目录缓存。
+     */
+    private Path realPathOf(Path absolute, Path normalized) throws IOException {
+        if (hasParentReference(absolute)) {
+            return realPathOfExistingPrefix(absolute);
+        }
+        if (Files.isSymbolicLink(normalized)) {
+            return normalized.toRealPath();
+        }
+        Path parent = normalized.getParent();
+        if (parent == null) {
+            return normalized;
+        }
+        Path realParent = realPathOfExistingAncestor(parent);
+        return realParent != null ? realParent.resolve(normalized.getFileName()) : null;
+    }
+
+    private static boolean hasParentReference(Path path) {
+        for (Path name : path) {
+            if (name.toString().equals("..")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 按原始路径（不做词法规范化）取最长的已存在前缀的真实路径，再拼接剩余部分
+     * 剩余部分在解析时不存在，不会是符号链接，可以按词法规范化
+     */
+    private Path realPathOfExistingPrefix(Path absolute) throws IOException {
+        Path current = absolute;
+        Path remainder = null;
+        while (current != null) {
+            try {
+                Path real = current.toRealPath();
+                return remainder == null ? real : real.resolve(remainder).normalize();
+            } catch (NoSuchFileException e) {
+                Path name = current.getFileName();
+                if (name == null) {
+                    return null;
+                }
+                remainder = remainder == null ? name : name.resolve(remainder);
+                current = current.getParent();
+            }
+        }
+        return null;
+    }
+
+    private boolean isInternal(Path normalized) {
+        for (Path directory : internalDirectories) {
+            if (normalized.startsWith(directory)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 取目录的真实路径；目录不存在时向上找到最近的已存在目录，再按词法拼接剩余部分
+     */
+    private Path realPathOfExistingAncestor(Path directory) throws IOException {
+        Path current = directory;
+        Path remainder = null;
+        while (current != null) {
+            Path real = realDirectory(current);
+            if (real != null) {
+                return remainder == null ? real : real.resolve(remainder);
+            }
+            Path name = current.getFileName();
+            remainder = remainder == null ? name : name.resolve(remainder);
+            current = current.getParent();
+        }
+        return null;
+    }
+
+    private Path realDirectory(Path directory) throws IOException {
+        BasicFileAttributes attrs;
+        try {
+            attrs = Files.readAttributes(directory, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        } catch (IOException e) {
+            // 不存在或无法访问
+            forget(directory);
+            directoryMisses.incrementAndGet();
+            return null;
+        }
+
+        Object identity = attrs.fileKey() != null ? attrs.fileKey() : attrs.creationTime();
+        synchronized (realDirectories) {
+            CachedDirectory cached = realDirectories.get(directory);
+            if (cached != null) {
+                if (!attrs.isSymbolicLink() && cached.identity().equals(identity)) {
+                    directoryHits.incrementAndGet();
+                    return cached.realPath();
+                }
+                // 目录已被替换为符号链接或其他目录，不再信任缓存
+                realDirectories.remove(directory);
+                staleDirectories.incrementAndGet();
+            }
+        }
+        directoryMisses.incrementAndGet();
+        if (!Files.isDirectory(directory)) {
+            return null;
+        }
+        Path real = directory.toRealPath();
+        // 符号链接每次都重新解析，只缓存真实目录
+        if (attrs.isDirectory()) {
+            synchronized (realDirectories) {
+                realDirectories.put(directory, new CachedDirectory(real, identity));
+            }
+        }
+        return real;
+    }
+
+    private void forget(Path directory) {
+        synchronized (realDirectories) {
+            if (realDirectories.remove(directory) != null) {
+                staleDirectories.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * 工作目录真实路径，超过刷新间隔后由一个线程重新解析，同时清空目录缓存
+     */
+    private Path currentRealRoot() {
+        long now = System.currentTimeMillis();
+        long last = lastRefreshTime.get();
+        if (now - last >= REFRESH_INTERVAL_MS && lastRefreshTime.compareAndSet(last, now)) {
+            synchronized (realDirectories) {
+                realDirectories.clear();
+            }
+            Path resolved = resolveRoot();
+            if (resolved != null && !resolved.equals(realRoot)) {
+                logger.info("📂 工作目录真实路径: {}", resolved);
+            }
+            realRoot = resolved;
+        }
+        return realRoot;
+    }
+
+    private Path resolveRoot() {
+        try {
+            return lexicalRoot.toRealPath();
+        } catch (IOException e) {
+            logger.debug("工作目录尚不存在: {}", lexicalRoot);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,415 @@
+package com.ai.coder.service;
+
+import com.ai.coder.config.AppProperties;
+import com.ai.coder.model.WorkspaceChangeEvent;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 工作目录文件监听
+ * 用 WatchService 监听工作目录下的所有目录（跳过 .git、node_modules 等），把外部修改去抖合并后
+ * 批量发布为 {@link WorkspaceChangeEvent}（origin=FILESYSTEM）。工具自己的写入已由 AtomicFileWriter 直接发布，
+ * 监听器随后收到的同一次写入会被丢弃，订阅方不会重复处理。
+ */
+@Service
+public class WorkspaceWatcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(WorkspaceWatcher.class);
+
+    // 工具写入记录的上限，监听不到的路径（如被忽略的目录）不会被消费，超出后整体清空
+    private static final int MAX_RECENT_TOOL_WRITES = 10_000;
+
+    private final AppProperties.Watcher config;
+    private final Path root;
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final Map<WatchKey, Path> watchedDirectories = new ConcurrentHashMap<>();
+    private final Set<Path> directoryPaths = ConcurrentHashMap.newKeySet();
+    // 工具最近写入的文件 -> 写入后的修改时间
+    private final Map<Path, Long> recentToolWrites = new ConcurrentHashMap<>();
+
+    private volatile WatchService watchService;
+    private volatile Thread watcherThread;
+    // 目录注册完成、正在监听
+    private volatile boolean watching;
+    // 有目录注册失败时监听不完整，订阅方不能只依赖变更事件
+    private volatile boolean registrationFailed;
+    // 轮询实现（没有原生文件通知的平台，如部分 JDK 版本的 macOS）延迟可达数秒，不视为完整监听
+    private volatile boolean pollingService;
+    // 已收到但尚未发布的变更：监听队列中未处理的事件或去抖等待中的变更，发布给订阅方后才清除
+    private volatile boolean pendingChanges;
+
+    private final AtomicLong eventsReceived = new AtomicLong(0);
+    private final AtomicLong batchesPublished = new AtomicLong(0);
+    private final AtomicLong changesPublished = new AtomicLong(0);
+    private final AtomicLong suppressedToolWrites = new AtomicLong(0);
+    private final AtomicLong overflows = new AtomicLong(0);
+
+    public WorkspaceWatcher(AppProperties appProperties, WorkspacePathPolicy workspacePathPolicy,
+                            ApplicationEventPublisher eventPublisher) {
+        this.config = appProperties.getWatcher();
+        this.root = workspacePathPolicy.getRoot();
+        this.eventPublisher = eventPublisher;
+    }
+
+    /**
+     * 应用启动完成后在后台线程注册目录并开始监听，不阻塞启动
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!config.isEnabled()) {
+            logger.info("工作目录文件监听已禁用");
+            return;
+        }
+        Thread thread = new Thread(this::run, "workspace-watcher");
+        thread.setDaemon(true);
+        watcherThread = thread;
+        thread.start();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        Thread thread = watcherThread;
+        if (thread != null) {
+            thread.interrupt();
+        }
+        WatchService service = watchService;
+        if (service != null) {
+            try {
+                service.close();
+            } catch (IOException e) {
+                logger.debug("关闭文件监听失败: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 记录工具写入后的修改时间，用于识别监听器随后收到的同一次写入
+     */
+    @EventListener
+    public void onWorkspaceChange(WorkspaceChangeEvent event) {
+        if (event.origin() != WorkspaceChangeEvent.Origin.TOOL || watcherThread == null) {
+            return;
+        }
+        if (recentToolWrites.size() > MAX_RECENT_TOOL_WRITES) {
+            recentToolWrites.clear();
+        }
+        for (WorkspaceChangeEvent.Change change : event.changes()) {
+            if (change.kind() == WorkspaceChangeEvent.Kind.DELETED) {
+                continue;
+            }
+            try {
+                recentToolWrites.put(change.path(), Files.getLastModifiedTime(change.path()).toMillis());
+            } catch (IOException e) {
+                // 文件已被再次修改或删除，交给监听器按外部修改处理
+            }
+        }
+    }
+
+    /**
+     * 路径是否处于监听范围内：监听已生效（原生通知、所有目录注册成功），路径在工作目录下且不在被忽略的目录中。
+     * 订阅方据此判断能否只依赖变更事件而不再自行检查文件，同时还需确认 {@link #hasPendingChanges()} 为 false。
+     */
+    public boolean isWatching(Path path) {
+        if (!watching || registrationFailed || pollingService) {
+            return false;
+        }
+        Path normalized = path.toAbsolutePath().normalize();
+        if (!normalized.startsWith(root)) {
+            return false;
+        }
+        for (Path name : root.relativize(normalized)) {
+            if (DirectoryLister.isIgnoredDirectory(name.toString())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 是否有已收到但尚未发布的变更。外部修改在去抖期间（最长 maxDelayMillis）对订阅方不可见，
+     * 此时订阅方的缓存可能落后于磁盘，不能只依赖变更事件。
+     */
+    public boolean hasPendingChanges() {
+        return pendingChanges;
+    }
+
+    public Map<String, Object> getStats() {
+        return Map.of(
+                "enabled", config.isEnabled(),
+                "running", watching,
+                "polling", pollingService,
+                "root", root.toString(),
+                "watchedDirectories", watchedDirectories.size(),
+                "eventsReceived", eventsReceived.get(),
+                "batchesPublished", batchesPublished.get(),
+                "changesPublished", changesPublished.get(),
+                "suppressedToolWrites", suppressedToolWrites.get(),
+                "overflows", overflows.get()
+        );
+    }
+
+    private void run() {
+        try (WatchService service = root.getFileSystem().newWatchService()) {
+            watchService = service;
+            pollingService = service.getClass().getName().endsWith("PollingWatchService");
+            if (pollingService) {
+                logger.warn("⚠️ 当前平台的文件监听为轮询实现，变更延迟较大，缓存不会只依赖变更事件");
+            }
+            Files.createDirectories(root);
+            registerTree(service, root, null);
+            watching = true;
+            logger.info("👀 开始监听工作目录: {} ({} 个目录)", root, watchedDirectories.size());
+
+            Map<Path, WorkspaceChangeEvent.Change> pending = new LinkedHashMap<>();
+            long firstPendingAt = 0;
+            while (!Thread.currentThread().isInterrupted()) {
+                // 没有待发布的变更时一直等待；有变更时等待去抖间隔，期间没有新事件才发布
+                WatchKey key = service.poll();
+                if (key == null) {
+                    if (pending.isEmpty()) {
+                        // 队列中没有未处理的事件，已收到的变更也都已发布
+                        pendingChanges = false;
+                        key = service.take();
+                    } else {
+                        key = service.poll(config.getDebounceMillis(), TimeUnit.MILLISECONDS);
+                    }
+                }
+                long now = System.currentTimeMillis();
+                if (key != null) {
+                    pendingChanges = true;
+                    if (pending.isEmpty()) {
+                        firstPendingAt = now;
+                    }
+                    collect(service, key, pending);
+                }
+                boolean quiet = key == null;
+                boolean overdue = now - firstPendingAt >= config.getMaxDelayMillis();
+                if (!pending.isEmpty() && (quiet || overdue)) {
+                    publish(pending.values());
+                    pending.clear();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException e) {
+            // 应用关闭
+        } catch (IOException e) {
+            logger.error("❌ 工作目录文件监听启动失败: {}", root, e);
+        } finally {
+            watching = false;
+            pendingChanges = false;
+            watchService = null;
+        }
+        logger.info("工作目录文件监听已停止: {}", root);
+    }
+
+    private void collect(WatchService service, WatchKey key, Map<Path, WorkspaceChangeEvent.Change> pending) {
+        Path directory = watchedDirectories.get(key);
+        for (WatchEvent<?> event : key.pollEvents()) {
+            eventsReceived.incrementAndGet();
+            if (directory == null) {
+                continue;
+            }
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                overflows.incrementAndGet();
+                merge(pending, directory, WorkspaceChangeEvent.Kind.OVERFLOW, true);
+                continue;
+            }
+
+            Path path = directory.resolve((Path) event.context());
+            String name = path.getFileName().toString();
+            if (isTemporaryFile(name)) {
+                continue;
+            }
+            if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE) {
+                if (Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+                    merge(pending, path, WorkspaceChangeEvent.Kind.CREATED, true);
+                    if (!DirectoryLister.isIgnoredDirectory(name)) {
+                        // 注册前目录中可能已经创建了文件，注册时一并作为新建上报
+                        registerTree(service, path, pending);
+                    }
+                } else {
+                    merge(pending, path, WorkspaceChangeEvent.Kind.CREATED, false);
+                }
+            } else if (event.kind() == StandardWatchEventKinds.ENTRY_MODIFY) {
+                // 目录的修改事件只表示其中有条目变化，条目本身会单独上报
+                if (!directoryPaths.contains(path)) {
+                    merge(pending, path, WorkspaceChangeEvent.Kind.MODIFIED, false);
+                }
+            } else if (event.kind() == StandardWatchEventKinds.ENTRY_DELETE) {
+                boolean wasDirectory = directoryPaths.remove(path);
+                if (wasDirectory) {
+                    directoryPaths.removeIf(watched -> watched.startsWith(path));
+                }
+                merge(pending, path, WorkspaceChangeEvent.Kind.DELETED, wasDirectory);
+            }
+        }
+        if (!key.reset()) {
+            // 目录已删除或不可访问；directoryPaths 保留到父目录的删除事件，用于判断被删除的是目录
+            watchedDirectories.remove(key);
+        }
+    }
+
+    /**
+     * 合并同一路径的多个事件：新建后修改仍为新建，新建后删除则抵消，删除后新建视为修改
+     */
+    private void merge(Map<Path, WorkspaceChangeEvent.Change> pending, Path path, WorkspaceChangeEvent.Kind kind,
+                       boolean directory) {
+        WorkspaceChangeEvent.Change overflow = pending.get(root);
+        if (overflow != null && overflow.kind() == WorkspaceChangeEvent.Kind.OVERFLOW) {
+            return;
+        }
+        if (pending.size() >= config.getMaxBatchSize()) {
+            // 变更过多时不再逐个记录，通知订阅方整体刷新
+            pending.clear();
+            pending.put(root, new WorkspaceChangeEvent.Change(root, WorkspaceChangeEvent.Kind.OVERFLOW, true));
+            return;
+        }
+
+        WorkspaceChangeEvent.Change previous = pending.get(path);
+        WorkspaceChangeEvent.Kind merged = kind;
+        if (previous != null) {
+            WorkspaceChangeEvent.Kind before = previous.kind();
+            if (before == WorkspaceChangeEvent.Kind.OVERFLOW) {
+                return;
+            }
+            if (before == WorkspaceChangeEvent.Kind.CREATED && kind == WorkspaceChangeEvent.Kind.MODIFIED) {
+                merged = WorkspaceChangeEvent.Kind.CREATED;
+            } else if (before == WorkspaceChangeEvent.Kind.CREATED && kind == WorkspaceChangeEvent.Kind.DELETED) {
+                pending.remove(path);
+                return;
+            } else if (before == WorkspaceChangeEvent.Kind.DELETED && kind == WorkspaceChangeEvent.Kind.CREATED) {
+                merged = WorkspaceChangeEvent.Kind.MODIFIED;
+            }
+        }
+        boolean isDirectory = directory || (previous != null && previous.directory());
+        pending.put(path, new WorkspaceChangeEvent.Change(path, merged, isDirectory));
+    }
+
+    private void publish(Iterable<WorkspaceChangeEvent.Change> pending) {
+        List<WorkspaceChangeEvent.Change> changes = new ArrayList<>();
+        for (WorkspaceChangeEvent.Change change : pending) {
+            if (isOwnToolWrite(change)) {
+                suppressedToolWrites.incrementAndGet();
+                continue;
+            }
+            changes.add(change);
+        }
+        if (changes.isEmpty()) {
+            return;
+        }
+        batchesPublished.incrementAndGet();
+        changesPublished.addAndGet(changes.size());
+        logger.debug("发布工作目录变更: {} 个路径", changes.size());
+        try {
+            eventPublisher.publishEvent(new WorkspaceChangeEvent(List.copyOf(changes),
+                    WorkspaceChangeEvent.Origin.FILESYSTEM));
+        } catch (RuntimeException e) {
+            // 订阅方的异常不能终止监听线程
+            logger.warn("处理工作目录变更事件失败: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 文件当前的修改时间与工具写入后记录的一致，说明是工具自己的写入，已经发布过
+     */
+    private boolean isOwnToolWrite(WorkspaceChangeEvent.Change change) {
+        if (change.directory() || change.kind() == WorkspaceChangeEvent.Kind.DELETED
+                || change.kind() == WorkspaceChangeEvent.Kind.OVERFLOW) {
+            return false;
+        }
+        Long written = recentToolWrites.get(change.path());
+        if (written == null) {
+            return false;
+        }
+        try {
+            if (Files.getLastModifiedTime(change.path()).toMillis() == written) {
+                recentToolWrites.remove(change.path(), written);
+                return true;
+            }
+        } catch (IOException e) {
+            // 文件已不存在，按外部修改处理
+        }
+        recentToolWrites.remove(change.path(), written);
+        return false;
+    }
+
+    /**
+     * 注册 start 及其下所有未被忽略的目录；pending 不为空时把遇到的目录和文件作为新建记录
+     */
+    private void registerTree(WatchService service, Path start, Map<Path, WorkspaceChangeEvent.Change> pending) {
+        try {
+            Files.walkFileTree(start, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                    if (!dir.equals(start) && DirectoryLister.isIgnoredDirectory(dir.getFileName().toString())) {
+                        return FileVisitResult.SKIP_SUBTREE;
+                    }
+                    if (pending != null && !dir.equals(start)) {
+                        merge(pending, dir, WorkspaceChangeEvent.Kind.CREATED, true);
+                    }
+                    try {
+                        WatchKey key = dir.register(service, StandardWatchEventKinds.ENTRY_CREATE,
+                                StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+                        watchedDirectories.put(key, dir);
+                        directoryPaths.add(dir);
+                    } catch (IOException e) {
+                        // 常见原因是超出系统的监听数量上限，该目录下的变更只能由工具写入事件覆盖
+                        registrationFailed = true;
+                        logger.warn("⚠️ 无法监听目录: {}, error={}", dir, e.getMessage());
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    if (pending != null && !isTemporaryFile(file.getFileName().toString())) {
+                        merge(pending, file, WorkspaceChangeEvent.Kind.CREATED, false);
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            logger.warn("⚠️ 注册目录监听失败: {}, error={}", start, e.getMessage());
+        }
+    }
+
+    /**
+     * AtomicFileWriter 的临时文件（.name.tmp-uuid），重命名为目标文件后由目标文件的事件体现
+     */
+    private static boolean isTemporaryFile(String name) {
+        return name.startsWith(".") && name.contains(".tmp-");
+    }
+}
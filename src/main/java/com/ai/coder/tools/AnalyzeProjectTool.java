@@ -7,6 +7,7 @@ import com.ai.coder.model.ProjectStructure;
 import com.ai.coder.model.ToolResult;
 import com.ai.coder.schema.JsonSchema;
 import com.ai.coder.service.ProjectContextAnalyzer;
+import com.ai.coder.service.WorkspacePathPolicy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.ai.tool.annotation.Tool;
@@ -31,9 +32,10 @@ public class AnalyzeProjectTool extends BaseTool<AnalyzeProjectParams> {
     private ProjectContextAnalyzer projectContextAnalyzer;
 
     private final String rootDirectory;
+    private final WorkspacePathPolicy workspacePathPolicy;
     private final AppProperties appProperties;
 
-    public AnalyzeProjectTool(AppProperties appProperties) {
+    public AnalyzeProjectTool(AppProperties appProperties, WorkspacePathPolicy workspacePathPolicy) {
         super(
                 "analyze_project",
                 "AnalyzeProject",
@@ -43,6 +45,7 @@ public class AnalyzeProjectTool extends BaseTool<AnalyzeProjectParams> {
         );
         this.appProperties = appProperties;
         this.rootDirectory = appProperties.getWorkspace().getRootDirectory();
+        this.workspacePathPolicy = workspacePathPolicy;
     }
 
     private static JsonSchema createSchema() {
@@ -154,7 +157,7 @@ public class AnalyzeProjectTool extends BaseTool<AnalyzeProjectParams> {
             return "Project path must be a directory: " + params.getProjectPath();
         }
 
-        if (!isWithinWorkspace(projectPath)) {
+        if (!workspacePathPolicy.isWithinWorkspace(projectPath)) {
             return "Project path must be within the workspace directory: " + params.getProjectPath();
         }
 
@@ -200,7 +203,10 @@ public class AnalyzeProjectTool extends BaseTool<AnalyzeProjectParams> {
             try {
                 logger.info("Starting project analysis for: {}", params.getProjectPath());
 
-                Path projectPath = Paths.get(params.getProjectPath());
+                Path projectPath = workspacePathPolicy.resolve(Paths.get(params.getProjectPath()));
+                if (projectPath == null) {
+                    return ToolResult.error("Project path must be within the workspace directory: " + params.getProjectPath());
+                }
                 AnalysisDepth depth = AnalysisDepth.fromString(params.getAnalysisDepth());
                 OutputFormat format = OutputFormat.fromString(params.getOutputFormat());
 
@@ -218,7 +224,7 @@ public class AnalyzeProjectTool extends BaseTool<AnalyzeProjectParams> {
                 logger.error("Error during project analysis", e);
                 return ToolResult.error("Project analysis failed: " + e.getMessage());
             }
-        });
+        }, executor);
     }
 
     /**
@@ -454,19 +460,5 @@ public class AnalyzeProjectTool extends BaseTool<AnalyzeProjectParams> {
         return String.format("%.1f GB", bytes / (1024.0 * 1024 * 1024));
     }
 
-    /**
-     * 检查路径是否在工作空间内
-     */
-    private boolean isWithinWorkspace(Path filePath) {
-        try {
-            Path workspaceRoot = Paths.get(rootDirectory).toRealPath();
-            Path normalizedPath = filePath.toRealPath();
-            return normalizedPath.startsWith(workspaceRoot);
-        } catch (Exception e) {
-            logger.warn("Could not resolve workspace path", e);
-            return false;
-        }
-    }
-
 
 }
@@ -9,6 +9,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * 基础工具类，定义了工具的基本属性和方法。
@@ -30,6 +32,9 @@ public abstract class BaseTool<P> {
 
     protected SchemaValidator schemaValidator;
 
+    // 工具异步执行使用的线程池，由配置注入专用工具线程池
+    protected Executor executor = ForkJoinPool.commonPool();
+
     public BaseTool(String name, String displayName, String description, JsonSchema parameterSchema) {
         this(name, displayName, description, parameterSchema, true, false);
     }
@@ -6,10 +6,13 @@ import com.ai.coder.model.FileDiff;
 import com.ai.coder.model.ToolConfirmationDetails;
 import com.ai.coder.model.ToolResult;
 import com.ai.coder.schema.JsonSchema;
+import com.ai.coder.service.AtomicFileWriter;
+import com.ai.coder.service.BackupStore;
+import com.ai.coder.service.DiffService;
+import com.ai.coder.service.FileContentCache;
+import com.ai.coder.service.StreamingFileEditor;
 import com.ai.coder.service.ToolExecutionLogger;
-import com.github.difflib.DiffUtils;
-import com.github.difflib.UnifiedDiffUtils;
-import com.github.difflib.patch.Patch;
+import com.ai.coder.service.WorkspacePathPolicy;
 import org.springframework.ai.tool.annotation.Tool;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
@@ -19,9 +22,6 @@ import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
-import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
 
@@ -32,12 +32,20 @@ import java.util.concurrent.CompletableFuture;
 public class EditFileTool extends BaseTool<EditFileParams> {
 
     private final String rootDirectory;
+    private final WorkspacePathPolicy workspacePathPolicy;
     private final AppProperties appProperties;
+    private final FileContentCache fileContentCache;
+    private final StreamingFileEditor streamingFileEditor;
+    private final AtomicFileWriter atomicFileWriter;
+    private final BackupStore backupStore;
+    private final DiffService diffService;
 
     @Autowired
     private ToolExecutionLogger executionLogger;
 
-    public EditFileTool(AppProperties appProperties) {
+    public EditFileTool(AppProperties appProperties, FileContentCache fileContentCache,
+                        StreamingFileEditor streamingFileEditor, AtomicFileWriter atomicFileWriter,
+                        BackupStore backupStore, DiffService diffService, WorkspacePathPolicy workspacePathPolicy) {
         super(
                 "edit_file",
                 "EditFile",
@@ -48,7 +56,13 @@ public class EditFileTool extends BaseTool<EditFileParams> {
                 createSchema()
         );
         this.appProperties = appProperties;
+        this.fileContentCache = fileContentCache;
+        this.streamingFileEditor = streamingFileEditor;
+        this.atomicFileWriter = atomicFileWriter;
+        this.backupStore = backupStore;
+        this.diffService = diffService;
         this.rootDirectory = appProperties.getWorkspace().getRootDirectory();
+        this.workspacePathPolicy = workspacePathPolicy;
     }
 
     private static String getWorkspaceBasePath() {
@@ -110,7 +124,7 @@ public class EditFileTool extends BaseTool<EditFileParams> {
         }
 
         // 验证是否在工作目录内
-        if (!isWithinWorkspace(filePath)) {
+        if (!workspacePathPolicy.isWithinWorkspace(filePath)) {
             return "File path must be within the workspace directory (" + rootDirectory + "): " + params.getFilePath();
         }
 
@@ -138,13 +152,24 @@ public class EditFileTool extends BaseTool<EditFileParams> {
 
         return CompletableFuture.supplyAsync(() -> {
             try {
-                Path filePath = Paths.get(params.getFilePath());
+                Path filePath = workspacePathPolicy.resolve(Paths.get(params.getFilePath()));
 
-                if (!Files.exists(filePath)) {
-                    return null; // 文件不存在，无法预览差异
+                if (filePath == null || !Files.exists(filePath)) {
+                    return null; // 文件不存在或不在工作目录内，无法预览差异
+                }
+
+                // 大文件只预览被替换的片段
+                if (isLargeFile(filePath)) {
+                    StreamingFileEditor.Region region = locateEditRegion(filePath, params);
+                    if (region == null) {
+                        return null;
+                    }
+                    String diff = regionDiff(filePath, region, params);
+                    return ToolConfirmationDetails.edit("Confirm Edit: " + getRelativePath(filePath),
+                            filePath.getFileName().toString(), diff);
                 }
 
-                String currentContent = Files.readString(filePath, StandardCharsets.UTF_8);
+                String currentContent = fileContentCache.read(filePath);
                 String newContent = performEdit(currentContent, params);
 
                 if (newContent == null) {
@@ -152,7 +177,7 @@ public class EditFileTool extends BaseTool<EditFileParams> {
                 }
 
                 // 生成差异显示
-                String diff = generateDiff(filePath.getFileName().toString(), currentContent, newContent);
+                String diff = diffService.unifiedDiff(filePath.getFileName().toString(), currentContent, newContent);
                 String title = "Confirm Edit: " + getRelativePath(filePath);
 
                 return ToolConfirmationDetails.edit(title, filePath.getFileName().toString(), diff);
@@ -161,7 +186,7 @@ public class EditFileTool extends BaseTool<EditFileParams> {
                 logger.warn("错误编辑文件 {},{}", params.getFilePath(), e.getMessage());
                 return null;
             }
-        });
+        }, executor);
     }
 
     /**
@@ -229,7 +254,12 @@ public class EditFileTool extends BaseTool<EditFileParams> {
         return CompletableFuture.supplyAsync(() -> {
             try {
                 logger.info("开始编辑文件.............");
-                Path filePath = Paths.get(params.getFilePath());
+                // 只读写策略解析后的真实位置，原始路径中的符号链接加 .. 可能指向工作目录之外
+                Path filePath = workspacePathPolicy.resolve(Paths.get(params.getFilePath()));
+                if (filePath == null) {
+                    return ToolResult.error("File path must be within the workspace directory (" + rootDirectory + "): " +
+                            params.getFilePath());
+                }
 
                 // Check if file exists
                 if (!Files.exists(filePath)) {
@@ -241,8 +271,13 @@ public class EditFileTool extends BaseTool<EditFileParams> {
                     return ToolResult.error("Path is not a regular file: " + params.getFilePath());
                 }
 
+                // 大文件流式编辑，不整体读入内存
+                if (isLargeFile(filePath)) {
+                    return executeStreamingEdit(filePath, params);
+                }
+
                 // 读取原始内容
-                String originalContent = Files.readString(filePath, StandardCharsets.UTF_8);
+                String originalContent = fileContentCache.read(filePath);
 
                 // 执行编辑
                 String newContent = performEdit(originalContent, params);
@@ -252,14 +287,15 @@ public class EditFileTool extends BaseTool<EditFileParams> {
 
                 // 创建备份
                 if (shouldCreateBackup()) {
-                    createBackup(filePath, originalContent);
+                    backupStore.backup(filePath, getName());
                 }
 
                 // Write new content
-                Files.writeString(filePath, newContent, StandardCharsets.UTF_8);
+                atomicFileWriter.write(filePath, newContent);
+                fileContentCache.put(filePath, newContent);
 
                 // Generate differences and results
-                String diff = generateDiff(filePath.getFileName().toString(), originalContent, newContent);
+                String diff = diffService.unifiedDiff(filePath.getFileName().toString(), originalContent, newContent);
                 String relativePath = getRelativePath(filePath);
                 String successMessage = String.format("Successfully edited file: %s", params.getFilePath());
 
@@ -272,7 +308,68 @@ public class EditFileTool extends BaseTool<EditFileParams> {
                 logger.error("Unexpected error editing file: " + params.getFilePath(), e);
                 return ToolResult.error("Unexpected error: " + e.getMessage());
             }
-        });
+        }, executor);
+    }
+
+    /**
+     * 流式编辑大文件：定位替换区域，备份后写入临时文件并原子替换
+     */
+    private ToolResult executeStreamingEdit(Path filePath, EditFileParams params) throws IOException {
+        logger.info("开始流式编辑大文件: {}", filePath);
+        StreamingFileEditor.Region region = locateEditRegion(filePath, params);
+        if (region == null) {
+            return ToolResult.error("Could not find the specified text to replace in file: " + params.getFilePath());
+        }
+
+        // 差异只包含被替换的片段，行号在替换前按片段起点计算
+        String diff = regionDiff(filePath, region, params);
+
+        if (shouldCreateBackup()) {
+            backupStore.backup(filePath, getName());
+        }
+
+        streamingFileEditor.rewrite(filePath, List.of(region));
+        fileContentCache.invalidate(filePath);
+
+        String successMessage = String.format("Successfully edited file: %s", params.getFilePath());
+        return ToolResult.success(successMessage, new FileDiff(diff, filePath.getFileName().toString()));
+    }
+
+    /**
+     * 在文件中定位要替换的区域：指定行号时校验该行范围的内容，否则查找第一个匹配
+     *
+     * @return 替换区域；找不到时返回 null
+     */
+    private StreamingFileEditor.Region locateEditRegion(Path filePath, EditFileParams params) throws IOException {
+        byte[] replacement = params.getNewStr().getBytes(StandardCharsets.UTF_8);
+        if (params.getStartLine() != null && params.getEndLine() != null) {
+            StreamingFileEditor.LineRange range = streamingFileEditor.findLineRange(
+                    filePath, params.getStartLine(), params.getEndLine());
+            if (range == null || !range.content().equals(params.getOldStr())) {
+                return null;
+            }
+            return new StreamingFileEditor.Region(range.start(), range.end(), replacement);
+        }
+
+        List<Long> matches = streamingFileEditor.findMatches(filePath, params.getOldStr(), 1);
+        if (matches.isEmpty()) {
+            return null;
+        }
+        long start = matches.get(0);
+        return new StreamingFileEditor.Region(start,
+                start + params.getOldStr().getBytes(StandardCharsets.UTF_8).length, replacement);
+    }
+
+    /**
+     * 生成被替换片段的差异，差异块行号为片段在文件中的实际行号
+     */
+    private String regionDiff(Path filePath, StreamingFileEditor.Region region, EditFileParams params) throws IOException {
+        int lineOffset = streamingFileEditor.countLines(filePath, region.start());
+        return diffService.unifiedDiff(filePath.getFileName().toString(), params.getOldStr(), params.getNewStr(), lineOffset);
+    }
+
+    private boolean isLargeFile(Path filePath) throws IOException {
+        return Files.size(filePath) >= appProperties.getWorkspace().getStreamingEditThresholdBytes();
     }
 
     private String performEdit(String content, EditFileParams params) {
@@ -343,71 +440,10 @@ public class EditFileTool extends BaseTool<EditFileParams> {
         return result.toString();
     }
 
-    /**
-     * 生成差异
-     * @param fileName
-     * @param oldContent
-     * @param newContent
-     * @return
-     */
-    public String generateDiff(String fileName, String oldContent, String newContent) {
-        logger.info("开始生成差异信息.............");
-        // 空值检查
-        if (fileName == null || oldContent == null || newContent == null) {
-            logger.warn("Input parameters cannot be null");
-            return "Diff generation failed: Input parameters cannot be null";
-        }
-        try {
-            // 使用 \\R 匹配所有类型的换行符
-            List<String> oldLines = Arrays.asList(oldContent.split("\\R"));
-            List<String> newLines = Arrays.asList(newContent.split("\\R"));
-
-            Patch<String> patch = DiffUtils.diff(oldLines, newLines);
-            List<String> unifiedDiff = UnifiedDiffUtils.generateUnifiedDiff(
-                    fileName + " (Original)",
-                    fileName + " (Edited)",
-                    oldLines,
-                    patch,
-                    3
-            );
-
-            return String.join("\n", unifiedDiff);
-        } catch (Exception e) {
-            logger.warn("Could not generate diff", e);
-            return "Diff generation failed: " + e.getMessage();
-        }
-    }
-
-    /**
-     * 创建备份文件
-     * @param filePath
-     * @param content
-     * @throws IOException
-     */
-    private void createBackup(Path filePath, String content) throws IOException {
-        String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss"));
-        String backupFileName = filePath.getFileName().toString() + ".backup." + timestamp;
-        Path backupPath = filePath.getParent().resolve(backupFileName);
-
-        Files.writeString(backupPath, content, StandardCharsets.UTF_8);
-        logger.info("创建备份文件: {}", backupPath);
-    }
-
     private boolean shouldCreateBackup() {
         return true; // 总是创建备份
     }
 
-    private boolean isWithinWorkspace(Path filePath) {
-        try {
-            Path workspaceRoot = Paths.get(rootDirectory).toRealPath();
-            Path normalizedPath = filePath.normalize();
-            return normalizedPath.startsWith(workspaceRoot.normalize());
-        } catch (IOException e) {
-            logger.warn("Could not resolve workspace path", e);
-            return false;
-        }
-    }
-
     private String getRelativePath(Path filePath) {
         try {
             Path workspaceRoot = Paths.get(rootDirectory);
@@ -1,7 +1,17 @@
 package com.ai.coder.tools;
 
 import com.ai.coder.config.AppProperties;
+import com.ai.coder.model.OutputFormat;
+import com.ai.coder.service.AtomicFileWriter;
+import com.ai.coder.service.ConversationScheduler;
+import com.ai.coder.service.DirectoryLister;
+import com.ai.coder.service.FileContentCache;
+import com.ai.coder.service.PagedFileReader;
+import com.ai.coder.service.StreamingFileEditor;
+import com.ai.coder.service.WorkspacePathPolicy;
 import com.ai.coder.util.PathUtil;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.ai.tool.annotation.Tool;
@@ -13,10 +23,14 @@ import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
 
 /**
  * 文件操作工具类 - 使用Spring AI 1.0.0 @Tool注解
@@ -26,14 +40,55 @@ public class FileOperationTools {
 
     private static final Logger logger = LoggerFactory.getLogger(FileOperationTools.class);
 
+    private static final ObjectMapper JSON = new ObjectMapper();
+
     private final String rootDirectory;
+    private final WorkspacePathPolicy workspacePathPolicy;
     private final AppProperties appProperties;
+    private final PagedFileReader pagedFileReader;
+    private final FileContentCache fileContentCache;
+    private final StreamingFileEditor streamingFileEditor;
+    private final AtomicFileWriter atomicFileWriter;
+    private final ConversationScheduler conversationScheduler;
+    private final DirectoryLister directoryLister;
 
     // 在构造函数中
-    public FileOperationTools(AppProperties appProperties) {
+    public FileOperationTools(AppProperties appProperties, PagedFileReader pagedFileReader,
+                              FileContentCache fileContentCache, StreamingFileEditor streamingFileEditor,
+                              AtomicFileWriter atomicFileWriter, ConversationScheduler conversationScheduler,
+                              WorkspacePathPolicy workspacePathPolicy, DirectoryLister directoryLister) {
         this.appProperties = appProperties;
+        this.pagedFileReader = pagedFileReader;
+        this.fileContentCache = fileContentCache;
+        this.streamingFileEditor = streamingFileEditor;
+        this.atomicFileWriter = atomicFileWriter;
+        this.conversationScheduler = conversationScheduler;
+        this.directoryLister = directoryLister;
         // 使用规范化的路径
         this.rootDirectory = PathUtil.normalizePath(appProperties.getWorkspace().getRootDirectory());
+        this.workspacePathPolicy = workspacePathPolicy;
+    }
+
+    /**
+     * 批量读取中的单个文件
+     */
+    public record FileReadRequest(
+            @ToolParam(description = "The absolute path to the file to read. Must be within the workspace directory.")
+            String absolutePath,
+            @ToolParam(description = "Optional: For text files, the 0-based line number to start reading from.", required = false)
+            Integer offset,
+            @ToolParam(description = "Optional: For text files, the number of lines to read from the offset.", required = false)
+            Integer limit) {
+    }
+
+    /**
+     * 批量写入中的单个文件
+     */
+    public record FileWriteRequest(
+            @ToolParam(description = "The absolute path to the file to write. Must be within the workspace directory.")
+            String filePath,
+            @ToolParam(description = "The content to write to the file")
+            String content) {
     }
 
     @Tool(description = "Read the content of a file from the local filesystem. Supports pagination for large files.")
@@ -43,49 +98,21 @@ public class FileOperationTools {
             @ToolParam(description = "Optional: For text files, the 0-based line number to start reading from.", required = false)
             Integer offset,
             @ToolParam(description = "Optional: For text files, the number of lines to read from the offset.", required = false)
-            Integer limit) {
+            Integer limit,
+            @ToolParam(description = "Optional: Maximum bytes of content to return. Longer content is cut at a line boundary " +
+                    "and the result says which offset to continue from.", required = false)
+            Integer maxOutputBytes) {
 
         long startTime = System.currentTimeMillis();
         try {
             logger.info("开始读取文件: {}", absolutePath);
             // 验证路径
-            String validationError = validatePath(absolutePath);
-            if (validationError != null) {
-                return "Error: " + validationError;
+            CheckedPath checked = checkPath(absolutePath);
+            if (checked.error() != null) {
+                return "Error: " + checked.error();
             }
 
-            Path filePath = Paths.get(absolutePath);
-
-            // 检查文件是否存在
-            if (!Files.exists(filePath)) {
-                return "Error: File not found: " + absolutePath;
-            }
-
-            // 检查是否为文件
-            if (!Files.isRegularFile(filePath)) {
-                return "Error: Path is not a regular file: " + absolutePath;
-            }
-
-            // 检查文件大小
-            long fileSize = Files.size(filePath);
-            if (fileSize > appProperties.getWorkspace().getMaxFileSize()) {
-                return "Error: File too large: " + fileSize + " bytes. Maximum allowed: " +
-                        appProperties.getWorkspace().getMaxFileSize() + " bytes";
-            }
-
-            // 检查文件扩展名
-            String fileName = filePath.getFileName().toString();
-            if (!isAllowedFileType(fileName)) {
-                return "Error: File type not allowed: " + fileName +
-                        ". Allowed extensions: " + appProperties.getWorkspace().getAllowedExtensions();
-            }
-
-            // 读取文件
-            if (offset != null && limit != null) {
-                return readFileWithPagination(filePath, offset, limit);
-            } else {
-                return readFullFile(filePath);
-            }
+            return readValidatedFile(checked.path(), absolutePath, offset, limit, outputBudget(maxOutputBytes));
 
         } catch (IOException e) {
             long duration = System.currentTimeMillis() - startTime;
@@ -103,6 +130,102 @@ public class FileOperationTools {
         }
     }
 
+    @Tool(description = "Read several files in one call. Prefer this over repeated readFile calls when you need more than one file. " +
+            "Each entry supports the same optional pagination as readFile.")
+    public String readFiles(
+            @ToolParam(description = "The files to read, each with an absolute path and optional offset/limit")
+            List<FileReadRequest> files,
+            @ToolParam(description = "Optional: Maximum bytes of content to return for the whole call, shared evenly " +
+                    "between the files.", required = false)
+            Integer maxOutputBytes) {
+
+        long startTime = System.currentTimeMillis();
+        List<CheckedPath> paths = checkBatch(files == null ? null : files.stream().map(FileReadRequest::absolutePath).toList());
+        String error = batchError(files, paths);
+        if (error != null) {
+            return "Error: " + error;
+        }
+        logger.info("开始批量读取文件: {} 个", files.size());
+
+        // 输出预算在文件间平均分配，各文件并行读取，单个文件失败只影响该文件的结果
+        long budgetPerFile = Math.max(1, outputBudget(maxOutputBytes) / files.size());
+        List<CompletableFuture<String>> results = new ArrayList<>(files.size());
+        for (int i = 0; i < files.size(); i++) {
+            FileReadRequest file = files.get(i);
+            Path path = paths.get(i).path();
+            results.add(CompletableFuture.supplyAsync(() -> {
+                try {
+                    return readValidatedFile(path, file.absolutePath(), file.offset(), file.limit(), budgetPerFile);
+                } catch (Exception e) {
+                    logger.error("Error reading file: {}", file.absolutePath(), e);
+                    return "❌ Error reading file: " + e.getMessage();
+                }
+            }, conversationScheduler.getToolExecutor()));
+        }
+
+        StringBuilder contents = new StringBuilder();
+        for (int i = 0; i < files.size(); i++) {
+            contents.append("\n===== ").append(files.get(i).absolutePath()).append(" =====\n");
+            contents.append(results.get(i).join()).append("\n");
+        }
+        return String.format("📚 Read %d file(s) in %dms\n", files.size(), System.currentTimeMillis() - startTime)
+                + contents;
+    }
+
+    @Tool(description = "Write several files in one call. Creates new files or overwrites existing ones. " +
+            "Prefer this over repeated writeFile calls when creating or updating multiple files.")
+    public String writeFiles(
+            @ToolParam(description = "The files to write, each with an absolute path and the full content")
+            List<FileWriteRequest> files) {
+
+        long startTime = System.currentTimeMillis();
+        List<CheckedPath> paths = checkBatch(files == null ? null : files.stream().map(FileWriteRequest::filePath).toList());
+        String error = batchError(files, paths);
+        if (error != null) {
+            return "Error: " + error;
+        }
+        logger.info("开始批量写入文件: {} 个", files.size());
+
+        // 写入前检查全部内容，任一文件不合法时不写入任何文件
+        Map<Path, String> contents = new LinkedHashMap<>();
+        List<Boolean> created = new ArrayList<>(files.size());
+        for (int i = 0; i < files.size(); i++) {
+            FileWriteRequest file = files.get(i);
+            if (file.content() == null) {
+                return "Error: Content cannot be null: " + file.filePath();
+            }
+            long size = file.content().getBytes(StandardCharsets.UTF_8).length;
+            if (size > appProperties.getWorkspace().getMaxFileSize()) {
+                return "Error: Content too large: " + file.filePath() + " (" + size + " bytes). Maximum allowed: " +
+                        appProperties.getWorkspace().getMaxFileSize() + " bytes";
+            }
+            Path path = paths.get(i).path();
+            created.add(!Files.exists(path));
+            contents.put(path, file.content());
+        }
+
+        try {
+            // 批量原子写入，所有文件集中落盘
+            atomicFileWriter.writeAll(contents);
+            contents.forEach(fileContentCache::put);
+        } catch (IOException e) {
+            long duration = System.currentTimeMillis() - startTime;
+            logger.error("Error writing files (duration: {}ms)", duration, e);
+            return String.format("❌ Error writing files\n⏱️ Duration: %dms\n🔍 Details: %s", duration, e.getMessage());
+        }
+
+        StringBuilder result = new StringBuilder();
+        result.append(String.format("Successfully wrote %d file(s) in %dms:\n",
+                files.size(), System.currentTimeMillis() - startTime));
+        for (int i = 0; i < files.size(); i++) {
+            FileWriteRequest file = files.get(i);
+            result.append(String.format("%s %s (%d lines, %d bytes)\n",
+                    created.get(i) ? "🆕" : "✏️", getRelativePath(paths.get(i).path()),
+                    file.content().lines().count(), file.content().getBytes(StandardCharsets.UTF_8).length));
+        }
+        return result.toString();
+    }
+
     @Tool(description = "Write content to a file. Creates new file or overwrites existing file.")
     public String writeFile(
             @ToolParam(description = "The absolute path to the file to write. Must be within the workspace directory.")
@@ -114,9 +237,9 @@ public class FileOperationTools {
         try {
             logger.info("开始写入文件: {}", filePath);
             // 验证路径
-            String validationError = validatePath(filePath);
-            if (validationError != null) {
-                return "Error: " + validationError;
+            CheckedPath checked = checkPath(filePath);
+            if (checked.error() != null) {
+                return "Error: " + checked.error();
             }
 
             // 验证内容大小
@@ -126,15 +249,12 @@ public class FileOperationTools {
                         appProperties.getWorkspace().getMaxFileSize() + " bytes";
             }
 
-            Path path = Paths.get(filePath);
+            Path path = checked.path();
             boolean isNewFile = !Files.exists(path);
 
-            // 确保父目录存在
-            Files.createDirectories(path.getParent());
-
-            // 写入文件
-            Files.writeString(path, content, StandardCharsets.UTF_8,
-                    StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+            // 原子写入文件（自动创建父目录）
+            atomicFileWriter.write(path, content);
+            fileContentCache.put(path, content);
 
             long lineCount = content.lines().count();
             String absolutePath = path.toAbsolutePath().toString();
@@ -176,12 +296,12 @@ public class FileOperationTools {
         try {
             logger.info("开始编辑文件: {}", filePath);
             // 验证路径
-            String validationError = validatePath(filePath);
-            if (validationError != null) {
-                return "Error: " + validationError;
+            CheckedPath checked = checkPath(filePath);
+            if (checked.error() != null) {
+                return "Error: " + checked.error();
             }
 
-            Path path = Paths.get(filePath);
+            Path path = checked.path();
 
             // 检查文件是否存在
             if (!Files.exists(path)) {
@@ -193,8 +313,13 @@ public class FileOperationTools {
                 return "Error: Path is not a regular file: " + filePath;
             }
 
+            // 大文件流式替换，不整体读入内存
+            if (Files.size(path) >= appProperties.getWorkspace().getStreamingEditThresholdBytes()) {
+                return editLargeFile(path, oldText, newText);
+            }
+
             // 读取原始内容
-            String originalContent = Files.readString(path, StandardCharsets.UTF_8);
+            String originalContent = fileContentCache.read(path);
 
             // 执行替换
             if (!originalContent.contains(oldText)) {
@@ -204,7 +329,8 @@ public class FileOperationTools {
             String newContent = originalContent.replace(oldText, newText);
 
             // 写入新内容
-            Files.writeString(path, newContent, StandardCharsets.UTF_8);
+            atomicFileWriter.write(path, newContent);
+            fileContentCache.put(path, newContent);
 
             String absolutePath = path.toAbsolutePath().toString();
             String relativePath = getRelativePath(path);
@@ -225,17 +351,24 @@ public class FileOperationTools {
             @ToolParam(description = "The absolute path to the directory to list. Must be within the workspace directory.")
             String directoryPath,
             @ToolParam(description = "Whether to list contents recursively", required = false)
-            Boolean recursive) {
+            Boolean recursive,
+            @ToolParam(description = "Optional: Output format. 'tree' (default) prints an indented tree of names, " +
+                    "'paths' prints one workspace-relative path per line, 'jsonl' prints one JSON object per line " +
+                    "with path, type, size and depth.", required = false)
+            String format,
+            @ToolParam(description = "Optional: Maximum bytes of output to return. The listing stops early and " +
+                    "says so when the budget is reached.", required = false)
+            Integer maxOutputBytes) {
 
         try {
             logger.info("开始列出文件目录: {}", directoryPath);
             // 验证路径
-            String validationError = validatePath(directoryPath);
-            if (validationError != null) {
-                return "Error: " + validationError;
+            CheckedPath checked = checkPath(directoryPath);
+            if (checked.error() != null) {
+                return "Error: " + checked.error();
             }
 
-            Path path = Paths.get(directoryPath);
+            Path path = checked.path();
 
             // 检查目录是否存在
             if (!Files.exists(path)) {
@@ -248,13 +381,14 @@ public class FileOperationTools {
             }
 
             boolean isRecursive = recursive != null && recursive;
-            String absolutePath = path.toAbsolutePath().toString();
-            String relativePath = getRelativePath(path);
+            OutputFormat outputFormat = OutputFormat.fromValue(format,
+                    OutputFormat.fromValue(appProperties.getTools().getOutputFormat(), OutputFormat.TREE));
+            Long budget = maxOutputBytes != null ? maxOutputBytes.longValue() : null;
 
             if (isRecursive) {
-                return listDirectoryRecursive(path, absolutePath, relativePath);
+                return listDirectoryRecursive(path, outputFormat, budget);
             } else {
-                return listDirectorySimple(path, absolutePath, relativePath);
+                return listDirectorySimple(path, outputFormat, budget);
             }
 
         } catch (IOException e) {
@@ -267,50 +401,141 @@ public class FileOperationTools {
     }
 
     /**
-     * 验证路径是否有效
+     * 流式替换大文件中所有匹配的文本
      * @param path
+     * @param oldText
+     * @param newText
      * @return
+     * @throws IOException
      */
-    private String validatePath(String path) {
-        if (path == null || path.trim().isEmpty()) {
-            return "Path cannot be empty";
+    private String editLargeFile(Path path, String oldText, String newText) throws IOException {
+        logger.info("开始流式编辑大文件: {}", path);
+        List<Long> matches = streamingFileEditor.findMatches(path, oldText, Integer.MAX_VALUE);
+        if (matches.isEmpty()) {
+            return "Error: Could not find the specified text to replace in file: " + path;
         }
 
-        Path filePath = Paths.get(path);
+        int oldLength = oldText.getBytes(StandardCharsets.UTF_8).length;
+        byte[] replacement = newText.getBytes(StandardCharsets.UTF_8);
+        List<StreamingFileEditor.Region> regions = new ArrayList<>(matches.size());
+        for (long start : matches) {
+            regions.add(new StreamingFileEditor.Region(start, start + oldLength, replacement));
+        }
+        streamingFileEditor.rewrite(path, regions);
+        fileContentCache.invalidate(path);
 
-        // 验证是否为绝对路径
-        if (!filePath.isAbsolute()) {
-            return "Path must be absolute: " + path;
+        String absolutePath = path.toAbsolutePath().toString();
+        String relativePath = getRelativePath(path);
+        return String.format("Successfully edited file:\n📁 Full path: %s\n📂 Relative path: %s\n✏️ Replaced %d occurrence(s)",
+                absolutePath, relativePath, matches.size());
+    }
+
+    /**
+     * 读取已通过路径校验的文件：检查存在性、大小和扩展名后读取全部或分页内容
+     * @param filePath 路径校验返回的路径
+     * @param absolutePath 调用方传入的路径，用于提示信息
+     * @param offset
+     * @param limit
+     * @param maxOutputBytes
+     * @return
+     * @throws IOException
+     */
+    private String readValidatedFile(Path filePath, String absolutePath, Integer offset, Integer limit,
+                                     long maxOutputBytes) throws IOException {
+
+        // 检查文件是否存在
+        if (!Files.exists(filePath)) {
+            return "Error: File not found: " + absolutePath;
         }
 
-        // 验证是否在工作目录内
-        if (!isWithinWorkspace(filePath)) {
-            return "Path must be within the workspace directory (" + rootDirectory + "): " + path;
+        // 检查是否为文件
+        if (!Files.isRegularFile(filePath)) {
+            return "Error: Path is not a regular file: " + absolutePath;
         }
 
-        return null;
+        // 检查文件大小
+        long fileSize = Files.size(filePath);
+        if (fileSize > appProperties.getWorkspace().getMaxFileSize()) {
+            return "Error: File too large: " + fileSize + " bytes. Maximum allowed: " +
+                    appProperties.getWorkspace().getMaxFileSize() + " bytes";
+        }
+
+        // 检查文件扩展名
+        String fileName = filePath.getFileName().toString();
+        if (!isAllowedFileType(fileName)) {
+            return "Error: File type not allowed: " + fileName +
+                    ". Allowed extensions: " + appProperties.getWorkspace().getAllowedExtensions();
+        }
+
+        // 读取文件
+        if (offset != null && limit != null) {
+            return readFileWithPagination(filePath, offset, limit, maxOutputBytes);
+        } else {
+            return readFullFile(filePath, maxOutputBytes);
+        }
+    }
+
+    /**
+     * 批量操作前校验全部路径，数量不合法时返回 null
+     * @param paths
+     * @return
+     */
+    private List<CheckedPath> checkBatch(List<String> paths) {
+        if (paths == null || paths.isEmpty() || paths.size() > appProperties.getTools().getBatchMaxFiles()) {
+            return null;
+        }
+        return paths.stream().map(this::checkPath).toList();
     }
 
     /**
-     * 验证路径是否在工作目录内
+     * 汇总批量校验的错误信息：文件数量不合法或所有不合法路径
+     */
+    private String batchError(List<?> files, List<CheckedPath> paths) {
+        if (files == null || files.isEmpty()) {
+            return "No files specified";
+        }
+        int maxFiles = appProperties.getTools().getBatchMaxFiles();
+        if (files.size() > maxFiles) {
+            return "Too many files: " + files.size() + ". Maximum per call: " + maxFiles;
+        }
+        List<String> errors = paths.stream()
+                .map(CheckedPath::error)
+                .filter(Objects::nonNull)
+                .toList();
+        return errors.isEmpty() ? null : String.join("\n", errors);
+    }
+
+    /**
+     * 路径校验结果：通过时 path 为工作目录策略解析后的真实位置，之后只对它做读写；不通过时 error 为原因
+     */
+    private record CheckedPath(Path path, String error) {
+    }
+
+    /**
+     * 验证路径是否有效，返回用于读写的路径
+     * 原始路径中 .. 前面的符号链接可能指向工作目录之外，不能直接用原始路径读写
      * @param path
      * @return
      */
-    private boolean isWithinWorkspace(Path path) {
-        try {
-            Path workspacePath = Paths.get(rootDirectory).toRealPath();
-            Path targetPath = path.toRealPath();
-            return targetPath.startsWith(workspacePath);
-        } catch (IOException e) {
-            // 如果路径不存在，检查其父目录
-            try {
-                Path workspacePath = Paths.get(rootDirectory).toRealPath();
-                Path normalizedPath = path.normalize();
-                return normalizedPath.startsWith(workspacePath.normalize());
-            } catch (IOException ex) {
-                return false;
-            }
+    private CheckedPath checkPath(String path) {
+        if (path == null || path.trim().isEmpty()) {
+            return new CheckedPath(null, "Path cannot be empty");
+        }
+
+        Path filePath = Paths.get(path);
+
+        // 验证是否为绝对路径
+        if (!filePath.isAbsolute()) {
+            return new CheckedPath(null, "Path must be absolute: " + path);
+        }
+
+        // 验证是否在工作目录内
+        Path resolved = workspacePathPolicy.resolve(filePath);
+        if (resolved == null) {
+            return new CheckedPath(null, "Path must be within the workspace directory (" + rootDirectory + "): " + path);
         }
+
+        return new CheckedPath(resolved, null);
     }
 
     private boolean isAllowedFileType(String fileName) {
@@ -331,18 +556,24 @@ public class FileOperationTools {
     /**
      * 读取全部文件内容
      * @param filePath
+     * @param maxOutputBytes
      * @return
      * @throws IOException
      */
-    private String readFullFile(Path filePath) throws IOException {
+    private String readFullFile(Path filePath, long maxOutputBytes) throws IOException {
         logger.info("开始读取完整文件内容..........");
-        String content = Files.readString(filePath, StandardCharsets.UTF_8);
-        String absolutePath = filePath.toAbsolutePath().toString();
+        String content = fileContentCache.read(filePath);
         String relativePath = getRelativePath(filePath);
 
         long lineCount = content.lines().count();
-        return String.format("📁 Full path: %s\n📂 Relative path: %s\n📊 Stats: %d lines, %d bytes\n\n📄 Content:\n%s",
-                absolutePath, relativePath, lineCount, content.getBytes(StandardCharsets.UTF_8).length, content);
+        Clip clip = clip(content, maxOutputBytes);
+        if (!clip.truncated()) {
+            return String.format("%s (%d lines, %d bytes)\n\n%s",
+                    relativePath, lineCount, utf8Length(content), content);
+        }
+        return String.format("%s (%d lines, %d bytes; showing lines 1-%d)\n\n%s\n%s",
+                relativePath, lineCount, utf8Length(content), clip.lines(), clip.text(),
+                truncationNote(clip, 0, maxOutputBytes));
     }
 
     /**
@@ -350,103 +581,252 @@ public class FileOperationTools {
      * @param filePath
      * @param offset
      * @param limit
+     * @param maxOutputBytes
      * @return
      * @throws IOException
      */
-    private String readFileWithPagination(Path filePath, int offset, int limit) throws IOException {
+    private String readFileWithPagination(Path filePath, int offset, int limit, long maxOutputBytes) throws IOException {
         logger.info("开始分页读取文件内容..........");
-        List<String> allLines = Files.readAllLines(filePath, StandardCharsets.UTF_8);
+        PagedFileReader.Page page = pagedFileReader.readPage(filePath, offset, limit);
 
-        if (offset >= allLines.size()) {
-            return "Error: Offset " + offset + " is beyond file length (" + allLines.size() + " lines)";
+        if (offset >= page.totalLines()) {
+            return "Error: Offset " + offset + " is beyond file length (" + page.totalLines() + " lines)";
         }
 
-        int endIndex = Math.min(offset + limit, allLines.size());
-        List<String> selectedLines = allLines.subList(offset, endIndex);
-        String content = String.join("\n", selectedLines);
-
-        String absolutePath = filePath.toAbsolutePath().toString();
         String relativePath = getRelativePath(filePath);
-        return String.format("📁 Full path: %s\n📂 Relative path: %s\n📊 Showing lines %d-%d of %d total\n\n📄 Content:\n%s",
-                absolutePath, relativePath, offset + 1, endIndex, allLines.size(), content);
+        Clip clip = clip(page.content(), maxOutputBytes);
+        if (!clip.truncated()) {
+            return String.format("%s (lines %d-%d of %d)\n\n%s",
+                    relativePath, offset + 1, page.endLine(), page.totalLines(), page.content());
+        }
+        return String.format("%s (lines %d-%d of %d)\n\n%s\n%s",
+                relativePath, offset + 1, offset + clip.lines(), page.totalLines(), clip.text(),
+                truncationNote(clip, offset, maxOutputBytes));
+    }
+
+    /**
+     * 按字节预算截取的内容
+     * @param lines       完整保留的行数（首行超出预算时为 1，且该行被截断）
+     * @param partialLine 最后一行是否只保留了一部分
+     */
+    private record Clip(String text, int lines, boolean truncated, boolean partialLine) {
+    }
+
+    /**
+     * 在行边界按 UTF-8 字节数截取内容；第一行就超出预算时截断该行
+     * @param content
+     * @param maxBytes
+     * @return
+     */
+    private static Clip clip(String content, long maxBytes) {
+        // 每个字符最多 3 个字节（代理对 2 个字符共 4 个字节），不可能超出预算时直接返回
+        if (content.length() * 3L <= maxBytes) {
+            return new Clip(content, 0, false, false);
+        }
+        long bytes = 0;
+        int lines = 0;
+        int pos = 0;
+        while (pos < content.length()) {
+            int newline = content.indexOf('\n', pos);
+            int lineEnd = newline < 0 ? content.length() : newline + 1;
+            long lineBytes = utf8Length(content, pos, lineEnd);
+            if (bytes + lineBytes > maxBytes) {
+                break;
+            }
+            bytes += lineBytes;
+            lines++;
+            pos = lineEnd;
+        }
+        if (pos == content.length()) {
+            return new Clip(content, lines, false, false);
+        }
+        if (lines == 0) {
+            int end = 0;
+            while (end < content.length()) {
+                int width = Character.isHighSurrogate(content.charAt(end)) ? 2 : 1;
+                long charBytes = utf8Length(content, end, Math.min(end + width, content.length()));
+                if (bytes + charBytes > maxBytes) {
+                    break;
+                }
+                bytes += charBytes;
+                end += width;
+            }
+            return new Clip(content.substring(0, end), 1, true, true);
+        }
+        return new Clip(content.substring(0, pos), lines, true, false);
+    }
+
+    private static String truncationNote(Clip clip, int offset, long maxOutputBytes) {
+        int nextOffset = offset + clip.lines();
+        if (clip.partialLine()) {
+            return String.format("[Output truncated at %d bytes: line %d is longer than the budget and was cut. " +
+                    "Continue with offset=%d]", maxOutputBytes, nextOffset, nextOffset);
+        }
+        return String.format("[Output truncated at %d bytes. Continue with offset=%d]", maxOutputBytes, nextOffset);
+    }
+
+    private static long utf8Length(String text) {
+        return utf8Length(text, 0, text.length());
+    }
+
+    private static long utf8Length(String text, int start, int end) {
+        long bytes = 0;
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                bytes += 1;
+            } else if (c < 0x800) {
+                bytes += 2;
+            } else if (Character.isHighSurrogate(c)) {
+                bytes += 4;
+                i++;
+            } else {
+                bytes += 3;
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * 读取工具的输出预算：调用方指定时取与配置上限的较小值
+     * @param requested
+     * @return
+     */
+    private long outputBudget(Integer requested) {
+        long configured = appProperties.getTools().getMaxOutputBytes();
+        return requested != null && requested > 0 ? Math.min(requested, configured) : configured;
     }
 
     /**
      * 简单列出目录内容
      * @param path
-     * @param absolutePath
-     * @param relativePath
+     * @param format
+     * @param maxOutputBytes
      * @return
      * @throws IOException
      */
-    private String listDirectorySimple(Path path, String absolutePath, String relativePath) throws IOException {
+    private String listDirectorySimple(Path path, OutputFormat format, Long maxOutputBytes) throws IOException {
         StringBuilder result = new StringBuilder();
-        result.append("📁 Full path: ").append(absolutePath).append("\n");
-        result.append("📂 Relative path: ").append(relativePath).append("\n\n");
-        result.append("📋 Directory contents:\n");
-
-        try (Stream<Path> entries = Files.list(path)) {
-            List<Path> sortedEntries = entries.sorted().collect(Collectors.toList());
-
-            for (Path entry : sortedEntries) {
-                String name = entry.getFileName().toString();
-                String entryAbsolutePath = entry.toAbsolutePath().toString();
-                if (Files.isDirectory(entry)) {
-                    result.append("📁 [DIR]  ").append(name).append("/\n");
-                    result.append("   └─ ").append(entryAbsolutePath).append("\n");
-                } else {
-                    long size = Files.size(entry);
-                    result.append("📄 [FILE] ").append(name).append(" (").append(size).append(" bytes)\n");
-                    result.append("   └─ ").append(entryAbsolutePath).append("\n");
-                }
-            }
-        }
+        appendListingHeader(result, path, format);
+
+        DirectoryLister.Options options = directoryLister.defaultOptions(1, true).withOutputBudget(maxOutputBytes);
+        DirectoryLister.Summary summary = directoryLister.renderSorted(path, options,
+                Comparator.comparing(DirectoryLister.Entry::relativePath), listingRenderer(format), result);
+        appendListingFooter(result, summary, options, format);
+        logger.info("列出目录完成: {}, 格式={}, 条目={}, 截断={}, 耗时={}ms",
+                path, format.getValue(), summary.entries(), summary.truncationReason(), summary.elapsedMillis());
 
         return result.toString();
     }
 
     /**
      * 递归列出目录内容
+     * 边遍历边输出，跳过 .git、node_modules 等目录，超过深度、条目数或输出大小上限时截断
      * @param path
-     * @param absolutePath
-     * @param relativePath
+     * @param format
+     * @param maxOutputBytes
      * @return
      * @throws IOException
      */
-    private String listDirectoryRecursive(Path path, String absolutePath, String relativePath) throws IOException {
+    private String listDirectoryRecursive(Path path, OutputFormat format, Long maxOutputBytes) throws IOException {
         StringBuilder result = new StringBuilder();
-        result.append("📁 Full path: ").append(absolutePath).append("\n");
-        result.append("📂 Relative path: ").append(relativePath).append("\n\n");
-        result.append("🌳 Directory tree (recursive):\n");
-
-        try (Stream<Path> entries = Files.walk(path)) {
-            entries.sorted()
-                    .forEach(entry -> {
-                        if (!entry.equals(path)) {
-                            String entryAbsolutePath = entry.toAbsolutePath().toString();
-                            String entryRelativePath = getRelativePath(entry);
-
-                            // 计算缩进级别
-                            int depth = entry.getNameCount() - path.getNameCount();
-                            String indent = "  ".repeat(depth);
-
-                            if (Files.isDirectory(entry)) {
-                                result.append(indent).append("📁 ").append(entryRelativePath).append("/\n");
-                                result.append(indent).append("   └─ ").append(entryAbsolutePath).append("\n");
-                            } else {
-                                try {
-                                    long size = Files.size(entry);
-                                    result.append(indent).append("📄 ").append(entryRelativePath).append(" (").append(size).append(" bytes)\n");
-                                    result.append(indent).append("   └─ ").append(entryAbsolutePath).append("\n");
-                                } catch (IOException e) {
-                                    result.append(indent).append("📄 ").append(entryRelativePath).append(" (size unknown)\n");
-                                    result.append(indent).append("   └─ ").append(entryAbsolutePath).append("\n");
-                                }
-                            }
-                        }
-                    });
-        }
+        appendListingHeader(result, path, format);
+
+        DirectoryLister.Options options = directoryLister.defaultOptions(null, false).withOutputBudget(maxOutputBytes);
+        DirectoryLister.Summary summary = directoryLister.render(path, options, listingRenderer(format), result);
+        appendListingFooter(result, summary, options, format);
+        logger.info("递归列出目录完成: {}, 格式={}, 条目={}, 跳过目录={}, 未展开目录={}, 截断={}, 输出={} bytes, 耗时={}ms",
+                path, format.getValue(), summary.entries(), summary.ignoredDirectories(),
+                summary.depthLimitedDirectories(), summary.truncationReason(), summary.outputBytes(),
+                summary.elapsedMillis());
 
         return result.toString();
     }
+
+    /**
+     * 树形格式以目录的绝对路径开头，其余格式不输出表头，保证每行都是一个条目
+     */
+    private void appendListingHeader(StringBuilder result, Path path, OutputFormat format) {
+        if (format == OutputFormat.TREE) {
+            result.append(path.toAbsolutePath()).append("/\n");
+        }
+    }
+
+    /**
+     * 追加列表不完整的原因：条目数或输出字节上限导致的截断，以及多层遍历时因深度上限未展开的目录
+     * （单层列表本就不展开子目录，不提示深度）
+     */
+    private void appendListingFooter(StringBuilder result, DirectoryLister.Summary summary,
+                                     DirectoryLister.Options options, OutputFormat format) {
+        int unexpanded = options.maxDepth() > 1 ? summary.depthLimitedDirectories() : 0;
+        if (!summary.truncated() && unexpanded == 0) {
+            return;
+        }
+        if (format == OutputFormat.JSONL) {
+            Map<String, Object> note = new LinkedHashMap<>();
+            note.put("truncated", summary.truncated());
+            note.put("entries", summary.entries());
+            if (summary.truncated()) {
+                note.put("reason", summary.truncationReason());
+            }
+            if (unexpanded > 0) {
+                note.put("unexpandedDirectories", unexpanded);
+                note.put("maxDepth", options.maxDepth());
+            }
+            result.append(toJson(note)).append("\n");
+            return;
+        }
+        if (summary.truncated()) {
+            result.append("... truncated after ").append(summary.entries()).append(" entries (")
+                    .append(summary.truncationReason()).append("). List a subdirectory to see more.\n");
+        }
+        if (unexpanded > 0) {
+            result.append("... ").append(unexpanded).append(" directories not expanded (depth limit of ")
+                    .append(options.maxDepth()).append("). List them directly to see their contents.\n");
+        }
+    }
+
+    /**
+     * 按输出格式渲染单个条目：tree 只输出名称和缩进，paths 和 jsonl 输出相对工作目录的路径
+     */
+    private Function<DirectoryLister.Entry, String> listingRenderer(OutputFormat format) {
+        return switch (format) {
+            case TREE -> entry -> {
+                String indent = "  ".repeat(entry.depth());
+                String name = entry.path().getFileName().toString();
+                if (entry.ignored()) {
+                    return indent + name + "/ (skipped)";
+                }
+                return entry.directory() ? indent + name + "/" : indent + name + " " + formatSize(entry.size());
+            };
+            case PATHS -> entry -> getRelativePath(entry.path()) + (entry.directory() ? "/" : "");
+            case JSONL -> entry -> {
+                Map<String, Object> line = new LinkedHashMap<>();
+                line.put("path", getRelativePath(entry.path()));
+                line.put("type", entry.directory() ? "dir" : "file");
+                if (!entry.directory()) {
+                    line.put("size", entry.size());
+                }
+                line.put("depth", entry.depth());
+                if (entry.ignored()) {
+                    line.put("skipped", true);
+                }
+                return toJson(line);
+            };
+        };
+    }
+
+    private static String toJson(Map<String, Object> value) {
+        try {
+            return JSON.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize listing entry", e);
+        }
+    }
+
+    private static String formatSize(long bytes) {
+        if (bytes < 1024) return bytes + "B";
+        if (bytes < 1024 * 1024) return String.format("%.1fK", bytes / 1024.0);
+        return String.format("%.1fM", bytes / (1024.0 * 1024));
+    }
 }
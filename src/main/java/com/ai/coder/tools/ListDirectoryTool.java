@@ -5,12 +5,15 @@ import com.ai.coder.model.FileInfo;
 import com.ai.coder.model.ListDirectoryParams;
 import com.ai.coder.model.ToolResult;
 import com.ai.coder.schema.JsonSchema;
+import com.ai.coder.service.DirectoryLister;
+import com.ai.coder.service.WorkspacePathPolicy;
 import org.springframework.stereotype.Component;
 
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
@@ -18,8 +21,6 @@ import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 /**
  * 目录列表工具
@@ -29,9 +30,12 @@ import java.util.stream.Stream;
 public class ListDirectoryTool extends BaseTool<ListDirectoryParams> {
 
     private final String rootDirectory;
+    private final WorkspacePathPolicy workspacePathPolicy;
+    private final DirectoryLister directoryLister;
     private final AppProperties appProperties;
 
-    public ListDirectoryTool(AppProperties appProperties) {
+    public ListDirectoryTool(AppProperties appProperties, WorkspacePathPolicy workspacePathPolicy,
+                             DirectoryLister directoryLister) {
         super(
                 "list_directory",
                 "ListDirectory",
@@ -43,6 +47,8 @@ public class ListDirectoryTool extends BaseTool<ListDirectoryParams> {
         );
         this.appProperties = appProperties;
         this.rootDirectory = appProperties.getWorkspace().getRootDirectory();
+        this.workspacePathPolicy = workspacePathPolicy;
+        this.directoryLister = directoryLister;
     }
 
     private static String getWorkspaceBasePath() {
@@ -93,7 +99,7 @@ public class ListDirectoryTool extends BaseTool<ListDirectoryParams> {
         }
 
         // 验证是否在工作目录内
-        if (!isWithinWorkspace(dirPath)) {
+        if (!workspacePathPolicy.isWithinWorkspace(dirPath)) {
             return "Directory path must be within the workspace directory (" + rootDirectory + "): " + params.getPath();
         }
 
@@ -109,7 +115,12 @@ public class ListDirectoryTool extends BaseTool<ListDirectoryParams> {
     public CompletableFuture<ToolResult> execute(ListDirectoryParams params) {
         return CompletableFuture.supplyAsync(() -> {
             try {
-                Path dirPath = Paths.get(params.getPath());
+                // 只遍历策略解析后的真实位置，原始路径中的符号链接加 .. 可能指向工作目录之外
+                Path dirPath = workspacePathPolicy.resolve(Paths.get(params.getPath()));
+                if (dirPath == null) {
+                    return ToolResult.error("Directory path must be within the workspace directory (" + rootDirectory + "): " +
+                            params.getPath());
+                }
 
                 // 检查目录是否存在
                 if (!Files.exists(dirPath)) {
@@ -122,10 +133,11 @@ public class ListDirectoryTool extends BaseTool<ListDirectoryParams> {
                 }
 
                 // 列出文件和目录
-                List<FileInfo> fileInfos = listFiles(dirPath, params);
+                List<FileInfo> fileInfos = new ArrayList<>();
+                DirectoryLister.Summary summary = listFiles(dirPath, params, fileInfos);
 
                 // 生成输出
-                String content = formatFileList(fileInfos, params);
+                String content = formatFileList(fileInfos, params, summary);
                 String relativePath = getRelativePath(dirPath);
                 String displayMessage = String.format("Listed directory: %s (%d items)",
                         relativePath, fileInfos.size());
@@ -139,102 +151,37 @@ public class ListDirectoryTool extends BaseTool<ListDirectoryParams> {
                 logger.error("Unexpected error listing directory: " + params.getPath(), e);
                 return ToolResult.error("Unexpected error: " + e.getMessage());
             }
-        });
+        }, executor);
     }
 
-    private List<FileInfo> listFiles(Path dirPath, ListDirectoryParams params) throws IOException {
-        List<FileInfo> fileInfos = new ArrayList<>();
-
-        if (params.getRecursive() != null && params.getRecursive()) {
-            int maxDepth = params.getMaxDepth() != null ? params.getMaxDepth() : 3;
-            listFilesRecursive(dirPath, fileInfos, 0, maxDepth, params);
-        } else {
-            listFilesInDirectory(dirPath, fileInfos, params);
-        }
+    private DirectoryLister.Summary listFiles(Path dirPath, ListDirectoryParams params,
+                                              List<FileInfo> fileInfos) throws IOException {
+        boolean recursive = params.getRecursive() != null && params.getRecursive();
+        boolean showHidden = params.getShowHidden() != null && params.getShowHidden();
+        int maxDepth = recursive ? (params.getMaxDepth() != null ? params.getMaxDepth() : 3) : 1;
+        logger.info("开始列出目录: {} (递归: {}, 最大深度: {})", dirPath, recursive, maxDepth);
+
+        // 每个条目的类型、大小和修改时间来自遍历时读取的属性，不再逐个查询
+        DirectoryLister.Summary summary = directoryLister.walk(dirPath,
+                directoryLister.defaultOptions(maxDepth, showHidden),
+                entry -> fileInfos.add(new FileInfo(
+                        entry.path().getFileName().toString(),
+                        entry.relativePath(),
+                        entry.directory(),
+                        entry.size(),
+                        LocalDateTime.ofInstant(Instant.ofEpochMilli(entry.lastModifiedMillis()), ZoneId.systemDefault())
+                )));
 
         // 排序：目录在前，然后按名称排序
         fileInfos.sort(Comparator
                 .comparing((FileInfo f) -> !f.isDirectory())
                 .thenComparing(FileInfo::getName));
 
-        return fileInfos;
+        return summary;
     }
 
-    private void listFilesInDirectory(Path dirPath,
-                                      List<FileInfo> fileInfos,
-                                      ListDirectoryParams params) throws IOException {
-        try (Stream<Path> stream = Files.list(dirPath)) {
-            logger.info("开始列出目录: {} (非递归)", dirPath);
-            stream.forEach(path -> {
-                try {
-                    String fileName = path.getFileName().toString();
-
-                    // 跳过隐藏文件（除非明确要求显示）
-                    if (!params.getShowHidden() && fileName.startsWith(".")) {
-                        return;
-                    }
-
-                    FileInfo fileInfo = createFileInfo(path, dirPath);
-                    fileInfos.add(fileInfo);
-                } catch (IOException e) {
-                    logger.warn("Could not get info for file: " + path, e);
-                }
-            });
-        }
-    }
-
-    private void listFilesRecursive(Path dirPath,
-                                    List<FileInfo> fileInfos,
-                                    int currentDepth,
-                                    int maxDepth,
-                                    ListDirectoryParams params) throws IOException {
-        logger.info("开始递归列出目录: {} (当前深度: {}, 最大深度: {})", dirPath, currentDepth, maxDepth);
-        if (currentDepth >= maxDepth) {
-            return;
-        }
-
-        try (Stream<Path> stream = Files.list(dirPath)) {
-            List<Path> paths = stream.collect(Collectors.toList());
-
-            for (Path path : paths) {
-                String fileName = path.getFileName().toString();
-
-                // 跳过隐藏文件（除非明确要求显示）
-                if (!params.getShowHidden() && fileName.startsWith(".")) {
-                    continue;
-                }
-
-                try {
-                    FileInfo fileInfo = createFileInfo(path, Paths.get(params.getPath()));
-                    fileInfos.add(fileInfo);
-
-                    // 如果是目录，递归列出
-                    if (Files.isDirectory(path)) {
-                        listFilesRecursive(path, fileInfos, currentDepth + 1, maxDepth, params);
-                    }
-                } catch (IOException e) {
-                    logger.warn("Could not get info for file: " + path, e);
-                }
-            }
-        }
-    }
-
-    private FileInfo createFileInfo(Path path, Path basePath) throws IOException {
-        String name = path.getFileName().toString();
-        boolean isDirectory = Files.isDirectory(path);
-        long size = isDirectory ? 0 : Files.size(path);
-
-        LocalDateTime lastModified = LocalDateTime.ofInstant(
-                Files.getLastModifiedTime(path).toInstant(),
-                ZoneId.systemDefault()
-        );
-
-        String relativePath = basePath.relativize(path).toString();
-
-        return new FileInfo(name, relativePath, isDirectory, size, lastModified);
-    }
-
-    private String formatFileList(List<FileInfo> fileInfos, ListDirectoryParams params) {
+    private String formatFileList(List<FileInfo> fileInfos, ListDirectoryParams params,
+                                  DirectoryLister.Summary summary) {
         if (fileInfos.isEmpty()) {
             return "Directory is empty.";
         }
@@ -264,6 +211,19 @@ public class ListDirectoryTool extends BaseTool<ListDirectoryParams> {
             ));
         }
 
+        if (summary.truncated()) {
+            sb.append(String.format("\n... listing truncated after %d entries (%s). " +
+                    "List a subdirectory or reduce max_depth to see more.\n", summary.entries(), summary.truncationReason()));
+        }
+        if (Boolean.TRUE.equals(params.getRecursive()) && summary.depthLimitedDirectories() > 0) {
+            sb.append(String.format("\n... %d directories not expanded (depth limit reached). " +
+                    "List them directly or increase max_depth to see their contents.\n", summary.depthLimitedDirectories()));
+        }
+        if (summary.ignoredDirectories() > 0) {
+            sb.append(String.format("\nSkipped contents of %d dependency/build/VCS directories (e.g. node_modules, target, .git).\n",
+                    summary.ignoredDirectories()));
+        }
+
         return sb.toString();
     }
 
@@ -281,17 +241,6 @@ public class ListDirectoryTool extends BaseTool<ListDirectoryParams> {
         return str.substring(0, maxLength - 3) + "...";
     }
 
-    private boolean isWithinWorkspace(Path dirPath) {
-        try {
-            Path workspaceRoot = Paths.get(rootDirectory).toRealPath();
-            Path normalizedPath = dirPath.normalize();
-            return normalizedPath.startsWith(workspaceRoot.normalize());
-        } catch (IOException e) {
-            logger.warn("Could not resolve workspace path", e);
-            return false;
-        }
-    }
-
     private String getRelativePath(Path dirPath) {
         try {
             Path workspaceRoot = Paths.get(rootDirectory);
@@ -6,13 +6,14 @@ import com.ai.coder.model.ScaffoldParams;
 import com.ai.coder.model.ScaffoldResult;
 import com.ai.coder.model.ToolResult;
 import com.ai.coder.schema.JsonSchema;
+import com.ai.coder.service.AtomicFileWriter;
+import com.ai.coder.service.WorkspacePathPolicy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.ai.tool.annotation.Tool;
 import org.springframework.stereotype.Component;
 
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -29,9 +30,12 @@ public class ProjectScaffoldTool extends BaseTool<ScaffoldParams> {
     private static final Logger logger = LoggerFactory.getLogger(ProjectScaffoldTool.class);
 
     private final String rootDirectory;
+    private final WorkspacePathPolicy workspacePathPolicy;
     private final AppProperties appProperties;
+    private final AtomicFileWriter atomicFileWriter;
 
-    public ProjectScaffoldTool(AppProperties appProperties) {
+    public ProjectScaffoldTool(AppProperties appProperties, AtomicFileWriter atomicFileWriter,
+                               WorkspacePathPolicy workspacePathPolicy) {
         super(
                 "scaffold_project",
                 "ScaffoldProject",
@@ -40,7 +44,9 @@ public class ProjectScaffoldTool extends BaseTool<ScaffoldParams> {
                 createSchema()
         );
         this.appProperties = appProperties;
+        this.atomicFileWriter = atomicFileWriter;
         this.rootDirectory = appProperties.getWorkspace().getRootDirectory();
+        this.workspacePathPolicy = workspacePathPolicy;
     }
 
     private static JsonSchema createSchema() {
@@ -103,7 +109,7 @@ public class ProjectScaffoldTool extends BaseTool<ScaffoldParams> {
         // 验证项目路径
         if (params.getProjectPath() != null) {
             Path projectPath = Paths.get(params.getProjectPath());
-            if (!isWithinWorkspace(projectPath)) {
+            if (!workspacePathPolicy.isWithinWorkspace(projectPath)) {
                 return "Project path must be within workspace: " + params.getProjectPath();
             }
         }
@@ -159,8 +165,11 @@ public class ProjectScaffoldTool extends BaseTool<ScaffoldParams> {
             try {
                 logger.info("创建项目脚手架: {} ({})", params.getProjectName(), params.getProjectType());
 
-                // 1. 确定项目路径
-                Path projectPath = determineProjectPath(params);
+                // 1. 确定项目路径（项目名可能含 ..，以策略解析后的位置为准）
+                Path projectPath = workspacePathPolicy.resolve(determineProjectPath(params));
+                if (projectPath == null) {
+                    return ToolResult.error("Project path must be within workspace: " + determineProjectPath(params));
+                }
 
                 // 2. 检查项目是否已存在
                 if (Files.exists(projectPath)) {
@@ -183,7 +192,7 @@ public class ProjectScaffoldTool extends BaseTool<ScaffoldParams> {
                 logger.error("Error creating project scaffold", e);
                 return ToolResult.error("Failed to create project: " + e.getMessage());
             }
-        });
+        }, executor);
     }
 
     /**
@@ -243,6 +252,9 @@ public class ProjectScaffoldTool extends BaseTool<ScaffoldParams> {
             initializeGitRepository(projectPath, result);
         }
 
+        // 所有文件一次性原子写入，集中落盘
+        atomicFileWriter.writeAll(result.getPendingFiles());
+
         result.generateSummary(projectPath, projectType);
         return result;
     }
@@ -381,7 +393,7 @@ public class ProjectScaffoldTool extends BaseTool<ScaffoldParams> {
 
     private void createFile(Path path, String content, ScaffoldResult result) throws IOException {
         Files.createDirectories(path.getParent());
-        Files.writeString(path, content, StandardCharsets.UTF_8);
+        result.addPendingFile(path, content);
         result.addCreatedItem("File: " + path.getFileName());
     }
 
@@ -407,16 +419,6 @@ public class ProjectScaffoldTool extends BaseTool<ScaffoldParams> {
         }
     }
 
-    private boolean isWithinWorkspace(Path filePath) {
-        try {
-            Path workspaceRoot = Paths.get(rootDirectory).toRealPath();
-            Path normalizedPath = filePath.toRealPath();
-            return normalizedPath.startsWith(workspaceRoot);
-        } catch (Exception e) {
-            return false;
-        }
-    }
-
     // String utility methods
     private String toCamelCase(String str) {
         if (str == null || str.isEmpty()) {
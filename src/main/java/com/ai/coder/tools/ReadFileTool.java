@@ -4,7 +4,10 @@ import com.ai.coder.config.AppProperties;
 import com.ai.coder.model.ReadFileParams;
 import com.ai.coder.model.ToolResult;
 import com.ai.coder.schema.JsonSchema;
+import com.ai.coder.service.FileContentCache;
+import com.ai.coder.service.PagedFileReader;
 import com.ai.coder.service.ToolExecutionLogger;
+import com.ai.coder.service.WorkspacePathPolicy;
 import org.springframework.ai.tool.annotation.Tool;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
@@ -25,12 +28,16 @@ import java.util.concurrent.CompletableFuture;
 public class ReadFileTool extends BaseTool<ReadFileParams> {
 
     private final String rootDirectory;
+    private final WorkspacePathPolicy workspacePathPolicy;
     private final AppProperties appProperties;
+    private final PagedFileReader pagedFileReader;
+    private final FileContentCache fileContentCache;
 
     @Autowired
     private ToolExecutionLogger executionLogger;
 
-    public ReadFileTool(AppProperties appProperties) {
+    public ReadFileTool(AppProperties appProperties, PagedFileReader pagedFileReader,
+                        FileContentCache fileContentCache, WorkspacePathPolicy workspacePathPolicy) {
         super(
                 "read_file",
                 "ReadFile",
@@ -40,7 +47,10 @@ public class ReadFileTool extends BaseTool<ReadFileParams> {
                 createSchema()
         );
         this.appProperties = appProperties;
+        this.pagedFileReader = pagedFileReader;
+        this.fileContentCache = fileContentCache;
         this.rootDirectory = appProperties.getWorkspace().getRootDirectory();
+        this.workspacePathPolicy = workspacePathPolicy;
     }
 
     private static String getWorkspaceBasePath() {
@@ -90,7 +100,7 @@ public class ReadFileTool extends BaseTool<ReadFileParams> {
         }
 
         // 验证是否在工作目录内
-        if (!isWithinWorkspace(filePath)) {
+        if (!workspacePathPolicy.isWithinWorkspace(filePath)) {
             return "File path must be within the workspace directory (" + rootDirectory + "): " + params.getAbsolutePath();
         }
 
@@ -164,7 +174,12 @@ public class ReadFileTool extends BaseTool<ReadFileParams> {
         return CompletableFuture.supplyAsync(() -> {
             try {
                 logger.info("开始读取文件: {}", params.getAbsolutePath());
-                Path filePath = Paths.get(params.getAbsolutePath());
+                // 只读取策略解析后的真实位置，原始路径中的符号链接加 .. 可能指向工作目录之外
+                Path filePath = workspacePathPolicy.resolve(Paths.get(params.getAbsolutePath()));
+                if (filePath == null) {
+                    return ToolResult.error("File path must be within the workspace directory (" + rootDirectory + "): " +
+                            params.getAbsolutePath());
+                }
 
                 // 检查文件是否存在
                 if (!Files.exists(filePath)) {
@@ -204,11 +219,11 @@ public class ReadFileTool extends BaseTool<ReadFileParams> {
                 logger.error("Unexpected error reading file: " + params.getAbsolutePath(), e);
                 return ToolResult.error("Unexpected error: " + e.getMessage());
             }
-        });
+        }, executor);
     }
 
     private ToolResult readFullFile(Path filePath) throws IOException {
-        String content = Files.readString(filePath, StandardCharsets.UTF_8);
+        String content = fileContentCache.read(filePath);
         String relativePath = getRelativePath(filePath);
 
         long lineCount = content.lines().count();
@@ -219,39 +234,17 @@ public class ReadFileTool extends BaseTool<ReadFileParams> {
     }
 
     private ToolResult readFileWithPagination(Path filePath, int offset, int limit) throws IOException {
-        List<String> allLines = Files.readAllLines(filePath, StandardCharsets.UTF_8);
+        PagedFileReader.Page page = pagedFileReader.readPage(filePath, offset, limit);
 
-        if (offset >= allLines.size()) {
-            return ToolResult.error("Offset " + offset + " is beyond file length (" + allLines.size() + " lines)");
+        if (offset >= page.totalLines()) {
+            return ToolResult.error("Offset " + offset + " is beyond file length (" + page.totalLines() + " lines)");
         }
 
-        int endIndex = Math.min(offset + limit, allLines.size());
-        List<String> selectedLines = allLines.subList(offset, endIndex);
-        String content = String.join("\n", selectedLines);
-
         String relativePath = getRelativePath(filePath);
         String displayMessage = String.format("Read file: %s (lines %d-%d of %d total)",
-                relativePath, offset + 1, endIndex, allLines.size());
-
-        return ToolResult.success(content, displayMessage);
-    }
+                relativePath, offset + 1, page.endLine(), page.totalLines());
 
-    private boolean isWithinWorkspace(Path filePath) {
-        try {
-            Path workspaceRoot = Paths.get(rootDirectory).toRealPath();
-            Path resolvedPath = filePath.toRealPath();
-            return resolvedPath.startsWith(workspaceRoot);
-        } catch (IOException e) {
-            // 如果路径不存在，检查其父目录
-            try {
-                Path workspaceRoot = Paths.get(rootDirectory).toRealPath();
-                Path normalizedPath = filePath.normalize();
-                return normalizedPath.startsWith(workspaceRoot.normalize());
-            } catch (IOException ex) {
-                logger.warn("Could not resolve workspace path", ex);
-                return false;
-            }
-        }
+        return ToolResult.success(page.content(), displayMessage);
     }
 
     private boolean isAllowedFileType(String fileName) {
@@ -4,6 +4,7 @@ import com.ai.coder.config.AppProperties;
 import com.ai.coder.model.*;
 import com.ai.coder.schema.JsonSchema;
 import com.ai.coder.service.ProjectContextAnalyzer;
+import com.ai.coder.service.WorkspacePathPolicy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.ai.chat.client.ChatClient;
@@ -15,7 +16,6 @@ import org.springframework.ai.tool.annotation.Tool;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
-import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -47,9 +47,10 @@ public class SmartEditTool extends BaseTool<SmartEditParams> {
     private ChatModel chatModel;
 
     private final String rootDirectory;
+    private final WorkspacePathPolicy workspacePathPolicy;
     private final AppProperties appProperties;
 
-    public SmartEditTool(AppProperties appProperties) {
+    public SmartEditTool(AppProperties appProperties, WorkspacePathPolicy workspacePathPolicy) {
         super(
                 "smart_edit",
                 "SmartEdit",
@@ -60,6 +61,7 @@ public class SmartEditTool extends BaseTool<SmartEditParams> {
         );
         this.appProperties = appProperties;
         this.rootDirectory = appProperties.getWorkspace().getRootDirectory();
+        this.workspacePathPolicy = workspacePathPolicy;
     }
 
     private static JsonSchema createSchema() {
@@ -181,7 +183,7 @@ public class SmartEditTool extends BaseTool<SmartEditParams> {
             return "Project path must be a directory: " + params.getProjectPath();
         }
 
-        if (!isWithinWorkspace(projectPath)) {
+        if (!workspacePathPolicy.isWithinWorkspace(projectPath)) {
             return "Project path must be within the workspace directory: " + params.getProjectPath();
         }
 
@@ -215,7 +217,7 @@ public class SmartEditTool extends BaseTool<SmartEditParams> {
                 logger.warn("Could not generate edit plan for confirmation", e);
                 return null;
             }
-        });
+        }, executor);
     }
 
     @Override
@@ -226,7 +228,10 @@ public class SmartEditTool extends BaseTool<SmartEditParams> {
                 logger.info("编辑描述: {}", params.getEditDescription());
 
                 // 1. Analyze project context
-                Path projectPath = Paths.get(params.getProjectPath());
+                Path projectPath = workspacePathPolicy.resolve(Paths.get(params.getProjectPath()));
+                if (projectPath == null) {
+                    return ToolResult.error("Project path must be within the workspace directory: " + params.getProjectPath());
+                }
                 ProjectContext context = projectContextAnalyzer.analyzeProject(projectPath);
 
                 // 2. Generate edit plan
@@ -252,14 +257,17 @@ public class SmartEditTool extends BaseTool<SmartEditParams> {
                 logger.error("Error during smart edit execution", e);
                 return ToolResult.error("Smart edit failed: " + e.getMessage());
             }
-        });
+        }, executor);
     }
 
     /**
      * Analyze and generate edit plan
      */
     private EditPlan analyzeAndPlanEdit(SmartEditParams params) {
-        Path projectPath = Paths.get(params.getProjectPath());
+        Path projectPath = workspacePathPolicy.resolve(Paths.get(params.getProjectPath()));
+        if (projectPath == null) {
+            throw new IllegalArgumentException("Project path must be within the workspace directory: " + params.getProjectPath());
+        }
         ProjectContext context = projectContextAnalyzer.analyzeProject(projectPath);
         return generateEditPlan(params, context);
     }
@@ -511,15 +519,4 @@ public class SmartEditTool extends BaseTool<SmartEditParams> {
         return message.toString();
     }
 
-    private boolean isWithinWorkspace(Path filePath) {
-        try {
-            Path workspaceRoot = Paths.get(rootDirectory).toRealPath();
-            Path normalizedPath = filePath.toRealPath();
-            return normalizedPath.startsWith(workspaceRoot);
-        } catch (IOException e) {
-            logger.warn("Could not resolve workspace path", e);
-            return false;
-        }
-    }
-
 }
@@ -5,11 +5,13 @@ import com.ai.coder.model.FileDiff;
 import com.ai.coder.model.ToolConfirmationDetails;
 import com.ai.coder.model.ToolResult;
 import com.ai.coder.schema.JsonSchema;
+import com.ai.coder.service.AtomicFileWriter;
+import com.ai.coder.service.BackupStore;
+import com.ai.coder.service.DiffService;
+import com.ai.coder.service.FileContentCache;
 import com.ai.coder.service.ToolExecutionLogger;
+import com.ai.coder.service.WorkspacePathPolicy;
 import com.fasterxml.jackson.annotation.JsonProperty;
-import com.github.difflib.DiffUtils;
-import com.github.difflib.UnifiedDiffUtils;
-import com.github.difflib.patch.Patch;
 import org.springframework.ai.tool.annotation.Tool;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
@@ -19,10 +21,6 @@ import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.nio.file.StandardOpenOption;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
-import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
 
@@ -34,15 +32,19 @@ import java.util.concurrent.CompletableFuture;
 public class WriteFileTool extends BaseTool<WriteFileTool.WriteFileParams> {
 
     private final String rootDirectory;
+    private final WorkspacePathPolicy workspacePathPolicy;
     private final AppProperties appProperties;
+    private final FileContentCache fileContentCache;
+    private final AtomicFileWriter atomicFileWriter;
+    private final BackupStore backupStore;
+    private final DiffService diffService;
 
     @Autowired
     private ToolExecutionLogger executionLogger;
 
-    @Autowired
-    private EditFileTool editFileTool;
-
-    public WriteFileTool(AppProperties appProperties) {
+    public WriteFileTool(AppProperties appProperties, FileContentCache fileContentCache,
+                         AtomicFileWriter atomicFileWriter, BackupStore backupStore,
+                         DiffService diffService, WorkspacePathPolicy workspacePathPolicy) {
         super(
                 "write_file",
                 "WriteFile",
@@ -52,7 +54,12 @@ public class WriteFileTool extends BaseTool<WriteFileTool.WriteFileParams> {
                 createSchema()
         );
         this.appProperties = appProperties;
+        this.fileContentCache = fileContentCache;
+        this.atomicFileWriter = atomicFileWriter;
+        this.backupStore = backupStore;
+        this.diffService = diffService;
         this.rootDirectory = appProperties.getWorkspace().getRootDirectory();
+        this.workspacePathPolicy = workspacePathPolicy;
     }
 
     private static String getWorkspaceBasePath() {
@@ -101,7 +108,7 @@ public class WriteFileTool extends BaseTool<WriteFileTool.WriteFileParams> {
         }
 
         // 验证是否在工作目录内
-        if (!isWithinWorkspace(filePath)) {
+        if (!workspacePathPolicy.isWithinWorkspace(filePath)) {
             return "File path must be within the workspace directory (" + rootDirectory + "): " + params.filePath;
         }
 
@@ -132,16 +139,19 @@ public class WriteFileTool extends BaseTool<WriteFileTool.WriteFileParams> {
 
         return CompletableFuture.supplyAsync(() -> {
             try {
-                Path filePath = Paths.get(params.filePath);
+                Path filePath = workspacePathPolicy.resolve(Paths.get(params.filePath));
+                if (filePath == null) {
+                    return null; // 不在工作目录内，执行时报错
+                }
                 String currentContent = "";
                 boolean isNewFile = !Files.exists(filePath);
 
                 if (!isNewFile) {
-                    currentContent = Files.readString(filePath, StandardCharsets.UTF_8);
+                    currentContent = fileContentCache.read(filePath);
                 }
 
                 // 生成差异显示
-                String diff = editFileTool.generateDiff(
+                String diff = diffService.unifiedDiff(
                         filePath.getFileName().toString(),
                         currentContent,
                         params.content
@@ -157,7 +167,7 @@ public class WriteFileTool extends BaseTool<WriteFileTool.WriteFileParams> {
                 logger.warn("Could not read existing file for diff: " + params.filePath, e);
                 return null; // 如果无法读取文件，直接执行
             }
-        });
+        }, executor);
     }
 
 
@@ -211,26 +221,28 @@ public class WriteFileTool extends BaseTool<WriteFileTool.WriteFileParams> {
         return CompletableFuture.supplyAsync(() -> {
             try {
                 logger.info("开始写入文件: {}", params.filePath);
-                Path filePath = Paths.get(params.filePath);
+                // 只写入策略解析后的真实位置，原始路径中的符号链接加 .. 可能指向工作目录之外
+                Path filePath = workspacePathPolicy.resolve(Paths.get(params.filePath));
+                if (filePath == null) {
+                    return ToolResult.error("File path must be within the workspace directory (" + rootDirectory + "): " +
+                            params.filePath);
+                }
                 boolean isNewFile = !Files.exists(filePath);
                 String originalContent = "";
 
                 // 读取原始内容（用于备份和差异显示）
                 if (!isNewFile) {
-                    originalContent = Files.readString(filePath, StandardCharsets.UTF_8);
+                    originalContent = fileContentCache.read(filePath);
                 }
 
                 // 创建备份（如果启用）
                 if (!isNewFile && shouldCreateBackup()) {
-                    createBackup(filePath, originalContent);
+                    backupStore.backup(filePath, getName());
                 }
 
-                // 确保父目录存在
-                Files.createDirectories(filePath.getParent());
-
-                // 写入文件
-                Files.writeString(filePath, params.content, StandardCharsets.UTF_8,
-                        StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+                // 原子写入文件（自动创建父目录）
+                atomicFileWriter.write(filePath, params.content);
+                fileContentCache.put(filePath, params.content);
 
                 // 生成结果
                 String relativePath = getRelativePath(filePath);
@@ -243,7 +255,7 @@ public class WriteFileTool extends BaseTool<WriteFileTool.WriteFileParams> {
                     String displayMessage = String.format("Created %s (%d lines)", relativePath, lineCount);
                     return ToolResult.success(successMessage, displayMessage);
                 } else {
-                    String diff = editFileTool.generateDiff(filePath.getFileName().toString(), originalContent, params.content);
+                    String diff = diffService.unifiedDiff(filePath.getFileName().toString(), originalContent, params.content);
                     String successMessage = String.format("Successfully wrote to file: %s (%d lines, %d bytes)",
                             params.filePath, lineCount, byteCount);
                     return ToolResult.success(successMessage, new FileDiff(diff, filePath.getFileName().toString()));
@@ -256,16 +268,7 @@ public class WriteFileTool extends BaseTool<WriteFileTool.WriteFileParams> {
                 logger.error("Unexpected error writing file: {}", params.filePath, e);
                 return ToolResult.error("Unexpected error: " + e.getMessage());
             }
-        });
-    }
-
-    private void createBackup(Path filePath, String content) throws IOException {
-        String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss"));
-        String backupFileName = filePath.getFileName().toString() + ".backup." + timestamp;
-        Path backupPath = filePath.getParent().resolve(backupFileName);
-
-        Files.writeString(backupPath, content, StandardCharsets.UTF_8);
-        logger.info("Created backup: {}", backupPath);
+        }, executor);
     }
 
     private boolean shouldCreateBackup() {
@@ -273,17 +276,6 @@ public class WriteFileTool extends BaseTool<WriteFileTool.WriteFileParams> {
         return true;
     }
 
-    private boolean isWithinWorkspace(Path filePath) {
-        try {
-            Path workspaceRoot = Paths.get(rootDirectory).toRealPath();
-            Path normalizedPath = filePath.normalize();
-            return normalizedPath.startsWith(workspaceRoot.normalize());
-        } catch (IOException e) {
-            logger.warn("Could not resolve workspace path", e);
-            return false;
-        }
-    }
-
     private boolean isAllowedFileType(String fileName) {
         List<String> allowedExtensions = appProperties.getWorkspace().getAllowedExtensions();
         return allowedExtensions.stream()
@@ -10,6 +10,18 @@ const clearBtn = document.getElementById('clearBtn');
 const loading = document.getElementById('loading');
 const status = document.getElementById('status');
 
+// 会话ID：同一标签页内保持不变，服务端按会话隔离对话历史
+const sessionId = (function () {
+    let id = sessionStorage.getItem('chatSessionId');
+    if (!id) {
+        id = (window.crypto && crypto.randomUUID)
+            ? crypto.randomUUID()
+            : 'session-' + Date.now() + '-' + Math.random().toString(36).slice(2);
+        sessionStorage.setItem('chatSessionId', id);
+    }
+    return id;
+})();
+
 // 全局错误处理
 window.addEventListener('error', function (event) {
     console.error('Global JavaScript error:', event.error);
@@ -39,7 +51,7 @@ async function sendMessage() {
             headers: {
                 'Content-Type': 'application/json',
             },
-            body: JSON.stringify({message: message})
+            body: JSON.stringify({message: message, sessionId: sessionId})
         });
 
         const data = await response.json();
@@ -103,7 +115,7 @@ function quickAction(message) {
 // 清除历史
 async function clearHistory() {
     try {
-        await fetch('/api/chat/clear', {method: 'POST'});
+        await fetch('/api/chat/clear?sessionId=' + encodeURIComponent(sessionId), {method: 'POST'});
         messagesContainer.innerHTML = '';
         showStatus('History cleared', 'success');
     } catch (error) {
@@ -231,7 +243,7 @@ function handleStreamResponse(userMessage) {
         headers: {
             'Content-Type': 'application/json',
         },
-        body: JSON.stringify({message: userMessage})
+        body: JSON.stringify({message: userMessage, sessionId: sessionId})
     })
         .then(response => {
             if (!response.ok) {
@@ -8,6 +8,7 @@ class LogStreamManager {
     constructor() {
         this.activeConnections = new Map(); // taskId -> EventSource
         this.toolLogDisplays = new Map(); // taskId -> ToolLogDisplay
+        this.lastEventIds = new Map(); // taskId -> 已收到的最后一个事件ID，重连时从其后重放
     }
 
     // 建立SSE连接
@@ -19,12 +20,17 @@ class LogStreamManager {
 
         console.log('🔗 建立SSE连接:', taskId);
 
-        // 创建工具日志显示组件
-        const toolLogDisplay = new ToolLogDisplay(taskId);
-        this.toolLogDisplays.set(taskId, toolLogDisplay);
+        // 创建工具日志显示组件（重连时复用）
+        let toolLogDisplay = this.toolLogDisplays.get(taskId);
+        if (!toolLogDisplay) {
+            toolLogDisplay = new ToolLogDisplay(taskId);
+            this.toolLogDisplays.set(taskId, toolLogDisplay);
+        }
 
-        // 建立EventSource连接
-        const eventSource = new EventSource(`/api/logs/stream/${taskId}`);
+        // 建立EventSource连接，重连时带上最后收到的事件ID
+        const lastEventId = this.lastEventIds.get(taskId);
+        const url = lastEventId ? `/api/logs/stream/${taskId}?lastEventId=${lastEventId}` : `/api/logs/stream/${taskId}`;
+        const eventSource = new EventSource(url);
 
         eventSource.onopen = () => {
             console.log('✅ SSE连接建立成功:', taskId);
@@ -43,6 +49,9 @@ class LogStreamManager {
 
         // 监听特定的 "log" 事件
         eventSource.addEventListener('log', (event) => {
+            if (event.lastEventId) {
+                this.lastEventIds.set(taskId, event.lastEventId);
+            }
             try {
                 const logEvent = JSON.parse(event.data);
                 console.log('📨 收到log事件:', logEvent);
@@ -92,9 +101,20 @@ class LogStreamManager {
             case 'TOOL_ERROR':
                 toolLogDisplay.updateToolError(logEvent);
                 break;
+            case 'TURN_TOKEN':
+                toolLogDisplay.appendTurnToken(logEvent);
+                break;
+            case 'TASK_PROGRESS':
+                toolLogDisplay.updateProgress(logEvent);
+                break;
+            case 'TURN_COMPLETE':
+                toolLogDisplay.updateProgress(logEvent);
+                toolLogDisplay.completeTurn(logEvent);
+                break;
             case 'TASK_COMPLETE':
+                toolLogDisplay.updateProgress(logEvent);
                 toolLogDisplay.showTaskComplete();
-                this.handleTaskComplete(taskId);
+                this.handleTaskComplete(taskId, logEvent);
                 this.closeConnection(taskId);
                 break;
             default:
@@ -108,6 +128,7 @@ class LogStreamManager {
         if (eventSource) {
             eventSource.close();
             this.activeConnections.delete(taskId);
+            this.lastEventIds.delete(taskId);
             console.log('🔚 关闭SSE连接:', taskId);
         }
 
@@ -121,53 +142,41 @@ class LogStreamManager {
         }, 5000);
     }
 
-    // 处理任务完成
-    async handleTaskComplete(taskId) {
-        try {
-            // 获取对话结果
-            const response = await fetch(`/api/task/result/${taskId}`);
-            const resultData = await response.json();
-
-            // 安全地显示最终结果
-            if (typeof addMessage === 'function' && resultData && resultData.fullResponse) {
-                addMessage('assistant', resultData.fullResponse);
-            } else {
-                console.error('addMessage function not available or invalid result data');
-            }
+    // 处理任务完成：最终结果随 TASK_COMPLETE 事件推送，无需再请求结果接口
+    handleTaskComplete(taskId, resultData) {
+        // 安全地显示最终结果
+        if (typeof addMessage === 'function' && resultData && resultData.fullResponse) {
+            addMessage('assistant', resultData.fullResponse);
+        }
 
-            // 显示统计信息
-            let statusMessage = '对话完成';
-            if (resultData.totalTurns > 1) {
-                statusMessage += ` (${resultData.totalTurns} 轮`;
-                if (resultData.totalDurationMs) {
-                    statusMessage += `, ${(resultData.totalDurationMs / 1000).toFixed(1)}秒`;
-                }
-                statusMessage += ')';
-
-                if (resultData.reachedMaxTurns) {
-                    statusMessage += ' - 达到最大轮次限制';
-                }
-                if (resultData.stopReason) {
-                    statusMessage += ` - ${resultData.stopReason}`;
-                }
+        // 显示统计信息
+        let statusMessage = '对话完成';
+        if (resultData.status === 'CANCELLED') {
+            statusMessage = '任务已取消';
+        } else if (resultData.status === 'FAILED') {
+            statusMessage = '任务执行失败' + (resultData.errorMessage ? `: ${resultData.errorMessage}` : '');
+        } else if (resultData.totalTurns > 1) {
+            statusMessage += ` (${resultData.totalTurns} 轮`;
+            if (resultData.totalDurationMs) {
+                statusMessage += `, ${(resultData.totalDurationMs / 1000).toFixed(1)}秒`;
             }
+            statusMessage += ')';
 
-            // 安全地调用showStatus函数
-            if (typeof showStatus === 'function') {
-                showStatus(statusMessage, 'success');
-            } else {
-                console.log(statusMessage);
+            if (resultData.reachedMaxTurns) {
+                statusMessage += ' - 达到最大轮次限制';
             }
-
-        } catch (error) {
-            console.error('获取对话结果失败:', error);
-            // 安全地调用showStatus函数
-            if (typeof showStatus === 'function') {
-                showStatus('获取对话结果失败', 'error');
-            } else {
-                console.error('获取对话结果失败');
+            if (resultData.stopReason) {
+                statusMessage += ` - ${resultData.stopReason}`;
             }
         }
+
+        // 安全地调用showStatus函数
+        const statusType = resultData.status === 'FAILED' ? 'error' : 'success';
+        if (typeof showStatus === 'function') {
+            showStatus(statusMessage, statusType);
+        } else {
+            console.log(statusMessage);
+        }
     }
 
     // 处理连接错误
@@ -7,6 +7,7 @@ class ToolLogDisplay {
     constructor(taskId) {
         this.taskId = taskId;
         this.toolCards = new Map(); // toolName -> DOM element
+        this.turnStreams = new Map(); // turn -> DOM element
         this.container = this.createContainer();
         this.appendToPage();
     }
@@ -72,6 +73,47 @@ class ToolLogDisplay {
         }
     }
 
+    // 追加模型输出片段
+    appendTurnToken(logEvent) {
+        removeWaitingToolCard();
+
+        let turnStream = this.turnStreams.get(logEvent.turn);
+        if (!turnStream) {
+            turnStream = document.createElement('div');
+            turnStream.className = 'turn-stream';
+            const content = this.container.querySelector('.tool-log-content');
+            content.appendChild(turnStream);
+            this.turnStreams.set(logEvent.turn, turnStream);
+        }
+
+        turnStream.textContent += logEvent.delta;
+        this.scrollToBottom();
+    }
+
+    // 更新任务进度（事件只携带变化的字段）
+    updateProgress(logEvent) {
+        if (logEvent.currentAction) {
+            const title = this.container.querySelector('.tool-log-title');
+            if (title) {
+                title.textContent = `🔧 ${logEvent.currentAction}`;
+            }
+        }
+        if (logEvent.progressPercentage !== undefined && logEvent.progressPercentage !== null) {
+            this.container.style.setProperty('--task-progress', `${logEvent.progressPercentage}%`);
+        }
+    }
+
+    // 单轮完成：非流式模式下没有输出片段，直接显示本轮输出
+    completeTurn(logEvent) {
+        if (!this.turnStreams.has(logEvent.turn) && logEvent.response) {
+            this.appendTurnToken({turn: logEvent.turn, delta: logEvent.response});
+        }
+        const turnStream = this.turnStreams.get(logEvent.turn);
+        if (turnStream) {
+            turnStream.classList.add('completed');
+        }
+    }
+
     // 创建工具卡片
     createToolCard(logEvent) {
         const card = document.createElement('div');
@@ -84,7 +126,7 @@ class ToolLogDisplay {
             </div>
             <div class="tool-file">📁 ${this.getFileName(logEvent.filePath)}</div>
             <div class="tool-message">${logEvent.message}</div>
-            <div class="tool-time">开始时间: ${logEvent.timestamp}</div>
+            <div class="tool-time">开始时间: ${this.formatTime(logEvent.timestamp)}</div>
         `;
         return card;
     }
@@ -108,7 +150,7 @@ class ToolLogDisplay {
         messageElement.textContent = logEvent.message;
 
         if (logEvent.executionTime) {
-            timeElement.textContent = `完成时间: ${logEvent.timestamp} (耗时: ${logEvent.executionTime}ms)`;
+            timeElement.textContent = `完成时间: ${this.formatTime(logEvent.timestamp)} (耗时: ${logEvent.executionTime}ms)`;
         }
 
         this.scrollToBottom();
@@ -140,6 +182,12 @@ class ToolLogDisplay {
         messagesContainer.scrollTop = messagesContainer.scrollHeight;
     }
 
+    // 格式化事件时间
+    formatTime(timestamp) {
+        // 服务端推送 epoch 毫秒
+        return timestamp ? new Date(timestamp).toLocaleTimeString('zh-CN', { hour12: false }) : '';
+    }
+
     // 获取文件名
     getFileName(filePath) {
         if (!filePath) return '未知文件';
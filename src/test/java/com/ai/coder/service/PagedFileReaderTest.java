@@ -0,0 +1,91 @@
+package com.ai.coder.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 分页读取与 Files.readAllLines 的结果对比：
+ * 行数和每一页的内容都应与按行读取后拼接的结果一致，
+ * 重点覆盖单独的 \r、\r\n、跨 64KB 分块的 \r\n、文件末尾没有换行符以及跨索引点的分页。
+ */
+class PagedFileReaderTest {
+
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    private final PagedFileReader reader = new PagedFileReader();
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void loneCarriageReturnEndsLine() throws IOException {
+        assertPagesLikeReadAllLines("a\rb\r\nc\nd\r\re");
+        assertPagesLikeReadAllLines("only\r");
+        assertPagesLikeReadAllLines("\r\r\n\n\r");
+        assertPagesLikeReadAllLines("no newline at end");
+        assertPagesLikeReadAllLines("");
+    }
+
+    @Test
+    void crlfSplitAcrossChunksIsOneLineEnd() throws IOException {
+        // \r 落在分块末尾的每个位置附近，\n 在下一个分块
+        for (int shift = -2; shift <= 1; shift++) {
+            assertPagesLikeReadAllLines("x".repeat(CHUNK_SIZE - 1 + shift) + "\r\nnext\rlast");
+            assertPagesLikeReadAllLines("x".repeat(CHUNK_SIZE - 1 + shift) + "\r\rnext\n");
+        }
+    }
+
+    @Test
+    void pagesAgreeWithReadAllLinesOnRandomContent() throws IOException {
+        Random random = new Random(7);
+        String[] fragments = {"foo", "bar", "\n", "\r\n", "\r", " ", "\t", "é", "中文", "😀", "\r\r\n"};
+        for (int round = 0; round < 5; round++) {
+            StringBuilder content = new StringBuilder();
+            // 足够多的行，覆盖多个索引点和多个分块
+            while (content.length() < 3 * CHUNK_SIZE) {
+                content.append(fragments[random.nextInt(fragments.length)]);
+            }
+            assertPagesLikeReadAllLines(content.toString());
+        }
+    }
+
+    private void assertPagesLikeReadAllLines(String content) throws IOException {
+        Path file = Files.createTempFile(tempDir, "paged", ".txt");
+        Files.writeString(file, content, StandardCharsets.UTF_8);
+        reader.invalidate(file);
+
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        assertEquals(lines.size(), reader.countLines(file), "line count");
+
+        int[] limits = {1, 7, PagedFileReader.INDEX_STRIDE, PagedFileReader.INDEX_STRIDE + 3};
+        for (int limit : limits) {
+            for (int offset = 0; offset < lines.size(); offset += Math.max(1, lines.size() / 50)) {
+                assertPage(file, lines, offset, limit);
+            }
+            if (!lines.isEmpty()) {
+                assertPage(file, lines, lines.size() - 1, limit);
+            }
+        }
+        PagedFileReader.Page beyond = reader.readPage(file, lines.size(), 10);
+        assertEquals("", beyond.content());
+        assertEquals(lines.size(), beyond.endLine());
+    }
+
+    private void assertPage(Path file, List<String> lines, int offset, int limit) throws IOException {
+        int end = Math.min(offset + limit, lines.size());
+        PagedFileReader.Page page = reader.readPage(file, offset, limit);
+        assertEquals(String.join("\n", lines.subList(offset, end)), page.content(),
+                "offset=" + offset + ", limit=" + limit);
+        assertEquals(end, page.endLine());
+        assertEquals(lines.size(), page.totalLines());
+    }
+}
@@ -0,0 +1,180 @@
+package com.ai.coder.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32C;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 逐字节统计（LineCounter）与原先按字符串统计的结果对比：
+ * 覆盖 \n、\r、\r\n 换行（含跨 64KB 读取块的 \r\n）、与 String.trim() 一致的空白判断、
+ * 文件末尾没有换行符、多字节字符，以及类、方法、函数定义的计数。
+ */
+class ProjectContextAnalyzerTest {
+
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+    private static final List<String> EXTENSIONS = List.of(".java", ".js", ".ts", ".py", ".html", ".css", ".xml", ".md");
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void countsLikeStringImplementation() throws IOException {
+        String java = "package demo;\r\n\r\n/**\r\n * 文档\r\n */\r\npublic class Demo {\r\n"
+                + "    // 注释\r\n    private int count(int a) {\r\n        return a;\r\n    }\r\n}";
+        String js = "function a() {}\nconst b = (x) => x;\nobj = { c: function() {} };\n  // note\n\n";
+        String python = "class A:\n    def f(self):\n        # comment\n        pass\ndef g():\n  \t\n";
+        String html = "<!-- c -->\n<div>\n\u00a0\n</div>";
+        assertCountsLikeString(java, ".java");
+        assertCountsLikeString(js, ".js");
+        assertCountsLikeString(js, ".ts");
+        assertCountsLikeString(python, ".py");
+        assertCountsLikeString(html, ".html");
+        assertCountsLikeString("# a\n// b\nc", ".yml");
+    }
+
+    @Test
+    void handlesEveryLineSeparatorAndMissingTrailingNewline() throws IOException {
+        for (String content : List.of("", "\n", "\r", "\r\n", "\n\r", "a", "a\n", "a\r", "a\r\n",
+                "a\r\r\nb", "a\n\nb\n\n", "\r\n\r\n", " \t\f\u000b\n\u0001x\u0002\n")) {
+            for (String extension : EXTENSIONS) {
+                assertCountsLikeString(content, extension);
+            }
+        }
+    }
+
+    @Test
+    void handlesLinesAcrossReadBuffer() throws IOException {
+        // \r 是读取块的最后一个字节、\n 是下一块的第一个字节，以及超过缓冲区长度的单行
+        for (int shift = -2; shift <= 2; shift++) {
+            String content = "x".repeat(READ_BUFFER_SIZE - 1 + shift) + "\r\n" + "public class Tail {}\n";
+            assertCountsLikeString(content, ".java");
+        }
+        assertCountsLikeString("// " + "y".repeat(3 * READ_BUFFER_SIZE) + "\nclass A:\n", ".py");
+    }
+
+    @Test
+    void agreesWithStringImplementationOnRandomContent() throws IOException {
+        Random random = new Random(11);
+        String[] fragments = {"class Foo {", "public void x(int a) {", "  // c", "/* b */", " * d", "#x",
+                "def f(a):", "class A:", "function g() {", "a: function()", "x = (a) => 1", "<!-- h -->",
+                "\t", "  ", "é中文", "😀", "\r", "\n", "\r\n", "\u0085", "\u2028", "\u00a0", "x", "(", ")", "=>"};
+        for (int iteration = 0; iteration < 2_000; iteration++) {
+            StringBuilder content = new StringBuilder();
+            int count = random.nextInt(iteration % 100 == 0 ? 20_000 : 40);
+            for (int i = 0; i < count; i++) {
+                content.append(fragments[random.nextInt(fragments.length)]);
+            }
+            assertCountsLikeString(content.toString(), EXTENSIONS.get(random.nextInt(EXTENSIONS.size())));
+        }
+    }
+
+    private void assertCountsLikeString(String content, String extension) throws IOException {
+        byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+        Path file = Files.createTempFile(tempDir, "code", extension);
+        Files.write(file, bytes);
+
+        ProjectContextAnalyzer.LineCounter counter = new ProjectContextAnalyzer.LineCounter(extension);
+        long checksum = counter.scan(file);
+
+        CRC32C crc = new CRC32C();
+        crc.update(bytes);
+        String label = extension + " " + content.length() + " chars";
+        assertEquals(crc.getValue(), checksum, label);
+        assertEquals(StringImplementation.analyze(bytes, extension), counts(counter.toStatistics()), label);
+    }
+
+    private static String counts(ProjectContextAnalyzer.FileStatistics statistics) {
+        return statistics.totalLines() + "/" + statistics.codeLines() + "/" + statistics.commentLines() + "/"
+                + statistics.blankLines() + "/" + statistics.classes() + "/" + statistics.methods() + "/"
+                + statistics.functions();
+    }
+
+    /**
+     * 改为逐字节统计之前的实现：整个文件解码为字符串后按行处理
+     */
+    private static final class StringImplementation {
+
+        private static final Pattern JAVA_CLASS = Pattern.compile(".*\\bclass\\s+\\w+.*");
+        private static final Pattern JAVA_METHOD = Pattern.compile(".*\\b(public|private|protected)\\s+.*\\s+\\w+\\s*\\(.*\\).*");
+        private static final Pattern JS_FUNCTION = Pattern.compile(".*\\bfunction\\s+\\w+.*");
+        private static final Pattern JS_OBJECT_FUNCTION = Pattern.compile(".*\\w+\\s*:\\s*function.*");
+        private static final Pattern JS_ARROW_FUNCTION = Pattern.compile(".*\\w+\\s*=\\s*\\(.*\\)\\s*=>.*");
+        private static final Pattern PYTHON_CLASS = Pattern.compile("^class\\s+\\w+.*:");
+        private static final Pattern PYTHON_FUNCTION = Pattern.compile("^def\\s+\\w+.*:");
+
+        static String analyze(byte[] content, String extension) {
+            List<String> lines = new String(content, StandardCharsets.UTF_8).lines().toList();
+            int codeLines = 0;
+            int commentLines = 0;
+            int blankLines = 0;
+            for (String line : lines) {
+                String trimmedLine = line.trim();
+                if (trimmedLine.isEmpty()) {
+                    blankLines++;
+                } else if (isCommentLine(trimmedLine, extension)) {
+                    commentLines++;
+                } else {
+                    codeLines++;
+                }
+            }
+
+            int classes = 0;
+            int methods = 0;
+            int functions = 0;
+            if (extension.equals(".java")) {
+                classes = countMatchingLines(lines, JAVA_CLASS);
+                methods = countMatchingLines(lines, JAVA_METHOD);
+            } else if (extension.equals(".js") || extension.equals(".ts")) {
+                functions = countMatchingLines(lines, JS_FUNCTION, JS_OBJECT_FUNCTION, JS_ARROW_FUNCTION);
+            } else if (extension.equals(".py")) {
+                classes = countMatchingLines(lines, PYTHON_CLASS);
+                functions = countMatchingLines(lines, PYTHON_FUNCTION);
+            }
+            return lines.size() + "/" + codeLines + "/" + commentLines + "/" + blankLines + "/"
+                    + classes + "/" + methods + "/" + functions;
+        }
+
+        private static int countMatchingLines(List<String> lines, Pattern... patterns) {
+            int count = 0;
+            for (String line : lines) {
+                String trimmedLine = line.trim();
+                for (Pattern pattern : patterns) {
+                    if (pattern.matcher(trimmedLine).matches()) {
+                        count++;
+                        break;
+                    }
+                }
+            }
+            return count;
+        }
+
+        private static boolean isCommentLine(String line, String extension) {
+            switch (extension) {
+                case ".java":
+                case ".js":
+                case ".ts":
+                case ".jsx":
+                case ".tsx":
+                case ".css":
+                    return line.startsWith("//") || line.startsWith("/*") || line.startsWith("*");
+                case ".py":
+                    return line.startsWith("#");
+                case ".html":
+                    return line.startsWith("<!--");
+                default:
+                    return line.startsWith("#") || line.startsWith("//");
+            }
+        }
+    }
+}
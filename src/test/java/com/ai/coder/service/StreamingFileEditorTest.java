@@ -0,0 +1,171 @@
+package com.ai.coder.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * 流式查找与按字符串处理的结果对比：
+ * findMatches 对应 String.indexOf 的首个（及不重叠的后续）匹配，findLineRange 对应按 \n 拆分后取行范围，
+ * 重点覆盖跨 64KB 分块的匹配、\r\n 换行、文件末尾没有换行符以及多字节字符。
+ */
+class StreamingFileEditorTest {
+
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    // 查找方法不写文件，不需要 AtomicFileWriter
+    private final StreamingFileEditor editor = new StreamingFileEditor(null);
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void findsMatchCrossingChunkBoundary() throws IOException {
+        String pattern = "needle\r\nwith 中文";
+        // 匹配起点覆盖分块末尾的每个字节位置
+        int patternBytes = pattern.getBytes(StandardCharsets.UTF_8).length;
+        for (int shift = -patternBytes; shift <= 1; shift++) {
+            String content = "x".repeat(CHUNK_SIZE + shift) + pattern + "y".repeat(100);
+            assertMatchesLikeString(content, pattern);
+        }
+    }
+
+    @Test
+    void findsPatternLongerThanChunk() throws IOException {
+        String pattern = "ab".repeat(CHUNK_SIZE);
+        String content = "a" + pattern + "tail";
+        assertMatchesLikeString(content, pattern);
+    }
+
+    @Test
+    void matchesDoNotOverlap() throws IOException {
+        String content = "aaaa".repeat(CHUNK_SIZE / 2);
+        assertMatchesLikeString(content, "aaa");
+    }
+
+    @Test
+    void findMatchesAgreesWithIndexOfOnRandomContent() throws IOException {
+        Random random = new Random(42);
+        String[] fragments = {"foo", "bar", "\n", "\r\n", "\r", " ", "\t", "é", "中文", "😀", "foo\nbar"};
+        for (int iteration = 0; iteration < 200; iteration++) {
+            String content = randomContent(random, fragments, random.nextInt(iteration % 10 == 0 ? 40_000 : 200));
+            String pattern = randomContent(random, fragments, 1 + random.nextInt(3));
+            assertMatchesLikeString(content, pattern);
+        }
+    }
+
+    @Test
+    void findLineRangeAgreesWithSplitOnEveryRange() throws IOException {
+        List<String> contents = List.of(
+                "",
+                "single line without newline",
+                "a\nb\nc",
+                "a\nb\nc\n",
+                "a\r\nb\r\n\r\nc",
+                "\n\n\n",
+                "中文\n😀 emoji\n尾行没有换行");
+        for (String content : contents) {
+            assertLineRangesLikeSplit(content);
+        }
+    }
+
+    @Test
+    void findLineRangeAcrossChunkBoundary() throws IOException {
+        // 换行符分别落在分块边界前、边界上和边界后
+        for (int shift = -2; shift <= 2; shift++) {
+            String content = "x".repeat(CHUNK_SIZE + shift) + "\r\nsecond\n" + "y".repeat(CHUNK_SIZE) + "\nlast";
+            assertLineRangesLikeSplit(content);
+        }
+    }
+
+    @Test
+    void findLineRangeAgreesWithSplitOnRandomContent() throws IOException {
+        Random random = new Random(7);
+        String[] fragments = {"code", "\n", "\r\n", " ", "é", "中文"};
+        for (int iteration = 0; iteration < 50; iteration++) {
+            assertLineRangesLikeSplit(randomContent(random, fragments, random.nextInt(60)));
+        }
+    }
+
+    @Test
+    void countLinesCountsNewlinesBeforeOffset() throws IOException {
+        String content = "first\n中文\r\n" + "z".repeat(CHUNK_SIZE) + "\nafter";
+        Path file = write(content);
+        byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+        for (int offset : new int[]{0, 5, 6, 12, CHUNK_SIZE, bytes.length - 6, bytes.length - 5, bytes.length}) {
+            int expected = 0;
+            for (int i = 0; i < offset; i++) {
+                if (bytes[i] == '\n') {
+                    expected++;
+                }
+            }
+            assertEquals(expected, editor.countLines(file, offset), "offset " + offset);
+        }
+    }
+
+    private void assertMatchesLikeString(String content, String pattern) throws IOException {
+        Path file = write(content);
+        List<Long> expected = new ArrayList<>();
+        int index = content.indexOf(pattern);
+        while (index >= 0) {
+            expected.add((long) content.substring(0, index).getBytes(StandardCharsets.UTF_8).length);
+            index = content.indexOf(pattern, index + pattern.length());
+        }
+
+        assertEquals(expected, editor.findMatches(file, pattern, Integer.MAX_VALUE));
+        assertEquals(expected.isEmpty() ? List.of() : expected.subList(0, 1), editor.findMatches(file, pattern, 1));
+    }
+
+    /**
+     * 与 EditFileTool.performEditWithLineNumbers 取行范围的方式对比
+     */
+    private void assertLineRangesLikeSplit(String content) throws IOException {
+        Path file = write(content);
+        String[] lines = content.split("\n", -1);
+        for (int startLine = 1; startLine <= lines.length + 1; startLine++) {
+            for (int endLine = startLine; endLine <= lines.length + 1; endLine++) {
+                StreamingFileEditor.LineRange range = editor.findLineRange(file, startLine, endLine);
+                String label = "lines " + startLine + "-" + endLine + " of " + lines.length;
+                if (endLine > lines.length) {
+                    assertNull(range, label);
+                    continue;
+                }
+                String expected = String.join("\n", List.of(lines).subList(startLine - 1, endLine));
+                assertNotNull(range, label);
+                assertEquals(expected, range.content(), label);
+
+                // 字节区域替换后与按字符串替换的结果一致
+                byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+                String before = new String(bytes, 0, (int) range.start(), StandardCharsets.UTF_8);
+                String after = new String(bytes, (int) range.end(), bytes.length - (int) range.end(), StandardCharsets.UTF_8);
+                assertEquals(content, before + expected + after, label);
+                assertEquals(startLine - 1, before.chars().filter(c -> c == '\n').count(), label);
+            }
+        }
+    }
+
+    private static String randomContent(Random random, String[] fragments, int count) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            sb.append(fragments[random.nextInt(fragments.length)]);
+        }
+        return sb.toString();
+    }
+
+    private Path write(String content) throws IOException {
+        Path file = Files.createTempFile(tempDir, "edit", ".txt");
+        Files.writeString(file, content, StandardCharsets.UTF_8);
+        return file;
+    }
+}
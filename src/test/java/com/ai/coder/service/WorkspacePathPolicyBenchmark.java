@@ -0,0 +1,77 @@
+package com.ai.coder.service;
+
+import com.ai.coder.config.AppProperties;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * 路径校验微基准（手动运行，不属于单元测试）：
+ * 取工作目录下的部分文件、目录和一个不存在的路径，对比 {@link WorkspacePathPolicy} 与逐次解析真实路径的耗时。
+ * <p>
+ * 用法：WorkspacePathPolicyBenchmark [工作目录] [轮数]，默认为 ./workspace 和 1000 轮
+ */
+public class WorkspacePathPolicyBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        Path root = Paths.get(args.length > 0 ? args[0] : Paths.get(System.getProperty("user.dir"), "workspace").toString())
+                .toAbsolutePath().normalize();
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+
+        AppProperties appProperties = new AppProperties();
+        appProperties.getWorkspace().setRootDirectory(root.toString());
+        WorkspacePathPolicy policy = new WorkspacePathPolicy(appProperties);
+
+        List<Path> samples = new ArrayList<>();
+        samples.add(root);
+        try (Stream<Path> walk = Files.walk(root, 3)) {
+            walk.skip(1).limit(31).forEach(samples::add);
+        }
+        samples.add(root.resolve("not-yet-created").resolve("file.txt"));
+
+        // 预热两种实现
+        runPolicy(policy, samples, Math.min(iterations, 1000));
+        runUncached(root, samples, Math.min(iterations, 1000));
+
+        long policyNanos = runPolicy(policy, samples, iterations);
+        long uncachedNanos = runUncached(root, samples, iterations);
+        long operations = (long) samples.size() * iterations;
+        System.out.printf("samples=%d iterations=%d%n", samples.size(), iterations);
+        System.out.printf("policy:   %d ns/check%n", policyNanos / operations);
+        System.out.printf("uncached: %d ns/check%n", uncachedNanos / operations);
+        System.out.printf("speedup:  %.2fx%n", policyNanos == 0 ? 0.0 : (double) uncachedNanos / policyNanos);
+        System.out.println(policy.getStats());
+    }
+
+    private static long runPolicy(WorkspacePathPolicy policy, List<Path> samples, int iterations) {
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            for (Path sample : samples) {
+                policy.isWithinWorkspace(sample);
+            }
+        }
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * 旧实现：每次都解析目标和工作目录的真实路径
+     */
+    private static long runUncached(Path root, List<Path> samples, int iterations) {
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            for (Path sample : samples) {
+                try {
+                    sample.toRealPath().startsWith(root.toRealPath());
+                } catch (IOException e) {
+                    // 不存在的路径与旧实现一样按失败计
+                }
+            }
+        }
+        return System.nanoTime() - start;
+    }
+}
@@ -0,0 +1,89 @@
+package com.ai.coder.service;
+
+import com.ai.coder.config.AppProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * 路径策略与操作系统解析结果的对比：
+ * 含 .. 的路径中 .. 作用于符号链接指向的位置而不是链接所在的目录，
+ * 策略返回的路径应与操作系统实际访问的位置一致，指向工作目录之外时拒绝。
+ */
+class WorkspacePathPolicyTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Path workspace;
+    private Path outside;
+    private WorkspacePathPolicy policy;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        workspace = Files.createDirectories(tempDir.resolve("workspace")).toAbsolutePath().normalize();
+        outside = Files.createDirectories(tempDir.resolve("outside"));
+        Files.writeString(outside.resolve("secret.txt"), "secret");
+        Files.createDirectories(outside.resolve("sub"));
+        Files.writeString(workspace.resolve("file.txt"), "inside");
+
+        AppProperties appProperties = new AppProperties();
+        appProperties.getWorkspace().setRootDirectory(workspace.toString());
+        policy = new WorkspacePathPolicy(appProperties);
+    }
+
+    @Test
+    void rejectsParentReferenceThroughSymlinkLeavingWorkspace() throws IOException {
+        // workspace/link -> outside/sub，workspace/link/../secret.txt 实际是 outside/secret.txt
+        Files.createSymbolicLink(workspace.resolve("link"), outside.resolve("sub"));
+        Path escaping = Path.of(workspace + "/link/../secret.txt");
+        assertEquals("secret", Files.readString(escaping));
+
+        assertNull(policy.resolve(escaping));
+        assertFalse(policy.isWithinWorkspace(escaping));
+        // 尚不存在的文件同样按链接指向的位置判断
+        assertNull(policy.resolve(Path.of(workspace + "/link/../created.txt")));
+        assertNull(policy.resolve(Path.of(workspace + "/link/../sub/../secret.txt")));
+    }
+
+    @Test
+    void resolvesParentReferenceThroughSymlinkInsideWorkspace() throws IOException {
+        Path nested = Files.createDirectories(workspace.resolve("a/b"));
+        Files.createSymbolicLink(workspace.resolve("shortcut"), nested);
+
+        // shortcut/.. 是 a，而不是工作目录
+        Path viaLink = Path.of(workspace + "/shortcut/../note.txt");
+        assertEquals(workspace.resolve("a/note.txt"), policy.resolve(viaLink));
+        assertEquals(workspace.resolve("file.txt"), policy.resolve(Path.of(workspace + "/a/../file.txt")));
+    }
+
+    @Test
+    void returnsSymlinkTargetForIo() throws IOException {
+        Files.createSymbolicLink(workspace.resolve("alias.txt"), workspace.resolve("file.txt"));
+        Files.createSymbolicLink(workspace.resolve("escape.txt"), outside.resolve("secret.txt"));
+
+        assertEquals(workspace.resolve("file.txt"), policy.resolve(workspace.resolve("alias.txt")));
+        assertNull(policy.resolve(workspace.resolve("escape.txt")));
+    }
+
+    @Test
+    void handlesPathsThatDoNotExistYet() {
+        assertEquals(workspace.resolve("new/dir/file.txt"), policy.resolve(workspace.resolve("new/dir/file.txt")));
+        assertNull(policy.resolve(Path.of(workspace + "/new/../../outside/secret.txt")));
+        assertNull(policy.resolve(outside.resolve("secret.txt")));
+    }
+
+    @Test
+    void rejectsInternalDataDirectory() {
+        assertNull(policy.resolve(workspace.resolve(".ai-coder/backups/manifests/task.jsonl")));
+        assertNull(policy.resolve(Path.of(workspace + "/a/../.ai-coder/tasks")));
+    }
+}